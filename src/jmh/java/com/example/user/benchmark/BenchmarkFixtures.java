@@ -0,0 +1,73 @@
+package com.example.user.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.OutputStreamAppender;
+import com.example.user.domain.Gender;
+import com.example.user.domain.User;
+import com.example.user.dto.UserDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.OutputStream;
+import java.time.LocalDate;
+
+/**
+ * Sample data and logging set-up shared by the benchmarks
+ */
+final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    static User user() {
+        return new User(42L, "Jihane", LocalDate.of(1989, 11, 27), "FRANCE", "+3307919235", Gender.FEMALE);
+    }
+
+    static UserDto userDto(String country, LocalDate birthdate) {
+        UserDto userDto = new UserDto();
+        userDto.setId(42L);
+        userDto.setUsername("Jihane");
+        userDto.setBirthdate(birthdate);
+        userDto.setCountry(country);
+        userDto.setPhone("+3307919235");
+        userDto.setGender(Gender.FEMALE);
+        return userDto;
+    }
+
+    /**
+     * Formats the log events of the application like Spring Boot does, at the given level, but writes them nowhere:
+     * the benchmarks measure the cost of logging without the noise of the console.
+     *
+     * @param level String
+     */
+    static void logToNullSink(String level) {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        ch.qos.logback.classic.Logger root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+        root.detachAndStopAllAppenders();
+        root.setLevel(Level.WARN);
+
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d{yyyy-MM-dd HH:mm:ss.SSS} %5level --- [%thread] %logger{39} : %msg%n");
+        encoder.start();
+
+        OutputStreamAppender<ILoggingEvent> appender = new OutputStreamAppender<>();
+        appender.setContext(context);
+        appender.setEncoder(encoder);
+        appender.setOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+        appender.start();
+        root.addAppender(appender);
+        context.getLogger("com.example.user").setLevel(Level.toLevel(level));
+    }
+}
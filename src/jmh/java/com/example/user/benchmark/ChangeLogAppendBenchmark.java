@@ -0,0 +1,51 @@
+package com.example.user.benchmark;
+
+import com.example.user.changelog.SegmentLog;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of an append to the change log by concurrent registrations: the record is copied in the mapped segment,
+ * the force to the disk being left to the group commit of the flusher thread
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@Threads(4)
+@State(Scope.Benchmark)
+public class ChangeLogAppendBenchmark {
+    private static final List<byte[]> CHANGE = Collections.singletonList(("{\"type\":\"CREATED\",\"user\":{\"id\":123456,"
+            + "\"username\":\"bench123456\",\"birthdate\":\"1990-01-01\",\"country\":\"FRANCE\",\"phone\":\"+33612345678\","
+            + "\"gender\":\"FEMALE\"}}").getBytes(StandardCharsets.UTF_8));
+
+    private Path directory;
+    private SegmentLog log;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("changelog-benchmark");
+        log = new SegmentLog(directory, 64 << 20);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        System.out.println(log.getCommittedOffset() + " changes appended");
+        log.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public long append() {
+        return log.append(CHANGE, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.user.benchmark;
+
+import com.example.user.exception.ContentNotAllowedException;
+import com.example.user.exception.ControllerExceptionHandler;
+import com.example.user.exception.UserNotFoundException;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.validation.ObjectError;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import javax.validation.ValidationException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the error paths: creation of the exception and building of the error response, body included, by the
+ * controller advice
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ControllerExceptionHandlerBenchmark {
+    @Param({"INFO", "OFF"})
+    private String logLevel;
+
+    private ControllerExceptionHandler handler;
+    private WebRequest request;
+
+    @Setup
+    public void setUp() {
+        BenchmarkFixtures.logToNullSink(logLevel);
+        handler = new ControllerExceptionHandler();
+        request = new ServletWebRequest(new MockHttpServletRequest("GET", "/user/42"));
+    }
+
+    @Benchmark
+    public ResponseEntity<Object> userNotFound() {
+        return handler.resourceNotFoundException(new UserNotFoundException(42L), request);
+    }
+
+    @Benchmark
+    public ResponseEntity<Object> contentNotAllowed() {
+        return handler.contentNotAllowedException(new ContentNotAllowedException(Collections.singletonList(
+                new ObjectError("userDto", "Only adult French residents are allowed to create an account"))), request);
+    }
+
+    @Benchmark
+    public ResponseEntity<Object> constraintViolation() {
+        return handler.constraintViolation(new DataIntegrityViolationException("Username 'Bob' already exists"), request);
+    }
+
+    @Benchmark
+    public ResponseEntity<Object> validation() {
+        return handler.validationException(new ValidationException("HV000028: Unexpected exception during isValid call."), request);
+    }
+
+    @Benchmark
+    public ResponseEntity<Object> unknown() {
+        return handler.globalExceptionHandler(new IllegalStateException("unexpected"), request);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.user.benchmark;
+
+import com.example.user.aspect.LoggingAspect;
+import com.example.user.aspect.SampledTracer;
+import com.example.user.controllers.UserController;
+import com.example.user.domain.User;
+import com.example.user.dto.UserDto;
+import com.example.user.services.UserService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of LoggingAspect.methodTimeLogger: the same controller call with and without the aspect
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoggingAspectBenchmark {
+    @Param({"INFO", "WARN"})
+    private String logLevel;
+
+    @Param({"full", "sampled"})
+    private String tracingMode;
+
+    private SampledTracer sampledTracer;
+    private UserController controller;
+    private UserController tracedController;
+
+    @Setup
+    public void setUp() {
+        BenchmarkFixtures.logToNullSink(logLevel);
+        Optional<User> user = Optional.of(BenchmarkFixtures.user());
+        UserService userService = new UserService(null, null, null, null, null, null, null) {
+            @Override
+            public Optional<User> getUser(long id) {
+                return user;
+            }
+        };
+        controller = new UserController(userService, null, null, null);
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(controller);
+        proxyFactory.setProxyTargetClass(true);
+        sampledTracer = new SampledTracer(tracingMode, 100, 500, 1024, 10);
+        proxyFactory.addAspect(new LoggingAspect(sampledTracer));
+        tracedController = proxyFactory.getProxy();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        sampledTracer.destroy();
+    }
+
+    @Benchmark
+    public ResponseEntity<UserDto> withoutAspect() {
+        return controller.getUser(42L, null);
+    }
+
+    @Benchmark
+    public ResponseEntity<UserDto> withAspect() {
+        return tracedController.getUser(42L, null);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.user.benchmark;
+
+import com.example.user.domain.Gender;
+import com.example.user.domain.User;
+import com.example.user.store.ShardedUserRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput of the registrations of new users by concurrent callers, on users sharded across 1, 2 or 4 in-memory
+ * H2 databases: each insert (and its directory entry) is a transaction of the shard of the username
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@Threads(8)
+@State(Scope.Benchmark)
+public class ShardedInsertBenchmark {
+
+    @Param({"1", "2", "4"})
+    private int shards;
+
+    private ShardedUserRepository repository;
+    private final AtomicLong usernames = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        String name = UUID.randomUUID().toString();
+        List<DataSource> dataSources = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setJdbcUrl("jdbc:h2:mem:" + name + "-shard-" + i + ";DB_CLOSE_DELAY=-1");
+            dataSource.setUsername("sa");
+            dataSource.setMaximumPoolSize(8);
+            dataSources.add(dataSource);
+        }
+        repository = new ShardedUserRepository(dataSources);
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.println(shards + " shards: " + repository.count() + " users inserted");
+        repository.close();
+    }
+
+    @Benchmark
+    public User insert() {
+        long i = usernames.incrementAndGet();
+        return repository.save(new User(null, "bench" + i, LocalDate.of(1940, 1, 1).plusDays(i % 20_000), "FRANCE",
+                "+336" + i, i % 2 == 0 ? Gender.FEMALE : Gender.MALE));
+    }
+}
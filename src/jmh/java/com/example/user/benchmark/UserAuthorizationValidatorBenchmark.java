@@ -0,0 +1,53 @@
+package com.example.user.benchmark;
+
+import com.example.user.dto.UserDto;
+import com.example.user.validators.EligibilityProperties;
+import com.example.user.validators.UserAuthorization;
+import com.example.user.validators.UserAuthorizationValidator;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the eligibility check run on every registration
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserAuthorizationValidatorBenchmark {
+    private UserAuthorizationValidator validator;
+    private UserDto adult;
+    private UserDto minor;
+    private UserDto notFrench;
+
+    @Setup
+    public void setUp() {
+        EligibilityProperties eligibilityProperties = new EligibilityProperties();
+        eligibilityProperties.getPolicies().put("french-adult", Collections.singletonMap("FRANCE", 18));
+        validator = new UserAuthorizationValidator(eligibilityProperties);
+        validator.initialize(UserDto.class.getAnnotation(UserAuthorization.class));
+        adult = BenchmarkFixtures.userDto("France", LocalDate.of(1989, 11, 27));
+        minor = BenchmarkFixtures.userDto("France", LocalDate.now().minusYears(10));
+        notFrench = BenchmarkFixtures.userDto("Germany", LocalDate.of(1989, 11, 27));
+    }
+
+    @Benchmark
+    public boolean validAdult() {
+        return validator.isValid(adult, null);
+    }
+
+    @Benchmark
+    public boolean rejectedMinor() {
+        return validator.isValid(minor, null);
+    }
+
+    @Benchmark
+    public boolean rejectedCountry() {
+        return validator.isValid(notFrench, null);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.user.benchmark;
+
+import com.example.user.dto.UserDto;
+import com.example.user.formats.BinaryFormatsConfiguration;
+import com.example.user.json.UserJsonModule;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufFactory;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchema;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the encoding and of the decoding of a UserDto body in each format answered by the API, with the ObjectMapper
+ * configuration of the application. The size of the payload is printed at the start of each format.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserDtoFormatsBenchmark {
+    @Param({"json", "cbor", "smile", "protobuf"})
+    private String format;
+
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private UserDto userDto;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .modulesToInstall(new UserJsonModule())
+                .factory(factory())
+                .build();
+        writer = objectMapper.writerFor(UserDto.class);
+        reader = objectMapper.readerFor(UserDto.class);
+        if (format.equals("protobuf")) {
+            ProtobufSchema schema = BinaryFormatsConfiguration.loadSchema().forType("UserDto");
+            writer = writer.with(schema);
+            reader = reader.with(schema);
+        }
+        userDto = BenchmarkFixtures.userDto("France", LocalDate.of(1989, 11, 27));
+        payload = writer.writeValueAsBytes(userDto);
+        System.out.println(format + " payload: " + payload.length + " bytes");
+    }
+
+    private JsonFactory factory() {
+        switch (format) {
+            case "cbor":
+                return new CBORFactory();
+            case "smile":
+                return new SmileFactory();
+            case "protobuf":
+                return new ProtobufFactory();
+            default:
+                return new JsonFactory();
+        }
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return writer.writeValueAsBytes(userDto);
+    }
+
+    @Benchmark
+    public UserDto decode() throws IOException {
+        return reader.readValue(payload);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.user.benchmark;
+
+import com.example.user.dto.UserDto;
+import com.example.user.json.UserJsonModule;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the Jackson (de)serialization of the UserDto bodies, with the ObjectMapper configuration of Spring Boot,
+ * by the bean (de)serializers or by the ones of UserJsonModule
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserDtoJsonBenchmark {
+    @Param({"false", "true"})
+    private boolean fastSerializers;
+
+    private ObjectMapper objectMapper;
+    private UserDto userDto;
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws IOException {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        if (fastSerializers) {
+            builder.modulesToInstall(new UserJsonModule());
+        }
+        objectMapper = builder.build();
+        userDto = BenchmarkFixtures.userDto("France", LocalDate.of(1989, 11, 27));
+        json = objectMapper.writeValueAsBytes(userDto);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return objectMapper.writeValueAsBytes(userDto);
+    }
+
+    @Benchmark
+    public UserDto deserialize() throws IOException {
+        return objectMapper.readValue(json, UserDto.class);
+    }
+}
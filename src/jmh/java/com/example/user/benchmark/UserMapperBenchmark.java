@@ -0,0 +1,39 @@
+package com.example.user.benchmark;
+
+import com.example.user.domain.User;
+import com.example.user.dto.UserDto;
+import com.example.user.mapper.UserMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the conversions between User and UserDto done by the controller
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserMapperBenchmark {
+    private User user;
+    private UserDto userDto;
+
+    @Setup
+    public void setUp() {
+        user = BenchmarkFixtures.user();
+        userDto = BenchmarkFixtures.userDto("France", LocalDate.of(1989, 11, 27));
+    }
+
+    @Benchmark
+    public UserDto convertToDto() {
+        return UserMapper.INSTANCE.convertToDto(user);
+    }
+
+    @Benchmark
+    public User convertToUser() {
+        return UserMapper.INSTANCE.convertToUser(userDto);
+    }
+}
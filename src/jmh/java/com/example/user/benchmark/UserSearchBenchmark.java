@@ -0,0 +1,116 @@
+package com.example.user.benchmark;
+
+import com.example.user.UserApplication;
+import com.example.user.domain.Gender;
+import com.example.user.domain.User;
+import com.example.user.dto.UserSearchCriteria;
+import com.example.user.services.UserService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of GET /users/search on a table of a million users, with and without the indexes declared on User.
+ * The query plans chosen by the database are printed at set-up.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Benchmark)
+public class UserSearchBenchmark {
+    private static final String[] COUNTRIES = {"FRANCE", "SPAIN", "ITALY", "GERMANY", "BELGIUM", "PORTUGAL", "NETHERLANDS", "SWITZERLAND", "AUSTRIA", "POLAND"};
+    private static final LocalDate FIRST_BIRTHDATE = LocalDate.of(1940, 1, 1);
+    private static final int BIRTHDATE_DAYS = 65 * 365;
+    private static final String[] INDEXES = {"idx_users_country_birthdate", "idx_users_birthdate", "idx_users_normalized_phone"};
+
+    @Param("1000000")
+    private int rows;
+
+    @Param({"true", "false"})
+    private boolean indexed;
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(UserApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.jpa.show-sql=false", "logging.level.root=WARN", "spring.main.banner-mode=off")
+                .run();
+        userService = context.getBean(UserService.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        Random random = new Random(42);
+        List<Object[]> batch = new ArrayList<>(10_000);
+        for (int i = 0; i < rows; i++) {
+            String phone = phone(i);
+            batch.add(new Object[]{1_000 + i, "bench" + i, Date.valueOf(FIRST_BIRTHDATE.plusDays(random.nextInt(BIRTHDATE_DAYS))),
+                    COUNTRIES[random.nextInt(COUNTRIES.length)], phone, phone, random.nextInt(2)});
+            if (batch.size() == 10_000 || i == rows - 1) {
+                jdbcTemplate.batchUpdate("insert into users(id, username, birthdate, country, phone, normalized_phone, gender, version)"
+                        + " values (?, ?, ?, ?, ?, ?, ?, 0)", batch);
+                batch.clear();
+            }
+        }
+        if (!indexed) {
+            for (String index : INDEXES) {
+                jdbcTemplate.execute("drop index " + index);
+            }
+        }
+        jdbcTemplate.execute("analyze");
+        for (String query : new String[]{
+                "select * from users where country = 'FRANCE' and birthdate between '1980-01-01' and '1980-12-31' order by id limit 100",
+                "select * from users where birthdate between '1980-01-01' and '1980-01-31' order by id limit 100",
+                "select * from users where normalized_phone = '+33600012345' order by id limit 100"}) {
+            System.out.println(jdbcTemplate.queryForObject("explain " + query, String.class).replaceAll("\\s+", " "));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    private static String phone(int i) {
+        return String.format("+336%08d", i);
+    }
+
+    @Benchmark
+    public List<User> byPhone() {
+        UserSearchCriteria criteria = new UserSearchCriteria();
+        criteria.setPhone("+33 6 " + String.format("%08d", ThreadLocalRandom.current().nextInt(rows)));
+        return userService.searchUsers(criteria, 0, 100);
+    }
+
+    @Benchmark
+    public List<User> byCountryAndBirthYear() {
+        UserSearchCriteria criteria = new UserSearchCriteria();
+        LocalDate from = FIRST_BIRTHDATE.plusYears(ThreadLocalRandom.current().nextInt(64));
+        criteria.setCountry(COUNTRIES[ThreadLocalRandom.current().nextInt(COUNTRIES.length)]);
+        criteria.setBornAfter(from);
+        criteria.setBornBefore(from.plusYears(1).minusDays(1));
+        return userService.searchUsers(criteria, 0, 100);
+    }
+
+    @Benchmark
+    public List<User> byBirthMonthAndGender() {
+        UserSearchCriteria criteria = new UserSearchCriteria();
+        LocalDate from = FIRST_BIRTHDATE.plusMonths(ThreadLocalRandom.current().nextInt(64 * 12));
+        criteria.setBornAfter(from);
+        criteria.setBornBefore(from.plusMonths(1).minusDays(1));
+        criteria.setGender(Gender.FEMALE);
+        return userService.searchUsers(criteria, 0, 100);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.user.benchmark;
+
+import com.example.user.UserApplication;
+import com.example.user.domain.Gender;
+import com.example.user.domain.User;
+import com.example.user.dto.UserDto;
+import com.example.user.mapper.UserMapper;
+import com.example.user.repositories.UserRepository;
+import com.example.user.store.MappedUserStore;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads of a user by id into a UserDto: through the JPA repository (H2 + Hibernate) and through the memory-mapped
+ * user store
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Benchmark)
+public class UserStoreBenchmark {
+
+    @Param("100000")
+    private int rows;
+
+    private ConfigurableApplicationContext context;
+    private UserRepository jpaRepository;
+    private Path file;
+    private MappedUserStore store;
+
+    @Setup
+    public void setUp() throws Exception {
+        context = new SpringApplicationBuilder(UserApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.jpa.show-sql=false", "logging.level.root=WARN", "spring.main.banner-mode=off")
+                .run();
+        jpaRepository = context.getBean(UserRepository.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.execute("delete from users");
+        file = Files.createTempFile("users", ".store");
+        store = new MappedUserStore(file, rows, false);
+
+        List<Object[]> rowsBatch = new ArrayList<>();
+        List<User> usersBatch = new ArrayList<>();
+        for (int i = 1; i <= rows; i++) {
+            User user = new User(null, "bench" + i, LocalDate.of(1940, 1, 1).plusDays(i % 20_000), "FRANCE", "+336" + i,
+                    i % 2 == 0 ? Gender.FEMALE : Gender.MALE);
+            rowsBatch.add(new Object[]{i, user.getUsername(), Date.valueOf(user.getBirthdate()), user.getCountry(), user.getPhone(),
+                    user.getNormalizedPhone(), user.getGender().ordinal()});
+            usersBatch.add(user);
+            if (usersBatch.size() == 10_000 || i == rows) {
+                jdbcTemplate.batchUpdate("insert into users(id, username, birthdate, country, phone, normalized_phone, gender, version)"
+                        + " values (?, ?, ?, ?, ?, ?, ?, 0)", rowsBatch);
+                store.saveAll(usersBatch);
+                rowsBatch.clear();
+                usersBatch.clear();
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        store.close();
+        Files.delete(file);
+        context.close();
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, rows + 1L);
+    }
+
+    @Benchmark
+    public UserDto jpaFindById() {
+        return UserMapper.INSTANCE.convertToDto(jpaRepository.findById(randomId()).get());
+    }
+
+    @Benchmark
+    public UserDto mappedFindById() {
+        return UserMapper.INSTANCE.convertToDto(store.findById(randomId()).get());
+    }
+}
@@ -0,0 +1,309 @@
+package com.example.user.loadtest;
+
+import com.example.user.UserApplication;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives the HTTP API of the users with an open-model workload and reports the throughput and the latency percentiles
+ * of every kind of request as JSON (loadtest.output) so that builds can be compared.
+ * <p>
+ * The requests are scheduled at a fixed arrival rate. The latency of a request is measured from the time it was due,
+ * not from the time it could be sent: when the server falls behind, the waiting of the delayed requests is counted
+ * (no coordinated omission).
+ * <p>
+ * Run it with {@code mvn -P loadtest test-compile exec:exec [-Dloadtest.rate=2000 -Dloadtest.duration=60 ...]},
+ * see {@link Workload} for the settings.
+ */
+public final class LoadTest {
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final String SEED_PREFIX = "seed-";
+
+    /**
+     * The kinds of requests, with the statuses they are expected to get. A registration may be answered 202 when the
+     * server registers the users asynchronously.
+     */
+    enum Operation {
+        GET_HIT("get-hit", 200),
+        GET_MISS("get-miss", 404),
+        POST_NEW("post-new", 201, 202),
+        POST_DUPLICATE("post-duplicate", 400, 202);
+
+        private final String label;
+        private final int[] expectedStatuses;
+
+        Operation(String label, int... expectedStatuses) {
+            this.label = label;
+            this.expectedStatuses = expectedStatuses;
+        }
+
+        boolean expects(int status) {
+            return Arrays.stream(expectedStatuses).anyMatch(expected -> expected == status);
+        }
+    }
+
+    private final Workload workload;
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private final Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+    private final Histogram all = new ConcurrentHistogram(HIGHEST_LATENCY_MICROS, 3);
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong usernames = new AtomicLong();
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private String baseUrl;
+    private long[] seedIds;
+
+    private LoadTest(Workload workload) {
+        this.workload = workload;
+        for (Operation operation : Operation.values()) {
+            histograms.put(operation, new ConcurrentHistogram(HIGHEST_LATENCY_MICROS, 3));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Workload workload = Workload.fromProperties(System.getProperties());
+        // one kept-alive connection per sending thread
+        System.setProperty("http.maxConnections", String.valueOf(workload.getThreads()));
+        ConfigurableApplicationContext context = null;
+        try {
+            String url = workload.getUrl();
+            if (url.isEmpty()) {
+                context = start(workload);
+                url = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            }
+            new LoadTest(workload).run(url);
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext start(Workload workload) {
+        // the restart class loader of the devtools would start the application twice
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        // passed as command line arguments, which override application.properties
+        List<String> arguments = new ArrayList<>(Arrays.asList("--server.port=0", "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN", "--spring.main.banner-mode=off", "--user.tracing.mode=sampled",
+                // all the requests come from one client, which the rates per client would cap far below the server
+                "--user.admission.read.rate=0", "--user.admission.write.rate=0"));
+        for (String property : workload.getApplicationProperties().split(",")) {
+            if (!property.trim().isEmpty()) {
+                arguments.add("--" + property.trim());
+            }
+        }
+        return new SpringApplicationBuilder(UserApplication.class).run(arguments.toArray(new String[0]));
+    }
+
+    private void run(String url) throws Exception {
+        this.baseUrl = url;
+        seed();
+        System.out.printf("Load test of %s: %.0f requests/s for %ds after %ds of warm-up, %d threads%n",
+                url, workload.getRate(), workload.getDurationSeconds(), workload.getWarmupSeconds(), workload.getThreads());
+
+        ExecutorService senders = Executors.newFixedThreadPool(workload.getThreads());
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / workload.getRate());
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(workload.getWarmupSeconds());
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(workload.getDurationSeconds());
+        long sent = 0;
+        for (long intended = start; intended < end; intended = start + ++sent * intervalNanos) {
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            long dueAt = intended;
+            boolean measured = intended >= measureFrom;
+            senders.execute(() -> send(dueAt, measured));
+        }
+        senders.shutdown();
+        if (!senders.awaitTermination(1, TimeUnit.MINUTES)) {
+            senders.shutdownNow();
+        }
+        long elapsedNanos = System.nanoTime() - measureFrom;
+        report(elapsedNanos);
+    }
+
+    private void send(long dueAt, boolean measured) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Operation operation;
+        int status;
+        try {
+            if (random.nextDouble() < workload.getReadRatio()) {
+                if (random.nextDouble() < workload.getHitRatio()) {
+                    operation = Operation.GET_HIT;
+                    status = call("GET", "/user/" + seedIds[random.nextInt(seedIds.length)], null);
+                } else {
+                    operation = Operation.GET_MISS;
+                    status = call("GET", "/user/" + (Long.MAX_VALUE - random.nextInt(1_000_000)), null);
+                }
+            } else if (random.nextDouble() < workload.getDuplicateRatio()) {
+                operation = Operation.POST_DUPLICATE;
+                status = call("POST", "/user", user(SEED_PREFIX + runId + "-" + random.nextInt(workload.getSeedUsers())));
+            } else {
+                operation = Operation.POST_NEW;
+                status = call("POST", "/user", user("lt-" + runId + "-" + usernames.incrementAndGet()));
+            }
+        } catch (IOException e) {
+            if (measured) {
+                errors.incrementAndGet();
+            }
+            return;
+        }
+        if (measured) {
+            if (!operation.expects(status)) {
+                errors.incrementAndGet();
+            }
+            long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - dueAt);
+            histograms.get(operation).recordValue(Math.min(latencyMicros, HIGHEST_LATENCY_MICROS));
+            all.recordValue(Math.min(latencyMicros, HIGHEST_LATENCY_MICROS));
+        }
+    }
+
+    /**
+     * This method registers the seed users by batches and keeps their ids
+     */
+    private void seed() throws IOException {
+        List<Long> ids = new ArrayList<>(workload.getSeedUsers());
+        for (int from = 0; from < workload.getSeedUsers(); from += 1000) {
+            StringBuilder body = new StringBuilder("[");
+            for (int i = from; i < Math.min(from + 1000, workload.getSeedUsers()); i++) {
+                body.append(i == from ? "" : ",").append(user(SEED_PREFIX + runId + "-" + i));
+            }
+            HttpURLConnection connection = open("POST", "/users/batch");
+            write(connection, body.append(']').toString());
+            List<Map<String, Object>> results = objectMapper.readValue(connection.getInputStream(),
+                    new TypeReference<List<Map<String, Object>>>() {
+                    });
+            for (Map<String, Object> result : results) {
+                Object user = result.get("user");
+                if (Boolean.TRUE.equals(result.get("created")) && user instanceof Map) {
+                    ids.add(((Number) ((Map<?, ?>) user).get("id")).longValue());
+                }
+            }
+        }
+        if (ids.isEmpty()) {
+            throw new IllegalStateException("No seed user could be registered");
+        }
+        seedIds = ids.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private int call(String method, String path, String body) throws IOException {
+        HttpURLConnection connection = open(method, path);
+        if (body != null) {
+            write(connection, body);
+        }
+        int status = connection.getResponseCode();
+        // the response is read to the end so that the connection is reused
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            drain(in);
+        }
+        return status;
+    }
+
+    private HttpURLConnection open(String method, String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setRequestProperty("Accept", "application/json");
+        connection.setConnectTimeout(10_000);
+        connection.setReadTimeout(60_000);
+        return connection;
+    }
+
+    private static void write(HttpURLConnection connection, String body) throws IOException {
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        if (in == null) {
+            return;
+        }
+        byte[] buffer = new byte[4096];
+        while (in.read(buffer) >= 0) {
+            // discarded
+        }
+    }
+
+    private static String user(String username) {
+        return "{\"username\":\"" + username + "\",\"birthdate\":\"1985-06-15\",\"country\":\"France\",\"phone\":\"0612345678\",\"gender\":\"FEMALE\"}";
+    }
+
+    private void report(long elapsedNanos) throws IOException {
+        double seconds = elapsedNanos / 1e9;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("workload", workload);
+        report.put("elapsedSeconds", seconds);
+        report.put("requests", all.getTotalCount());
+        report.put("throughput", all.getTotalCount() / seconds);
+        report.put("errors", errors.get());
+        report.put("latency", stats(all, seconds));
+        Map<String, Object> operations = new LinkedHashMap<>();
+        for (Map.Entry<Operation, Histogram> entry : histograms.entrySet()) {
+            operations.put(entry.getKey().label, stats(entry.getValue(), seconds));
+        }
+        report.put("operations", operations);
+
+        Path output = Paths.get(workload.getOutput());
+        if (output.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(output.toAbsolutePath().getParent());
+        }
+        objectMapper.writeValue(output.toFile(), report);
+
+        System.out.printf("%-16s %10s %10s %10s %10s %10s %10s%n", "operation", "count", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        print("all", all, seconds);
+        for (Map.Entry<Operation, Histogram> entry : histograms.entrySet()) {
+            print(entry.getKey().label, entry.getValue(), seconds);
+        }
+        System.out.printf("errors: %d, report written to %s%n", errors.get(), output.toAbsolutePath());
+    }
+
+    private static Map<String, Object> stats(Histogram histogram, double seconds) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("count", histogram.getTotalCount());
+        stats.put("throughput", histogram.getTotalCount() / seconds);
+        stats.put("meanMillis", histogram.getMean() / 1000);
+        stats.put("p50Millis", histogram.getValueAtPercentile(50) / 1000.0);
+        stats.put("p99Millis", histogram.getValueAtPercentile(99) / 1000.0);
+        stats.put("p999Millis", histogram.getValueAtPercentile(99.9) / 1000.0);
+        stats.put("maxMillis", histogram.getMaxValue() / 1000.0);
+        return stats;
+    }
+
+    private static void print(String label, Histogram histogram, double seconds) {
+        System.out.printf("%-16s %10d %10.1f %10.2f %10.2f %10.2f %10.2f%n", label, histogram.getTotalCount(),
+                histogram.getTotalCount() / seconds, histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0, histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+    }
+}
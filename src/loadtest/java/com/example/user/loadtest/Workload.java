@@ -0,0 +1,66 @@
+package com.example.user.loadtest;
+
+import lombok.Data;
+
+import java.util.Properties;
+
+/**
+ * The settings of a load test, read from the loadtest.* system properties
+ */
+@Data
+public class Workload {
+    /**
+     * requests started per second, whatever the response times (open model)
+     */
+    private double rate = 500;
+    private int durationSeconds = 30;
+    /**
+     * the requests of the first seconds are sent but not recorded
+     */
+    private int warmupSeconds = 10;
+    /**
+     * share of GET /user/{id} among the requests, the others being POST /user
+     */
+    private double readRatio = 0.9;
+    /**
+     * share of the GETs asking for a registered user, the others get a 404
+     */
+    private double hitRatio = 0.9;
+    /**
+     * share of the POSTs sending an already registered username
+     */
+    private double duplicateRatio = 0.1;
+    /**
+     * concurrent connections to the server
+     */
+    private int threads = 64;
+    /**
+     * users registered before the test, the targets of the hits and of the duplicates
+     */
+    private int seedUsers = 10_000;
+    /**
+     * base URL of a running server; when empty, UserApplication is started on a random port
+     */
+    private String url = "";
+    /**
+     * comma-separated properties of the started UserApplication, e.g. user.registration.mode=async
+     */
+    private String applicationProperties = "";
+    private String output = "target/loadtest-result.json";
+
+    static Workload fromProperties(Properties properties) {
+        Workload workload = new Workload();
+        workload.setRate(Double.parseDouble(properties.getProperty("loadtest.rate", String.valueOf(workload.rate))));
+        workload.setDurationSeconds(Integer.parseInt(properties.getProperty("loadtest.duration", String.valueOf(workload.durationSeconds))));
+        workload.setWarmupSeconds(Integer.parseInt(properties.getProperty("loadtest.warmup", String.valueOf(workload.warmupSeconds))));
+        workload.setReadRatio(Double.parseDouble(properties.getProperty("loadtest.read-ratio", String.valueOf(workload.readRatio))));
+        workload.setHitRatio(Double.parseDouble(properties.getProperty("loadtest.hit-ratio", String.valueOf(workload.hitRatio))));
+        workload.setDuplicateRatio(Double.parseDouble(properties.getProperty("loadtest.duplicate-ratio", String.valueOf(workload.duplicateRatio))));
+        workload.setThreads(Integer.parseInt(properties.getProperty("loadtest.threads", String.valueOf(workload.threads))));
+        workload.setSeedUsers(Integer.parseInt(properties.getProperty("loadtest.seed-users", String.valueOf(workload.seedUsers))));
+        workload.setUrl(properties.getProperty("loadtest.url", workload.url));
+        workload.setApplicationProperties(properties.getProperty("loadtest.application-properties", workload.applicationProperties));
+        workload.setOutput(properties.getProperty("loadtest.output", workload.output));
+        return workload;
+    }
+}
@@ -1,14 +1,31 @@
 package com.example.user;
 
+import com.example.user.exporter.UserExportRunner;
+import com.example.user.importer.UserImportRunner;
+import com.example.user.validators.EligibilityProperties;
 import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.core.Ordered;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+// the cache is checked before any transaction is opened (see the read-only methods of UserService)
+@EnableCaching(order = Ordered.LOWEST_PRECEDENCE - 1)
+@EnableScheduling
+@EnableConfigurationProperties(EligibilityProperties.class)
 public class UserApplication {
 
 
 	public static void main(String[] args) {
-		SpringApplication.run(UserApplication.class, args);
+		SpringApplication application = new SpringApplication(UserApplication.class);
+		if (UserImportRunner.isImport(args) || UserExportRunner.isExport(args)) {
+			// an import or an export from the command line does not serve HTTP requests
+			application.setWebApplicationType(WebApplicationType.NONE);
+		}
+		application.run(args);
 	}
 
 }
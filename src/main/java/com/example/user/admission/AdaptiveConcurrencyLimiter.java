@@ -0,0 +1,121 @@
+package com.example.user.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounds the requests in flight by a limit adapted to the latency they observe (additive increase, multiplicative
+ * decrease): a request slower than the latency target, or failed, cuts the limit by a tenth, at most once per target
+ * so that the requests slowed by the same stall cut it once; the others raise it by one per limit's worth of requests,
+ * as long as the limit is used. The limit hence follows the concurrency the database sustains within the target,
+ * and the requests beyond it are rejected at once instead of waiting for a connection.
+ * <p>
+ * The limit and the requests in flight are updated by compare-and-set, without locks.
+ */
+public final class AdaptiveConcurrencyLimiter {
+    static final double BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyTargetNanos;
+    private final LongSupplier clock;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // the bits of a double, to raise the limit by fractions
+    private final AtomicLong limit;
+    private final AtomicLong nextDecrease;
+
+    /**
+     * @param initialLimit       int the limit until the first latencies are observed
+     * @param minLimit           int the floor of the limit
+     * @param maxLimit           int the ceiling of the limit
+     * @param latencyTargetNanos long the latency above which a request is too slow
+     * @param clock              LongSupplier the time in nanoseconds
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long latencyTargetNanos, LongSupplier clock) {
+        if (minLimit <= 0 || minLimit > initialLimit || initialLimit > maxLimit || latencyTargetNanos <= 0) {
+            throw new IllegalArgumentException("The limits must be 0 < min <= initial <= max, and the latency target positive");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTargetNanos = latencyTargetNanos;
+        this.clock = clock;
+        this.limit = new AtomicLong(Double.doubleToLongBits(initialLimit));
+        this.nextDecrease = new AtomicLong(clock.getAsLong());
+    }
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long latencyTargetNanos) {
+        this(initialLimit, minLimit, maxLimit, latencyTargetNanos, System::nanoTime);
+    }
+
+    public int getLimit() {
+        return (int) Double.longBitsToDouble(limit.get());
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * This method admits a request if fewer than the limit are in flight
+     *
+     * @return boolean false if the request must be rejected
+     */
+    public boolean tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= getLimit()) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * This method ends a request whose latency tells nothing of the database, i.e: a long poll or a bulk request
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * This method ends a request and adapts the limit to its latency
+     *
+     * @param latencyNanos long the time the request took
+     * @param failed       boolean true if the request failed, which counts as too slow
+     */
+    public void release(long latencyNanos, boolean failed) {
+        int current = inFlight.getAndDecrement();
+        if (failed || latencyNanos > latencyTargetNanos) {
+            decrease();
+        } else if (current * 2 >= getLimit()) {
+            // a limit that is not used says nothing of the concurrency the database sustains
+            increase();
+        }
+    }
+
+    private void decrease() {
+        long now = clock.getAsLong();
+        long at = nextDecrease.get();
+        if (now - at < 0 || !nextDecrease.compareAndSet(at, now + latencyTargetNanos)) {
+            return;
+        }
+        long bits;
+        do {
+            bits = limit.get();
+        } while (!limit.compareAndSet(bits, Double.doubleToLongBits(Math.max(minLimit, Double.longBitsToDouble(bits) * BACKOFF))));
+    }
+
+    private void increase() {
+        long bits;
+        double current;
+        do {
+            bits = limit.get();
+            current = Double.longBitsToDouble(bits);
+            if (current >= maxLimit) {
+                return;
+            }
+        } while (!limit.compareAndSet(bits, Double.doubleToLongBits(Math.min(maxLimit, current + 1 / current))));
+    }
+}
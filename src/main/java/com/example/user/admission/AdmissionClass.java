@@ -0,0 +1,24 @@
+package com.example.user.admission;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Gives the traffic class of a handler method whose HTTP method does not tell it, i.e: a POST that only reads, or
+ * tells that its latency does not adapt the limit of its class, i.e: a bulk request whose duration grows with the
+ * number of users it handles rather than with the load of the database
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface AdmissionClass {
+    TrafficClass value();
+
+    /**
+     * Whether the latency of the requests adapts the concurrency limit of the class (see AdaptiveConcurrencyLimiter)
+     */
+    boolean adaptive() default true;
+}
@@ -0,0 +1,34 @@
+package com.example.user.admission;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Puts the admission control (see AdmissionInterceptor) in front of the user endpoints, unless
+ * user.admission.enabled is false. It is an interceptor rather than a servlet filter so that its rejections are
+ * answered by the ControllerExceptionHandler, like the other errors.
+ */
+@Configuration
+@ConditionalOnProperty(name = "user.admission.enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(AdmissionProperties.class)
+public class AdmissionConfiguration implements WebMvcConfigurer {
+    private final AdmissionProperties properties;
+
+    public AdmissionConfiguration(AdmissionProperties properties) {
+        this.properties = properties;
+    }
+
+    @Bean
+    public AdmissionInterceptor admissionInterceptor() {
+        return new AdmissionInterceptor(properties);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(admissionInterceptor()).addPathPatterns("/user", "/user/**", "/users", "/users/**");
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.user.admission;
+
+import com.example.user.exception.AdmissionRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admits the requests of the controllers before they reach the services, by traffic class (see TrafficClass): a
+ * request is rejected with 429 when its client exceeds the rate of the class (see ClientRateLimiter), and with 503
+ * when the limit of requests in flight of the class is reached (see AdaptiveConcurrencyLimiter). The rejections are
+ * thrown as AdmissionRejectedException, answered by the ControllerExceptionHandler, so that an overload is answered at
+ * once instead of queueing for the connections of the database.
+ * <p>
+ * The client is named by the client header when the request comes from one of the trusted proxies, or else by its
+ * remote address. The latency of the handlers marked as not adaptive (see AdmissionClass), i.e: the bulk ones, does
+ * not adapt the limit of their class. The admitted and rejected requests are
+ * counted (users.admission.admitted, users.admission.rejected by class and reason) and the limits and requests in
+ * flight are gauged (users.admission.limit, users.admission.in.flight).
+ */
+public class AdmissionInterceptor implements AsyncHandlerInterceptor, MeterBinder {
+    private static final String ADMITTED = AdmissionInterceptor.class.getName() + ".admitted";
+
+    private final String clientHeader;
+    private final Set<String> trustedProxies;
+    private final Map<TrafficClass, Gate> gates = new EnumMap<>(TrafficClass.class);
+
+    public AdmissionInterceptor(AdmissionProperties properties) {
+        this.clientHeader = properties.getClientHeader();
+        this.trustedProxies = new HashSet<>(properties.getTrustedProxies());
+        gates.put(TrafficClass.READ, new Gate(properties.getStripes(), properties.getRead()));
+        gates.put(TrafficClass.WRITE, new Gate(properties.getStripes(), properties.getWrite()));
+        bindCounters(new CompositeMeterRegistry());
+    }
+
+    AdaptiveConcurrencyLimiter getConcurrencyLimiter(TrafficClass trafficClass) {
+        return gates.get(trafficClass).concurrency;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindCounters(registry);
+        gates.forEach((trafficClass, gate) -> {
+            Gauge.builder("users.admission.limit", gate.concurrency, AdaptiveConcurrencyLimiter::getLimit)
+                    .description("Requests of the class admitted in flight at once")
+                    .tag("class", tag(trafficClass))
+                    .register(registry);
+            Gauge.builder("users.admission.in.flight", gate.concurrency, AdaptiveConcurrencyLimiter::getInFlight)
+                    .description("Requests of the class in flight")
+                    .tag("class", tag(trafficClass))
+                    .register(registry);
+        });
+    }
+
+    private void bindCounters(MeterRegistry registry) {
+        gates.forEach((trafficClass, gate) -> {
+            gate.admitted = Counter.builder("users.admission.admitted")
+                    .description("Requests admitted")
+                    .tag("class", tag(trafficClass))
+                    .register(registry);
+            gate.rateLimited = rejected(registry, trafficClass, "rate");
+            gate.overloaded = rejected(registry, trafficClass, "concurrency");
+        });
+    }
+
+    private static Counter rejected(MeterRegistry registry, TrafficClass trafficClass, String reason) {
+        return Counter.builder("users.admission.rejected")
+                .description("Requests shed, by the rate of their client or the concurrency of their class")
+                .tag("class", tag(trafficClass))
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    private static String tag(TrafficClass trafficClass) {
+        return trafficClass.name().toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            // the asynchronous end of a request admitted by its first dispatch
+            return true;
+        }
+        AdmissionClass admissionClass = handler instanceof HandlerMethod
+                ? ((HandlerMethod) handler).getMethodAnnotation(AdmissionClass.class)
+                : null;
+        TrafficClass trafficClass = admissionClass != null ? admissionClass.value() : TrafficClass.of(request.getMethod());
+        Gate gate = gates.get(trafficClass);
+        long wait = gate.rate.tryAcquire(clientOf(request));
+        if (wait > 0) {
+            gate.rateLimited.increment();
+            throw new AdmissionRejectedException(tag(trafficClass), true, Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + 999_999_999)));
+        }
+        if (!gate.concurrency.tryAcquire()) {
+            gate.overloaded.increment();
+            throw new AdmissionRejectedException(tag(trafficClass), false, 1);
+        }
+        gate.admitted.increment();
+        request.setAttribute(ADMITTED, new Admission(gate.concurrency, admissionClass == null || admissionClass.adaptive(), System.nanoTime()));
+        return true;
+    }
+
+    /**
+     * This method releases a request that goes on asynchronously, i.e: a long poll, which waits without holding on
+     * the database: it neither counts against the limit nor adapts it
+     */
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        Admission admission = (Admission) request.getAttribute(ADMITTED);
+        if (admission != null) {
+            request.removeAttribute(ADMITTED);
+            admission.limiter.release();
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Admission admission = (Admission) request.getAttribute(ADMITTED);
+        if (admission != null) {
+            request.removeAttribute(ADMITTED);
+            if (admission.adaptive) {
+                admission.limiter.release(System.nanoTime() - admission.start, ex != null || response.getStatus() >= 500);
+            } else {
+                admission.limiter.release();
+            }
+        }
+    }
+
+    private String clientOf(HttpServletRequest request) {
+        String address = request.getRemoteAddr();
+        if (!trustedProxies.contains(address)) {
+            return address;
+        }
+        String client = request.getHeader(clientHeader);
+        return client != null && !client.isEmpty() ? client : address;
+    }
+
+    private static final class Gate {
+        private final ClientRateLimiter rate;
+        private final AdaptiveConcurrencyLimiter concurrency;
+        // no-op meters until the registry binds the real ones
+        private volatile Counter admitted;
+        private volatile Counter rateLimited;
+        private volatile Counter overloaded;
+
+        private Gate(int stripes, AdmissionProperties.Limits limits) {
+            this.rate = new ClientRateLimiter(stripes, limits.getRate(), limits.getBurst());
+            this.concurrency = new AdaptiveConcurrencyLimiter(limits.getInitialLimit(), limits.getMinLimit(),
+                    limits.getMaxLimit(), limits.getLatencyTarget().toNanos());
+        }
+    }
+
+    private static final class Admission {
+        private final AdaptiveConcurrencyLimiter limiter;
+        private final boolean adaptive;
+        private final long start;
+
+        private Admission(AdaptiveConcurrencyLimiter limiter, boolean adaptive, long start) {
+            this.limiter = limiter;
+            this.adaptive = adaptive;
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.user.admission;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The admission control of the requests, by traffic class.
+ * i.e: user.admission.write.rate=500
+ */
+@Data
+@ConfigurationProperties(prefix = "user.admission")
+public class AdmissionProperties {
+    private boolean enabled = true;
+    /**
+     * The header naming the client, the remote address being used without it
+     */
+    private String clientHeader = "X-Client-Id";
+    /**
+     * The remote addresses whose client header is trusted, i.e: the reverse proxies setting it. The client of another
+     * address is named by its address, whatever its header, so that it cannot escape its bucket nor drain another one
+     */
+    private List<String> trustedProxies = new ArrayList<>();
+    /**
+     * The number of token buckets the clients are spread over
+     */
+    private int stripes = 4096;
+    private Limits read = new Limits(2000, 4000, 64, 8, 512, Duration.ofMillis(200));
+    private Limits write = new Limits(500, 1000, 32, 4, 256, Duration.ofMillis(500));
+
+    @Data
+    public static class Limits {
+        /**
+         * The requests per second of a client, 0 for no limit
+         */
+        private double rate;
+        private int burst;
+        private int initialLimit;
+        private int minLimit;
+        private int maxLimit;
+        private Duration latencyTarget;
+
+        public Limits() {
+        }
+
+        Limits(double rate, int burst, int initialLimit, int minLimit, int maxLimit, Duration latencyTarget) {
+            this.rate = rate;
+            this.burst = burst;
+            this.initialLimit = initialLimit;
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            this.latencyTarget = latencyTarget;
+        }
+    }
+}
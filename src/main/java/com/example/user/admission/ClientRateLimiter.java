@@ -0,0 +1,81 @@
+package com.example.user.admission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets of the clients, striped by the hash of the client: a fixed array of buckets that the clients share
+ * when their hashes collide, so that the memory does not grow with the number of clients and no bucket is ever
+ * evicted. With enough stripes for the active clients, a collision only halves the rate of the two clients.
+ * <p>
+ * Each bucket is a single long, the theoretical arrival time of the generic cell rate algorithm: the time at which the
+ * bucket would be full again. A request takes one token by moving it one emission interval (1 / rate) further, which
+ * is rejected when it would end more than a burst of intervals after now. The move is a compare-and-set, so taking a
+ * token never locks.
+ */
+public final class ClientRateLimiter {
+    private final AtomicLongArray arrivals;
+    private final int mask;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final LongSupplier clock;
+
+    /**
+     * @param stripes       int the number of buckets, rounded up to a power of two
+     * @param ratePerSecond double the tokens given back to a client per second, 0 to admit every request
+     * @param burst         int the tokens of a full bucket
+     * @param clock         LongSupplier the time in nanoseconds
+     */
+    public ClientRateLimiter(int stripes, double ratePerSecond, int burst, LongSupplier clock) {
+        if (stripes <= 0 || burst <= 0 || ratePerSecond < 0) {
+            throw new IllegalArgumentException("The stripes and the burst must be positive, and the rate not negative");
+        }
+        int size = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.arrivals = new AtomicLongArray(size);
+        this.mask = size - 1;
+        this.intervalNanos = ratePerSecond == 0 ? 0 : Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond));
+        this.burstNanos = intervalNanos * burst;
+        // the buckets start full: the times are counted from a burst before the creation
+        long origin = clock.getAsLong() - burstNanos;
+        this.clock = () -> clock.getAsLong() - origin;
+    }
+
+    public ClientRateLimiter(int stripes, double ratePerSecond, int burst) {
+        this(stripes, ratePerSecond, burst, System::nanoTime);
+    }
+
+    public boolean isEnabled() {
+        return intervalNanos > 0;
+    }
+
+    int getStripes() {
+        return mask + 1;
+    }
+
+    /**
+     * This method takes a token from the bucket of the client
+     *
+     * @param client Object the key of the client
+     * @return long 0 if the request is admitted, else the nanoseconds until the bucket has a token again
+     */
+    public long tryAcquire(Object client) {
+        if (intervalNanos == 0) {
+            return 0;
+        }
+        int hash = client.hashCode() * 0x9E3779B9;
+        int stripe = (hash ^ hash >>> 16) & mask;
+        long now = clock.getAsLong();
+        while (true) {
+            long arrival = arrivals.get(stripe);
+            long next = Math.max(arrival, now) + intervalNanos;
+            long excess = next - now - burstNanos;
+            if (excess > 0) {
+                return excess;
+            }
+            if (arrivals.compareAndSet(stripe, arrival, next)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.user.admission;
+
+/**
+ * The classes of requests admitted separately, so that a burst of writes does not starve the reads, and the reverse
+ */
+public enum TrafficClass {
+    READ,
+    WRITE;
+
+    /**
+     * This method returns the class of a request without an @AdmissionClass: the safe methods are reads, the others
+     * writes
+     *
+     * @param method String the HTTP method
+     * @return TrafficClass
+     */
+    public static TrafficClass of(String method) {
+        return "GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method) ? READ : WRITE;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.user.aspect;
+
+import com.example.user.metrics.LatencySnapshot;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An aspect that records the latency of every call of the web, service, persistence and exception handling layers
+ * in a histogram per method (Micrometer timers: fixed memory, lock-free recording).
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class LatencyAspect {
+    public static final String TIMER_NAME = "users.latency";
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<Method, Timer> timers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Timer, String[]> timerNames = new ConcurrentHashMap<>();
+
+    @Around("controllers()")
+    public Object timeController(ProceedingJoinPoint proceedingJoinPoint) throws Throwable {
+        return time("web", proceedingJoinPoint);
+    }
+
+    @Around("services()")
+    public Object timeService(ProceedingJoinPoint proceedingJoinPoint) throws Throwable {
+        return time("service", proceedingJoinPoint);
+    }
+
+    @Around("repositories()")
+    public Object timeRepository(ProceedingJoinPoint proceedingJoinPoint) throws Throwable {
+        return time("persistence", proceedingJoinPoint);
+    }
+
+    @Around("exceptionHandlers()")
+    public Object timeExceptionHandler(ProceedingJoinPoint proceedingJoinPoint) throws Throwable {
+        return time("exception-handler", proceedingJoinPoint);
+    }
+
+    /**
+     * The latency percentiles of every recorded method
+     *
+     * @return List<LatencySnapshot>
+     */
+    public List<LatencySnapshot> snapshots() {
+        List<LatencySnapshot> snapshots = new ArrayList<>(timerNames.size());
+        timerNames.forEach((timer, names) -> snapshots.add(snapshot(names[0], names[1], timer.takeSnapshot())));
+        snapshots.sort((first, second) -> (first.getLayer() + first.getMethod()).compareTo(second.getLayer() + second.getMethod()));
+        return snapshots;
+    }
+
+    @Pointcut("execution(* com.example.user.controllers..*(..))")
+    public void controllers() {
+    }
+
+    @Pointcut("execution(* com.example.user.services.UserService.*(..))")
+    public void services() {
+    }
+
+    @Pointcut("execution(* com.example.user.repositories.UserRepository+.*(..))")
+    public void repositories() {
+    }
+
+    @Pointcut("execution(* com.example.user.exception.ControllerExceptionHandler.*(..))")
+    public void exceptionHandlers() {
+    }
+
+    private Object time(String layer, ProceedingJoinPoint proceedingJoinPoint) throws Throwable {
+        Timer timer = timer(layer, ((MethodSignature) proceedingJoinPoint.getSignature()).getMethod());
+        long start = System.nanoTime();
+        try {
+            return proceedingJoinPoint.proceed();
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Timer timer(String layer, Method method) {
+        Timer timer = timers.get(method);
+        if (timer == null) {
+            timer = timers.computeIfAbsent(method, m -> {
+                String name = m.getDeclaringClass().getSimpleName() + "." + m.getName();
+                Timer created = Timer.builder(TIMER_NAME)
+                        .tag("layer", layer)
+                        .tag("method", name)
+                        .publishPercentiles(PERCENTILES)
+                        .percentilePrecision(2)
+                        .register(meterRegistry);
+                timerNames.put(created, new String[]{layer, name});
+                return created;
+            });
+        }
+        return timer;
+    }
+
+    private static LatencySnapshot snapshot(String layer, String method, HistogramSnapshot histogram) {
+        LatencySnapshot snapshot = new LatencySnapshot();
+        snapshot.setLayer(layer);
+        snapshot.setMethod(method);
+        snapshot.setCount(histogram.count());
+        for (ValueAtPercentile value : histogram.percentileValues()) {
+            double millis = value.value(TimeUnit.MILLISECONDS);
+            if (value.percentile() == 0.5) {
+                snapshot.setP50(millis);
+            } else if (value.percentile() == 0.9) {
+                snapshot.setP90(millis);
+            } else if (value.percentile() == 0.99) {
+                snapshot.setP99(millis);
+            } else if (value.percentile() == 0.999) {
+                snapshot.setP999(millis);
+            }
+        }
+        snapshot.setMax(histogram.max(TimeUnit.MILLISECONDS));
+        return snapshot;
+    }
+}
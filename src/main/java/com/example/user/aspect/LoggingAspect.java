@@ -5,6 +5,7 @@ import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
 import org.aspectj.lang.reflect.MethodSignature;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,12 +18,15 @@ import java.util.Arrays;
  */
 @Aspect
 @Component
+@RequiredArgsConstructor
 public class LoggingAspect {
     private final Logger log = LoggerFactory.getLogger(this.getClass());
+    private final SampledTracer sampledTracer;
 
     /**
      * Declares the around advice that is applied before and after the method matching with a pointcut expression
      * Logs input and output arguments of each method as well as the processing time
+     * In sampled mode (user.tracing.mode=sampled), only some calls are traced, off the request thread, by the SampledTracer
      *
      * @param proceedingJoinPoint ProceedingJoinPoint
      * @return Object
@@ -30,6 +34,9 @@ public class LoggingAspect {
      */
     @Around("tracePointcut()")
     public Object methodTimeLogger(ProceedingJoinPoint proceedingJoinPoint) throws Throwable {
+        if (sampledTracer.isEnabled()) {
+            return sampledTracer.trace(proceedingJoinPoint);
+        }
 
         MethodSignature methodSignature = (MethodSignature) proceedingJoinPoint.getSignature();
 
@@ -0,0 +1,179 @@
+package com.example.user.aspect;
+
+import com.example.user.logging.LogRateLimiter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The low-overhead tracing mode of the LoggingAspect.
+ * Only 1 call in N, the slow calls and the failed calls are traced, the failed calls up to failures-per-second beyond
+ * the sampled ones, so that a flood of 404 does not fill the buffer. The request thread claims a slot of a lock-free ring
+ * buffer, then renders the arguments and the result of the traced call into it before the caller can change them;
+ * they are logged by a background writer thread. When the buffer is full the trace is dropped and counted before
+ * anything is rendered, the request is never slowed down.
+ */
+@Slf4j
+@Component
+public class SampledTracer implements MeterBinder, DisposableBean {
+    private final boolean enabled;
+    private final int sampleRate;
+    private final long slowThresholdNanos;
+    private final int failuresPerSecond;
+    private final LogRateLimiter failureTraces = new LogRateLimiter();
+    private final TraceRingBuffer<Trace> buffer;
+    private final AtomicLong written = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public SampledTracer(@Value("${user.tracing.mode:full}") String mode,
+                         @Value("${user.tracing.sample-rate:100}") int sampleRate,
+                         @Value("${user.tracing.slow-threshold-ms:500}") long slowThresholdMs,
+                         @Value("${user.tracing.buffer-size:1024}") int bufferSize,
+                         @Value("${user.tracing.failures-per-second:10}") int failuresPerSecond) {
+        this.enabled = "sampled".equalsIgnoreCase(mode);
+        this.sampleRate = Math.max(1, sampleRate);
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMs);
+        this.failuresPerSecond = failuresPerSecond;
+        this.buffer = new TraceRingBuffer<>(bufferSize);
+        this.writer = new Thread(this::drain, "trace-writer");
+        this.writer.setDaemon(true);
+        if (enabled) {
+            writer.start();
+        }
+    }
+
+    /**
+     * Tells whether the sampled mode is selected (user.tracing.mode=sampled) instead of the full synchronous logging
+     *
+     * @return boolean
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Proceeds with the intercepted call and, if it is sampled, slow or failed, queues its trace for the writer
+     *
+     * @param proceedingJoinPoint ProceedingJoinPoint
+     * @return Object
+     * @throws Throwable if there is any Exception
+     */
+    public Object trace(ProceedingJoinPoint proceedingJoinPoint) throws Throwable {
+        long start = System.nanoTime();
+        Object result = null;
+        Throwable failure = null;
+        try {
+            result = proceedingJoinPoint.proceed();
+            return result;
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            long untracedFailures = 0;
+            if (elapsed >= slowThresholdNanos || ThreadLocalRandom.current().nextInt(sampleRate) == 0
+                    || failure != null && (untracedFailures = failureTraces.tryAcquire(failuresPerSecond)) >= 0) {
+                long slot = buffer.claim();
+                if (slot >= 0) {
+                    buffer.publish(slot, render(proceedingJoinPoint, result, failure, elapsed, Math.max(0, untracedFailures)));
+                }
+            }
+        }
+    }
+
+    // a claimed slot must always be published, even if an argument or the result cannot be rendered
+    private static Trace render(ProceedingJoinPoint proceedingJoinPoint, Object result, Throwable failure, long elapsed,
+                                long untracedFailures) {
+        Signature signature = proceedingJoinPoint.getSignature();
+        String failed = failure == null ? null : String.valueOf(failure);
+        try {
+            return new Trace(signature, Arrays.toString(proceedingJoinPoint.getArgs()), String.valueOf(result), failed,
+                    elapsed, untracedFailures);
+        } catch (RuntimeException e) {
+            return new Trace(signature, "[unrenderable: " + e + "]", null, failed, elapsed, untracedFailures);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("users.tracing.records", written, AtomicLong::get)
+                .tag("result", "written")
+                .register(registry);
+        FunctionCounter.builder("users.tracing.records", buffer, TraceRingBuffer::dropped)
+                .tag("result", "dropped")
+                .description("Traces dropped because the buffer was full")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(1));
+    }
+
+    private void drain() {
+        while (running) {
+            if (!writeAvailable()) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+        writeAvailable();
+    }
+
+    private boolean writeAvailable() {
+        boolean any = false;
+        Trace trace;
+        while ((trace = buffer.poll()) != null) {
+            any = true;
+            write(trace);
+        }
+        return any;
+    }
+
+    private void write(Trace trace) {
+        try {
+            long micros = TimeUnit.NANOSECONDS.toMicros(trace.elapsedNanos);
+            if (trace.failure != null) {
+                log.error("Exception in {}.{}({}) after {} µs: {} ({} failed calls not traced before)", trace.signature.getDeclaringTypeName(),
+                        trace.signature.getName(), trace.args, micros, trace.failure, trace.untracedFailures);
+            } else {
+                log.info("{}.{}() with argument[s] = {} returned {} in {} µs", trace.signature.getDeclaringTypeName(),
+                        trace.signature.getName(), trace.args, trace.result, micros);
+            }
+            written.incrementAndGet();
+        } catch (RuntimeException e) {
+            log.warn("Could not write the trace of {}", trace.signature, e);
+        }
+    }
+
+    private static final class Trace {
+        private final Signature signature;
+        private final String args;
+        private final String result;
+        private final String failure;
+        private final long elapsedNanos;
+        private final long untracedFailures;
+
+        private Trace(Signature signature, String args, String result, String failure, long elapsedNanos, long untracedFailures) {
+            this.signature = signature;
+            this.args = args;
+            this.result = result;
+            this.failure = failure;
+            this.elapsedNanos = elapsedNanos;
+            this.untracedFailures = untracedFailures;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.user.aspect;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded lock-free ring buffer with many producers and a single consumer.
+ * Producers never block: when the buffer is full the element is dropped and counted.
+ *
+ * @param <E> the type of the elements
+ */
+class TraceRingBuffer<E> {
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long head;
+
+    TraceRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Adds an element, or drops it if the buffer is full. Can be called by any thread.
+     *
+     * @param element E
+     * @return boolean true if the element was added
+     */
+    boolean offer(E element) {
+        long claimed = claim();
+        if (claimed < 0) {
+            return false;
+        }
+        publish(claimed, element);
+        return true;
+    }
+
+    /**
+     * Claims the next free slot, or counts a drop if the buffer is full, so that a producer builds its element only
+     * when it has room for it. Can be called by any thread. The claimed slot must then be published: the consumer
+     * stops at it until then.
+     *
+     * @return long the claimed slot, -1 if the buffer is full
+     */
+    long claim() {
+        long claimed;
+        do {
+            claimed = tail.get();
+            if (claimed - head > mask) {
+                dropped.incrementAndGet();
+                return -1;
+            }
+        } while (!tail.compareAndSet(claimed, claimed + 1));
+        return claimed;
+    }
+
+    /**
+     * Fills a slot returned by claim
+     *
+     * @param claimed long the claimed slot
+     * @param element E
+     */
+    void publish(long claimed, E element) {
+        slots.lazySet((int) claimed & mask, element);
+    }
+
+    /**
+     * Removes the oldest element. Must only be called by the consumer thread.
+     *
+     * @return E the element, or null if there is none
+     */
+    E poll() {
+        long current = head;
+        int index = (int) current & mask;
+        E element = slots.get(index);
+        if (element == null) {
+            return null;
+        }
+        slots.lazySet(index, null);
+        head = current + 1;
+        return element;
+    }
+
+    long dropped() {
+        return dropped.get();
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.user.changelog;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * Keeps the change log of the users (see UserChangeLog) in the segments of user.changelog.dir when
+ * user.changelog.enabled.
+ */
+@Configuration
+@ConditionalOnProperty(name = "user.changelog.enabled", havingValue = "true")
+public class ChangeLogConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public SegmentLog userChangeSegmentLog(@Value("${user.changelog.dir:changelog}") String directory,
+                                           @Value("${user.changelog.segment-bytes:64MB}") DataSize segmentBytes) throws IOException {
+        return new SegmentLog(Paths.get(directory), (int) segmentBytes.toBytes());
+    }
+
+    @Bean(destroyMethod = "close")
+    public UserChangeLog userChangeLog(SegmentLog userChangeSegmentLog, ObjectMapper objectMapper,
+                                       @Value("${user.changelog.retention:7d}") Duration retention,
+                                       @Value("${user.changelog.retention-bytes:1GB}") DataSize retentionBytes) {
+        return new UserChangeLog(userChangeSegmentLog, objectMapper, retention, retentionBytes.toBytes());
+    }
+}
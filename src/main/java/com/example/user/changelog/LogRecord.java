@@ -0,0 +1,13 @@
+package com.example.user.changelog;
+
+import lombok.Data;
+
+/**
+ * A record of the SegmentLog: its payload, at its offset, appended at its time (epoch millis)
+ */
+@Data
+public class LogRecord {
+    private final long offset;
+    private final long time;
+    private final byte[] payload;
+}
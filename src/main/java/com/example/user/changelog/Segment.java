@@ -0,0 +1,207 @@
+package com.example.user.changelog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * One file of the SegmentLog, mapped in memory at its full size: the records follow each other from the start of the
+ * file, each one being a header (the length of the payload, the CRC32 of the payload, the offset of the record and
+ * its time in epoch millis) and the payload. The end of the records is the first header that is zero, torn or out of
+ * sequence.
+ * <p>
+ * A record is found by its offset from a sparse index of the positions of every INDEX_INTERVAL records. The records
+ * are appended by one thread at a time (under the lock of the log) while any thread reads them, up to the offsets the
+ * log published.
+ */
+final class Segment {
+    static final int HEADER = 24;
+    private static final int INDEX_INTERVAL = 64;
+
+    private final long baseOffset;
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    // the view of the appending thread
+    private final ByteBuffer writer;
+    private final CRC32 crc = new CRC32();
+    private int position;
+    private volatile long nextOffset;
+    private volatile long lastTime;
+    private volatile int[] index = new int[16];
+    private volatile int indexed;
+
+    private Segment(long baseOffset, Path file, int size) throws IOException {
+        this.baseOffset = baseOffset;
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        this.writer = buffer.duplicate();
+        this.nextOffset = baseOffset;
+    }
+
+    /**
+     * This method creates an empty segment
+     *
+     * @param baseOffset long the offset of its first record
+     * @param file       Path
+     * @param size       int the size of the file
+     * @return Segment
+     */
+    static Segment create(long baseOffset, Path file, int size) throws IOException {
+        return new Segment(baseOffset, file, size);
+    }
+
+    /**
+     * This method opens a segment written before, and finds the end of its records
+     *
+     * @param baseOffset long the offset of its first record
+     * @param file       Path
+     * @return Segment
+     */
+    static Segment open(long baseOffset, Path file) throws IOException {
+        long size;
+        try (FileChannel existing = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = existing.size();
+        }
+        Segment segment = new Segment(baseOffset, file, (int) size);
+        segment.recover();
+        return segment;
+    }
+
+    private void recover() {
+        long offset = baseOffset;
+        int at = 0;
+        while (at + HEADER <= buffer.capacity()) {
+            int length = buffer.getInt(at);
+            if (length <= 0 || length > buffer.capacity() - at - HEADER || buffer.getLong(at + 8) != offset
+                    || buffer.getInt(at + 4) != checksum(at + HEADER, length)) {
+                break;
+            }
+            if ((offset - baseOffset) % INDEX_INTERVAL == 0) {
+                addToIndex(at);
+            }
+            lastTime = buffer.getLong(at + 16);
+            at += HEADER + length;
+            offset++;
+        }
+        position = at;
+        nextOffset = offset;
+    }
+
+    long getBaseOffset() {
+        return baseOffset;
+    }
+
+    long getNextOffset() {
+        return nextOffset;
+    }
+
+    long getLastTime() {
+        return lastTime;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    int getSize() {
+        return buffer.capacity();
+    }
+
+    boolean isEmpty() {
+        return nextOffset == baseOffset;
+    }
+
+    boolean fits(int length) {
+        return position + HEADER + length <= buffer.capacity();
+    }
+
+    /**
+     * This method appends a record, which must fit. Only one thread at a time may append.
+     *
+     * @param payload byte[]
+     * @param time    long epoch millis
+     * @return long the offset of the record
+     */
+    long append(byte[] payload, long time) {
+        long offset = nextOffset;
+        if ((offset - baseOffset) % INDEX_INTERVAL == 0) {
+            addToIndex(position);
+        }
+        crc.reset();
+        crc.update(payload, 0, payload.length);
+        writer.position(position);
+        writer.putInt(payload.length).putInt((int) crc.getValue()).putLong(offset).putLong(time).put(payload);
+        position = writer.position();
+        lastTime = time;
+        nextOffset = offset + 1;
+        return offset;
+    }
+
+    /**
+     * This method reads the records from an offset of the segment
+     *
+     * @param from  long the offset of the first record, at least the base offset
+     * @param until long the offset after the last record to read
+     * @param max   int the number of records to read at most
+     * @param out   List<LogRecord> the records read
+     */
+    void read(long from, long until, int max, List<LogRecord> out) {
+        until = Math.min(until, nextOffset);
+        if (from >= until) {
+            return;
+        }
+        int entry = (int) ((from - baseOffset) / INDEX_INTERVAL);
+        int count = indexed;
+        int at = index[Math.min(entry, count - 1)];
+        long offset = baseOffset + (long) Math.min(entry, count - 1) * INDEX_INTERVAL;
+        ByteBuffer reader = buffer.duplicate();
+        for (; offset < until && max > 0; offset++) {
+            int length = reader.getInt(at);
+            if (offset >= from) {
+                byte[] payload = new byte[length];
+                reader.position(at + HEADER);
+                reader.get(payload);
+                out.add(new LogRecord(offset, reader.getLong(at + 16), payload));
+                max--;
+            }
+            at += HEADER + length;
+        }
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    private void addToIndex(int at) {
+        int count = indexed;
+        int[] entries = index;
+        if (count == entries.length) {
+            entries = Arrays.copyOf(entries, count * 2);
+        }
+        entries[count] = at;
+        index = entries;
+        // published after the entry, for the readers that read the count first
+        indexed = count + 1;
+    }
+
+    private int checksum(int at, int length) {
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(at);
+        payload.limit(at + length);
+        crc.reset();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,382 @@
+package com.example.user.changelog;
+
+import com.example.user.exception.ChangeOffsetOutOfRangeException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An append-only log of records with monotonic offsets (0, 1, 2...), kept in a directory of segment files of a fixed
+ * size mapped in memory (see Segment), each one named after the offset of its first record. A record is appended by
+ * copying it in the mapped file of the last segment, a new segment being started when it is full, so an append never
+ * waits for the disk.
+ * <p>
+ * The appends are made durable with a group commit: a flusher thread forces the segments written since its last
+ * force, for all the records appended in the meantime, then publishes their offsets as committed. Only the committed
+ * records are read, so a reader never sees a record that a crash of the machine could take back, and the readers
+ * waiting for new records are woken by the commit.
+ * <p>
+ * The retention removes the oldest segments, whole, when they are older or take more space than allowed: the log then
+ * starts at the first offset of the next one. The directory is locked, for a single log at a time.
+ * The records per force are measured (users.changelog.commit.records) and the offsets gauged (users.changelog.offset).
+ */
+@Slf4j
+public class SegmentLog implements MeterBinder, Closeable {
+    private static final Pattern SEGMENT_NAME = Pattern.compile("(\\d{20})\\.log");
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    // the appends and the flusher synchronize on it
+    private final Object appendLock = new Object();
+    private final Object commitMonitor = new Object();
+    private final Set<Waiter> waiters = ConcurrentHashMap.newKeySet();
+    private final Thread flusher;
+    private Segment active;
+    private final List<Segment> rolled = new ArrayList<>();
+    private long end;
+    private volatile long committed;
+    private volatile boolean closed;
+    // no-op meter until the registry binds the real one
+    private volatile DistributionSummary commitRecords;
+
+    /**
+     * @param directory    Path the directory of the segments, created if needed
+     * @param segmentBytes int the size of a segment file, which bounds the size of a record
+     */
+    public SegmentLog(Path directory, int segmentBytes) throws IOException {
+        if (segmentBytes <= Segment.HEADER) {
+            throw new IllegalArgumentException("A segment must be larger than " + Segment.HEADER + " bytes");
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(directory);
+        this.lockChannel = FileChannel.open(directory.resolve(".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock fileLock;
+        try {
+            fileLock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            fileLock = null;
+        }
+        if (fileLock == null) {
+            lockChannel.close();
+            throw new IllegalStateException("The log " + directory + " is already opened by another process");
+        }
+        this.lock = fileLock;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.log")) {
+            for (Path file : files) {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    long baseOffset = Long.parseLong(matcher.group(1));
+                    segments.put(baseOffset, Segment.open(baseOffset, file));
+                }
+            }
+        }
+        long expected = segments.isEmpty() ? 0 : segments.firstKey();
+        for (Segment segment : segments.values()) {
+            if (segment.getBaseOffset() != expected) {
+                log.warn("The log {} misses the offsets {} to {}", directory, expected, segment.getBaseOffset() - 1);
+            }
+            expected = segment.getNextOffset();
+        }
+        if (segments.isEmpty()) {
+            segments.put(0L, Segment.create(0, segmentFile(0), segmentBytes));
+        }
+        this.active = segments.lastEntry().getValue();
+        this.end = active.getNextOffset();
+        this.committed = end;
+        this.commitRecords = commitRecords(new CompositeMeterRegistry());
+        log.info("Log {} opened with the offsets {} to {} in {} segments", directory, getStartOffset(), end, segments.size());
+        this.flusher = new Thread(this::flush, "segment-log-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        commitRecords = commitRecords(registry);
+        Gauge.builder("users.changelog.offset", this, SegmentLog::getStartOffset)
+                .description("The first offset of the change log, and the offset after its last committed record")
+                .tag("position", "start")
+                .register(registry);
+        Gauge.builder("users.changelog.offset", this, SegmentLog::getCommittedOffset)
+                .description("The first offset of the change log, and the offset after its last committed record")
+                .tag("position", "committed")
+                .register(registry);
+        Gauge.builder("users.changelog.segments", segments, Map::size)
+                .description("The segment files of the change log")
+                .register(registry);
+    }
+
+    private static DistributionSummary commitRecords(MeterRegistry registry) {
+        return DistributionSummary.builder("users.changelog.commit.records")
+                .description("The records made durable by one force of the change log")
+                .register(registry);
+    }
+
+    public long getStartOffset() {
+        return segments.firstKey();
+    }
+
+    /**
+     * @return long the offset after the last committed record, i.e: of the next record to read
+     */
+    public long getCommittedOffset() {
+        return committed;
+    }
+
+    /**
+     * This method appends records, in order, at the same time. They are readable once committed.
+     *
+     * @param payloads List<byte[]>
+     * @param time     long epoch millis
+     * @return long the offset of the first record
+     */
+    public long append(List<byte[]> payloads, long time) {
+        for (byte[] payload : payloads) {
+            if (payload.length > segmentBytes - Segment.HEADER) {
+                throw new IllegalArgumentException("A record of " + payload.length + " bytes does not fit in a segment of " + segmentBytes);
+            }
+        }
+        synchronized (appendLock) {
+            if (closed) {
+                throw new IllegalStateException("The log " + directory + " is closed");
+            }
+            long first = end;
+            for (byte[] payload : payloads) {
+                if (!active.fits(payload.length)) {
+                    roll();
+                }
+                active.append(payload, time);
+            }
+            end = active.getNextOffset();
+            appendLock.notify();
+            return first;
+        }
+    }
+
+    private void roll() {
+        long baseOffset = active.getNextOffset();
+        Segment next;
+        try {
+            next = Segment.create(baseOffset, segmentFile(baseOffset), segmentBytes);
+        } catch (IOException e) {
+            throw new IllegalStateException("The segment " + baseOffset + " of the log " + directory + " cannot be created", e);
+        }
+        rolled.add(active);
+        segments.put(baseOffset, next);
+        active = next;
+    }
+
+    /**
+     * This method reads the committed records from an offset
+     *
+     * @param from long the offset of the first record, between the start and the committed offsets
+     * @param max  int the number of records to read at most
+     * @return List<LogRecord> empty if no record is committed from the offset yet
+     */
+    public List<LogRecord> read(long from, int max) {
+        long until = committed;
+        Long base = segments.floorKey(from);
+        if (base == null || from < getStartOffset() || from > until) {
+            throw new ChangeOffsetOutOfRangeException(from, getStartOffset(), until);
+        }
+        List<LogRecord> records = new ArrayList<>(Math.min(max, (int) Math.min(until - from, 1024)));
+        // a segment removed meanwhile by the retention can still be read: its file stays mapped
+        for (Segment segment : segments.tailMap(base).values()) {
+            if (records.size() >= max || segment.getBaseOffset() >= until) {
+                break;
+            }
+            segment.read(from, until, max - records.size(), records);
+            if (!records.isEmpty()) {
+                from = records.get(records.size() - 1).getOffset() + 1;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * This method runs an action once a record is committed at or after an offset: at once if one is, else in the
+     * flusher thread after the commit, so the action must be short
+     *
+     * @param offset long
+     * @param action Runnable
+     * @return Runnable cancels the action if it did not run yet
+     */
+    public Runnable whenCommittedBeyond(long offset, Runnable action) {
+        Waiter waiter = new Waiter(action);
+        waiters.add(waiter);
+        if (committed > offset && waiters.remove(waiter)) {
+            action.run();
+        }
+        return () -> waiters.remove(waiter);
+    }
+
+    /**
+     * This method waits until a record is committed at or after an offset
+     *
+     * @param offset        long
+     * @param timeoutMillis long
+     * @return boolean false if none is after the timeout
+     * @throws InterruptedException when interrupted
+     */
+    public boolean awaitCommittedBeyond(long offset, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (commitMonitor) {
+            long left;
+            while (committed <= offset && !closed && (left = deadline - System.currentTimeMillis()) > 0) {
+                commitMonitor.wait(left);
+            }
+        }
+        return committed > offset;
+    }
+
+    /**
+     * This method removes the oldest segments while they are older than a time or the segments take more than a
+     * size. The last segment, and the ones not committed yet, are never removed.
+     *
+     * @param minTime  long the epoch millis of the oldest record to keep
+     * @param maxBytes long the size of the segment files to keep
+     * @return int the number of removed segments
+     */
+    public int applyRetention(long minTime, long maxBytes) {
+        List<Segment> removed = new ArrayList<>();
+        synchronized (appendLock) {
+            long bytes = 0;
+            for (Segment segment : segments.values()) {
+                bytes += segment.getSize();
+            }
+            for (Segment segment : segments.values()) {
+                if (segment == active || rolled.contains(segment) || segment.getLastTime() >= minTime && bytes <= maxBytes) {
+                    break;
+                }
+                segments.remove(segment.getBaseOffset());
+                bytes -= segment.getSize();
+                removed.add(segment);
+            }
+        }
+        for (Segment segment : removed) {
+            try {
+                segment.close();
+                Files.deleteIfExists(segment.getFile());
+            } catch (IOException e) {
+                log.warn("The segment {} cannot be deleted", segment.getFile(), e);
+            }
+        }
+        if (!removed.isEmpty()) {
+            log.info("Retention of the log {}: {} segments removed, it starts at offset {}", directory, removed.size(), getStartOffset());
+        }
+        return removed.size();
+    }
+
+    private void flush() {
+        while (true) {
+            long target;
+            List<Segment> toForce;
+            synchronized (appendLock) {
+                while (end == committed && !closed) {
+                    try {
+                        appendLock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (end == committed) {
+                    return;
+                }
+                target = end;
+                toForce = new ArrayList<>(rolled);
+                toForce.add(active);
+            }
+            try {
+                toForce.forEach(Segment::force);
+            } catch (RuntimeException e) {
+                log.error("The log {} cannot be forced to the disk, retrying", directory, e);
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                continue;
+            }
+            synchronized (appendLock) {
+                rolled.removeAll(toForce);
+            }
+            commitRecords.record(target - committed);
+            synchronized (commitMonitor) {
+                committed = target;
+                commitMonitor.notifyAll();
+            }
+            for (Waiter waiter : waiters) {
+                if (waiters.remove(waiter)) {
+                    try {
+                        waiter.action.run();
+                    } catch (RuntimeException e) {
+                        log.warn("A reader of the log {} failed on the commit", directory, e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * This method commits the records appended so far, then closes the segments
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            closed = true;
+            appendLock.notify();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (commitMonitor) {
+            commitMonitor.notifyAll();
+        }
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+        lock.release();
+        lockChannel.close();
+    }
+
+    private Path segmentFile(long baseOffset) {
+        return directory.resolve(String.format("%020d.log", baseOffset));
+    }
+
+    private static final class Waiter {
+        private final Runnable action;
+
+        private Waiter(Runnable action) {
+            this.action = action;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.user.changelog;
+
+import com.example.user.dto.UserChange;
+
+/**
+ * A consumer of the changes of users subscribed to the UserChangeLog. The changes are delivered in the order of
+ * their offsets, one at a time.
+ */
+@FunctionalInterface
+public interface UserChangeListener {
+
+    /**
+     * This method handles a change. An exception ends the subscription, to be resumed from the offset of the change.
+     *
+     * @param change UserChange
+     */
+    void onChange(UserChange change);
+}
@@ -0,0 +1,253 @@
+package com.example.user.changelog;
+
+import com.example.user.domain.User;
+import com.example.user.dto.UserChange;
+import com.example.user.dto.UserChangeBatch;
+import com.example.user.dto.UserDto;
+import com.example.user.mapper.UserMapper;
+import com.example.user.services.UserChangedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The change log of the users: every change published by the UserService (see UserChangedEvent) is appended to a
+ * SegmentLog once its transaction is committed, as the JSON of the user after the change. The offset of a change is
+ * its position in the log, so a consumer resumes from the offset after the last change it handled, either by reading
+ * the changes (the long poll of GET /users/changes) or by subscribing in-process.
+ * <p>
+ * The changes are appended after their commits, by the threads of the writes, so two changes of a user committed in
+ * a row may reach the log in the other order. The version of the user, taken by the transaction, orders them: a change
+ * older than the last one appended for its user is not appended, so that the last change of a user in the log always
+ * gives its current state (an update may then come first in the log when it overtook the creation). The changes of
+ * different users are in the order of their appends.
+ * <p>
+ * The append only copies the change in the mapped log: the registration does not wait for the disk, the change being
+ * readable once the next group commit made it durable. A change of a transaction committed just before a crash of the
+ * process may be missing from the log. The segments older than the retention, or beyond the retention bytes, are
+ * removed every retention-check-interval-ms.
+ */
+@Slf4j
+public class UserChangeLog implements Closeable {
+    private static final int SUBSCRIPTION_BATCH = 500;
+    // a change overtaken by a later one of its user arrives in the next moments: only the recent versions are kept
+    private static final int RECENT_VERSIONS = 100_000;
+    private static final Duration RECENT_VERSIONS_RETENTION = Duration.ofMinutes(1);
+
+    private final SegmentLog segmentLog;
+    private final ObjectMapper objectMapper;
+    private final Duration retention;
+    private final long retentionBytes;
+    // the version of the last change appended, by user id; guarded by itself with the append
+    private final Cache<Long, Long> appendedVersions = Caffeine.newBuilder()
+            .maximumSize(RECENT_VERSIONS)
+            .expireAfterWrite(RECENT_VERSIONS_RETENTION)
+            .build();
+    // the long polls woken by a commit read their changes here rather than in the flusher of the log
+    private final ExecutorService notifier = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-change-log-notifier");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public UserChangeLog(SegmentLog segmentLog, ObjectMapper objectMapper, Duration retention, long retentionBytes) {
+        this.segmentLog = segmentLog;
+        this.objectMapper = objectMapper;
+        this.retention = retention;
+        this.retentionBytes = retentionBytes;
+    }
+
+    /**
+     * This method appends the committed changes of users, in the thread of the write, except the ones older than the
+     * last change appended for their user. A change that cannot be appended is logged, the write itself being already
+     * committed.
+     *
+     * @param event UserChangedEvent
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.getUsers().isEmpty()) {
+            return;
+        }
+        try {
+            List<byte[]> payloads = new ArrayList<>(event.getUsers().size());
+            for (User user : event.getUsers()) {
+                payloads.add(objectMapper.writeValueAsBytes(new StoredChange(event.getType(), UserMapper.INSTANCE.convertToDto(user))));
+            }
+            synchronized (appendedVersions) {
+                List<User> users = new ArrayList<>(payloads.size());
+                List<byte[]> current = new ArrayList<>(payloads.size());
+                for (int i = 0; i < payloads.size(); i++) {
+                    User user = event.getUsers().get(i);
+                    Long appended = appendedVersions.getIfPresent(user.getId());
+                    if (appended == null || appended < user.getVersion()) {
+                        users.add(user);
+                        current.add(payloads.get(i));
+                    }
+                }
+                if (current.size() < payloads.size()) {
+                    log.debug("{} changes of users overtaken by later ones are not appended", payloads.size() - current.size());
+                }
+                if (!current.isEmpty()) {
+                    segmentLog.append(current, System.currentTimeMillis());
+                    users.forEach(user -> appendedVersions.put(user.getId(), user.getVersion()));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("{} changes of users cannot be appended to the change log", event.getUsers().size(), e);
+        }
+    }
+
+    public long getStartOffset() {
+        return segmentLog.getStartOffset();
+    }
+
+    public long getEndOffset() {
+        return segmentLog.getCommittedOffset();
+    }
+
+    /**
+     * This method reads the changes from an offset
+     *
+     * @param offset long between the start and the end offsets
+     * @param limit  int the number of changes to read at most
+     * @return UserChangeBatch empty if there is no change from the offset yet
+     */
+    public UserChangeBatch read(long offset, int limit) {
+        List<LogRecord> records = segmentLog.read(offset, limit);
+        List<UserChange> changes = new ArrayList<>(records.size());
+        for (LogRecord record : records) {
+            try {
+                StoredChange stored = objectMapper.readValue(record.getPayload(), StoredChange.class);
+                changes.add(new UserChange(record.getOffset(), Instant.ofEpochMilli(record.getTime()), stored.getType(), stored.getUser()));
+            } catch (IOException e) {
+                throw new UncheckedIOException("The change at offset " + record.getOffset() + " cannot be read", e);
+            }
+        }
+        return new UserChangeBatch(changes, records.isEmpty() ? offset : records.get(records.size() - 1).getOffset() + 1);
+    }
+
+    /**
+     * This method runs an action, in a thread of the change log, once there are changes from an offset
+     *
+     * @param offset long
+     * @param action Runnable
+     * @return Runnable cancels the action if it did not run yet
+     */
+    public Runnable whenAvailable(long offset, Runnable action) {
+        return segmentLog.whenCommittedBeyond(offset, () -> notifier.execute(action));
+    }
+
+    /**
+     * This method delivers the changes from an offset to a listener, in a thread of the subscription, then the new
+     * ones as they are committed. The subscription ends when closed, or when the listener fails: it is then logged
+     * with the offset of the change to resume from.
+     *
+     * @param offset   long the offset of the first change to deliver
+     * @param listener UserChangeListener
+     * @return Subscription
+     */
+    public Subscription subscribe(long offset, UserChangeListener listener) {
+        Subscription subscription = new Subscription(offset, listener);
+        Thread thread = new Thread(subscription, "user-change-subscription");
+        thread.setDaemon(true);
+        thread.start();
+        return subscription;
+    }
+
+    /**
+     * This method removes the segments of the changes older than the retention, or beyond the retention bytes
+     */
+    @Scheduled(fixedDelayString = "${user.changelog.retention-check-interval-ms:60000}",
+            initialDelayString = "${user.changelog.retention-check-interval-ms:60000}")
+    public void applyRetention() {
+        segmentLog.applyRetention(System.currentTimeMillis() - retention.toMillis(), retentionBytes);
+    }
+
+    @Override
+    public void close() {
+        notifier.shutdownNow();
+    }
+
+    /**
+     * A delivery of the changes to a listener, from its offset on
+     */
+    public final class Subscription implements Runnable, Closeable {
+        private final UserChangeListener listener;
+        private volatile long offset;
+        private volatile boolean closed;
+
+        private Subscription(long offset, UserChangeListener listener) {
+            this.offset = offset;
+            this.listener = listener;
+        }
+
+        /**
+         * @return long the offset of the next change to deliver
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    UserChangeBatch batch = read(offset, SUBSCRIPTION_BATCH);
+                    for (UserChange change : batch.getChanges()) {
+                        if (closed) {
+                            return;
+                        }
+                        listener.onChange(change);
+                        offset = change.getOffset() + 1;
+                    }
+                    if (batch.getChanges().isEmpty()) {
+                        segmentLog.awaitCommittedBeyond(offset, 1000);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.error("The subscription to the changes of users ended, to resume from offset {}", offset, e);
+            } finally {
+                closed = true;
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    /**
+     * A change as stored in the log, which gives its offset and time
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class StoredChange {
+        private UserChange.Type type;
+        private UserDto user;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.user.controllers;
+
+import com.example.user.changelog.UserChangeLog;
+import com.example.user.dto.UserChangeBatch;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A controller in charge of the change log of the users, for the downstream systems
+ */
+@RestController
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "user.changelog.enabled", havingValue = "true")
+public class UserChangeController {
+    private final UserChangeLog userChangeLog;
+
+    @Value("${user.changelog.max-wait:30s}")
+    private Duration maxWait = Duration.ofSeconds(30);
+
+    @Value("${user.changelog.max-limit:1000}")
+    private int maxLimit = 1000;
+
+    /**
+     * This method answers the changes of users from an offset, in order. When there is none yet, the request waits
+     * for the next ones up to the wait (a long poll), without holding a request thread, and is answered with no
+     * change after it. A consumer resumes from the nextOffset of the answer.
+     * An offset removed by the retention is answered 410.
+     *
+     * @param offset long the offset of the first change, 0 for the start of the log
+     * @param limit  int the number of changes at most, up to user.changelog.max-limit
+     * @param wait   int the seconds to wait, up to user.changelog.max-wait, 0 to answer at once
+     * @return DeferredResult<ResponseEntity<UserChangeBatch>>
+     */
+    @GetMapping("/users/changes")
+    public DeferredResult<ResponseEntity<UserChangeBatch>> getChanges(@RequestParam(defaultValue = "0") long offset,
+                                                                      @RequestParam(defaultValue = "100") int limit,
+                                                                      @RequestParam(defaultValue = "30") int wait) {
+        int size = Math.max(1, Math.min(limit, maxLimit));
+        long waitMillis = Math.max(0, Math.min(TimeUnit.SECONDS.toMillis(wait), maxWait.toMillis()));
+        UserChangeBatch batch = userChangeLog.read(offset, size);
+        DeferredResult<ResponseEntity<UserChangeBatch>> result = new DeferredResult<>(waitMillis, ResponseEntity.ok(batch));
+        if (!batch.getChanges().isEmpty() || waitMillis == 0) {
+            result.setResult(ResponseEntity.ok(batch));
+            return result;
+        }
+        Runnable cancel = userChangeLog.whenAvailable(offset, () -> {
+            try {
+                result.setResult(ResponseEntity.ok(userChangeLog.read(offset, size)));
+            } catch (RuntimeException e) {
+                result.setErrorResult(e);
+            }
+        });
+        result.onCompletion(cancel);
+        return result;
+    }
+}
@@ -1,19 +1,49 @@
 package com.example.user.controllers;
 
+import com.example.user.admission.AdmissionClass;
+import com.example.user.admission.TrafficClass;
+import com.example.user.domain.Gender;
 import com.example.user.domain.User;
+import com.example.user.dto.RegistrationStatus;
+import com.example.user.dto.UserBatchItemResult;
 import com.example.user.dto.UserDto;
+import com.example.user.dto.UserLookupResult;
+import com.example.user.dto.UserPage;
+import com.example.user.dto.UserSearchCriteria;
 import com.example.user.mapper.UserMapper;
+import com.example.user.registration.RegistrationQueue;
+import com.example.user.services.RegistrationOutcome;
 import com.example.user.services.UserService;
 import com.example.user.exception.ContentNotAllowedException;
 import com.example.user.exception.UserNotFoundException;
 import lombok.RequiredArgsConstructor;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
 import org.springframework.validation.BindingResult;
+import org.springframework.validation.ObjectError;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
+import javax.validation.ValidationException;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -24,39 +54,201 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class UserController {
     private final UserService userService;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final RegistrationQueue registrationQueue;
+
+    @Value("${user.batch.max-size:50000}")
+    private int batchMaxSize = 50000;
+
+    @Value("${user.lookup.max-ids:100}")
+    private int lookupMaxIds = 100;
+
+    @Value("${user.listing.max-limit:1000}")
+    private int listingMaxLimit = 1000;
 
     /**
-     * This method takes the id of the requested user as a parameter, gets the registered user, converts it to UserDto and displays his details
+     * This method takes the id of the requested user as a parameter, gets the registered user, converts it to UserDto and displays his details.
+     * The response carries the version of the user as a strong ETag. When the request's If-None-Match matches the
+     * current version, which is read from a cache, a 304 is answered without loading nor serializing the user.
      *
-     * @param id long
+     * @param id          long
+     * @param ifNoneMatch String the ETags known by the client, optional
      * @return ResponseEntity<UserDto>
      */
     @GetMapping("/user/{id}")
-    public ResponseEntity<UserDto> getUser(@PathVariable Long id) {
+    public ResponseEntity<UserDto> getUser(@PathVariable Long id,
+                                           @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         log.info("get User dont l id est " + id);
+        if (ifNoneMatch != null) {
+            Optional<Long> version = userService.getUserVersion(id);
+            if (version.isPresent() && matches(ifNoneMatch, eTag(version.get()))) {
+                log.info("user " + id + " not modified");
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag(version.get())).build();
+            }
+        }
         Optional<User> user = userService.getUser(id);
 
         if (!user.isPresent()) {
-            log.error("ERROR, 404 NOT FOUND !");
             throw new UserNotFoundException(id);
         }
         log.info("convert user to userDto");
         UserDto userResponse = UserMapper.INSTANCE.convertToDto(user.get());
 
-        return ResponseEntity.ok().body(userResponse);
+        return ResponseEntity.ok().eTag(eTag(user.get().getVersion())).body(userResponse);
+
+    }
+
+    private static String eTag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Tells whether an If-None-Match header (a list of ETags, or *) matches the given strong ETag. Weak ETags match
+     * too, as If-None-Match uses the weak comparison.
+     */
+    private static boolean matches(String ifNoneMatch, String eTag) {
+        for (String candidate : StringUtils.tokenizeToStringArray(ifNoneMatch, ",")) {
+            if (candidate.equals("*") || candidate.equals(eTag) || (candidate.startsWith("W/") && candidate.substring(2).equals(eTag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * This method lists the users page by page, in the order of the ids. A page starts after the last id of the
+     * previous one (keyset pagination), so that reading any page costs the same whatever its position.
+     *
+     * @param afterId long the last id of the previous page, 0 for the first page
+     * @param limit   int the size of the page, at most user.listing.max-limit
+     * @param country String optional filter
+     * @param gender  Gender optional filter
+     * @return ResponseEntity<UserPage>
+     */
+    @GetMapping("/users")
+    public ResponseEntity<UserPage> listUsers(@RequestParam(defaultValue = "0") long afterId,
+                                              @RequestParam(defaultValue = "100") int limit,
+                                              @RequestParam(required = false) String country,
+                                              @RequestParam(required = false) Gender gender) {
+        int pageSize = Math.max(1, Math.min(limit, listingMaxLimit));
+        return ResponseEntity.ok().body(toPage(userService.listUsers(afterId, pageSize, country, gender), pageSize));
+    }
+
+    /**
+     * This method gets many users at once, e.g. GET /users?ids=1,2,3, with a single query. The answer has one entry per
+     * requested id, in the order of the request: the user, or found = false for an unknown id instead of a 404.
+     *
+     * @param ids List<Long> at most user.lookup.max-ids
+     * @return ResponseEntity<List<UserLookupResult>>
+     */
+    @GetMapping(value = "/users", params = "ids")
+    public ResponseEntity<List<UserLookupResult>> getUsers(@RequestParam List<Long> ids) {
+        return ResponseEntity.ok().body(lookup(ids));
+    }
 
+    /**
+     * This method does the same as GET /users?ids=..., with the ids sent as a JSON array, for the lists too long for
+     * a URL
+     *
+     * @param ids List<Long> at most user.lookup.max-ids
+     * @return ResponseEntity<List<UserLookupResult>>
+     */
+    @PostMapping(value = "/users/lookup")
+    @AdmissionClass(TrafficClass.READ)
+    public ResponseEntity<List<UserLookupResult>> lookupUsers(@RequestBody List<Long> ids) {
+        return ResponseEntity.ok().body(lookup(ids));
+    }
+
+    private List<UserLookupResult> lookup(List<Long> ids) {
+        if (ids.size() > lookupMaxIds) {
+            throw new ContentNotAllowedException(Collections.singletonList(
+                    new ObjectError("ids", "at most " + lookupMaxIds + " users can be looked up at once")));
+        }
+        if (ids.contains(null)) {
+            throw new ContentNotAllowedException(Collections.singletonList(new ObjectError("ids", "must not contain null")));
+        }
+        Map<Long, User> users = userService.getUsers(ids);
+        List<UserLookupResult> results = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            User user = users.get(id);
+            results.add(user == null
+                    ? new UserLookupResult(id, false, null)
+                    : new UserLookupResult(id, true, UserMapper.INSTANCE.convertToDto(user)));
+        }
+        return results;
+    }
+
+    /**
+     * This method searches the users by country, birthdate range, gender and phone (which matches however it is
+     * written: spaces, dashes, 00 or + prefix). The criteria are optional and combined; the results are paged like the
+     * listing, in the order of the ids.
+     *
+     * @param criteria UserSearchCriteria
+     * @param afterId  long the last id of the previous page, 0 for the first page
+     * @param limit    int the size of the page, at most user.listing.max-limit
+     * @return ResponseEntity<UserPage>
+     */
+    @GetMapping("/users/search")
+    public ResponseEntity<UserPage> searchUsers(UserSearchCriteria criteria,
+                                                @RequestParam(defaultValue = "0") long afterId,
+                                                @RequestParam(defaultValue = "100") int limit) {
+        int pageSize = Math.max(1, Math.min(limit, listingMaxLimit));
+        return ResponseEntity.ok().body(toPage(userService.searchUsers(criteria, afterId, pageSize), pageSize));
+    }
+
+    private static UserPage toPage(List<User> users, int pageSize) {
+        List<UserDto> userResponses = new ArrayList<>(users.size());
+        for (User user : users) {
+            userResponses.add(UserMapper.INSTANCE.convertToDto(user));
+        }
+        Long nextAfterId = users.size() == pageSize ? users.get(users.size() - 1).getId() : null;
+        return new UserPage(userResponses, nextAfterId);
+    }
+
+    /**
+     * This method writes all the users, in the order of the ids, as newline-delimited JSON. The users are read through
+     * a database cursor and written one by one, so that the memory used does not depend on the number of users.
+     *
+     * @param country  String optional filter
+     * @param gender   Gender optional filter
+     * @param response HttpServletResponse
+     * @throws IOException if the response cannot be written
+     */
+    @GetMapping(value = "/users/stream", produces = "application/x-ndjson")
+    @AdmissionClass(value = TrafficClass.READ, adaptive = false)
+    public void streamUsers(@RequestParam(required = false) String country,
+                            @RequestParam(required = false) Gender gender,
+                            HttpServletResponse response) throws IOException {
+        response.setContentType("application/x-ndjson");
+        ObjectWriter writer = objectMapper.writerFor(UserDto.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.setRootValueSeparator(null);
+            userService.streamUsers(country, gender, user -> {
+                try {
+                    writer.writeValue(generator, UserMapper.INSTANCE.convertToDto(user));
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
     }
 
     /**
      * This method takes the date of
      * This method takes as parameters the details of the UserDto sent in the request, converts it to a User to save it in the database and returns the details of the UserDto.
+     * In the asynchronous mode, the validated user is queued instead: a 202 is answered with the ticket of the
+     * registration, whose status is given by GET /user/registrations/{ticket}.
      *
      * @param userDto UserDto
      * @param errors  BindingResult
-     * @return ResponseEntity<UserDto>
+     * @return ResponseEntity<UserDto>, or ResponseEntity<RegistrationStatus> in the asynchronous mode
      */
     @PostMapping(value = "/user")
-    public ResponseEntity<UserDto> registerNewUser(@Valid @RequestBody UserDto userDto, BindingResult errors) {
+    public ResponseEntity<?> registerNewUser(@Valid @RequestBody UserDto userDto, BindingResult errors) {
 
         if (errors.hasErrors()) {
             throw new ContentNotAllowedException(errors.getAllErrors());
@@ -64,6 +256,14 @@ public class UserController {
         log.info("convert UserDto to User");
         User userRequest = UserMapper.INSTANCE.convertToUser(userDto);
 
+        if (registrationQueue.isEnabled()) {
+            log.info("Queue the registration of the user");
+            RegistrationStatus status = registrationQueue.submit(userRequest);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/user/registrations/" + status.getTicket()))
+                    .body(status);
+        }
+
         log.info("Save the user in database");
         User user = userService.registerNewUser(userRequest);
 
@@ -73,4 +273,76 @@ public class UserController {
         return new ResponseEntity<>(userResponse, HttpStatus.CREATED);
 
     }
+
+    /**
+     * This method gives the status of a registration accepted in the asynchronous mode: pending, created with the id
+     * of the user, or rejected with the reason (e.g. a duplicate username).
+     *
+     * @param ticket String
+     * @return ResponseEntity<RegistrationStatus>, 404 when the ticket is unknown or no longer retained
+     */
+    @GetMapping("/user/registrations/{ticket}")
+    public ResponseEntity<RegistrationStatus> getRegistrationStatus(@PathVariable String ticket) {
+        return registrationQueue.getStatus(ticket)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * This method registers a whole array of users at once. Each UserDto is validated on its own, the valid ones are
+     * converted to Users and saved with JDBC batches. The response reports the success or the failure of each user.
+     *
+     * @param userDtos List<UserDto>
+     * @return ResponseEntity<List<UserBatchItemResult>>
+     */
+    @PostMapping(value = "/users/batch")
+    @AdmissionClass(value = TrafficClass.WRITE, adaptive = false)
+    public ResponseEntity<List<UserBatchItemResult>> registerNewUsers(@RequestBody List<UserDto> userDtos) {
+        if (userDtos.size() > batchMaxSize) {
+            throw new ContentNotAllowedException(Collections.singletonList(
+                    new ObjectError("users", "at most " + batchMaxSize + " users can be registered at once")));
+        }
+        UserBatchItemResult[] results = new UserBatchItemResult[userDtos.size()];
+        List<Integer> validIndexes = new ArrayList<>(userDtos.size());
+        List<User> userRequests = new ArrayList<>(userDtos.size());
+        for (int i = 0; i < userDtos.size(); i++) {
+            UserDto userDto = userDtos.get(i);
+            List<String> errors = validate(userDto);
+            if (errors.isEmpty()) {
+                validIndexes.add(i);
+                userRequests.add(UserMapper.INSTANCE.convertToUser(userDto));
+            } else {
+                results[i] = new UserBatchItemResult(i, false, userDto, errors);
+            }
+        }
+
+        log.info("Save {} users in database", userRequests.size());
+        List<RegistrationOutcome> outcomes = userService.registerNewUsers(userRequests);
+
+        for (int i = 0; i < outcomes.size(); i++) {
+            RegistrationOutcome outcome = outcomes.get(i);
+            int index = validIndexes.get(i);
+            UserDto userResponse = UserMapper.INSTANCE.convertToDto(outcome.getUser());
+            results[index] = outcome.isCreated()
+                    ? new UserBatchItemResult(index, true, userResponse, Collections.emptyList())
+                    : new UserBatchItemResult(index, false, userResponse, Collections.singletonList(outcome.getError()));
+        }
+        return ResponseEntity.ok().body(Arrays.asList(results));
+    }
+
+    private List<String> validate(UserDto userDto) {
+        if (userDto == null) {
+            return Collections.singletonList("userDto must not be null");
+        }
+        List<String> errors = new ArrayList<>();
+        try {
+            for (ConstraintViolation<UserDto> violation : validator.validate(userDto)) {
+                String path = violation.getPropertyPath().toString();
+                errors.add((path.isEmpty() ? "userDto" : path) + " " + violation.getMessage());
+            }
+        } catch (ValidationException e) {
+            errors.add("Birthdate and country must not be nullable!");
+        }
+        return errors;
+    }
 }
@@ -0,0 +1,50 @@
+package com.example.user.controllers;
+
+import com.example.user.admission.AdmissionClass;
+import com.example.user.admission.TrafficClass;
+import com.example.user.importer.ImportFormat;
+import com.example.user.importer.ImportReport;
+import com.example.user.importer.UserImporter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A controller in charge of the bulk imports of users
+ */
+@RestController
+@Slf4j
+@RequiredArgsConstructor
+public class UserImportController {
+    private final UserImporter userImporter;
+
+    /**
+     * This method imports a dump of users uploaded as the request body, one record per line (CSV with a header line
+     * or NDJSON). The body is streamed to the importer, never held in memory. The valid users are registered, the
+     * others are written to a rejects file whose path is given in the report.
+     *
+     * @param contentType String text/csv or application/x-ndjson
+     * @param request     HttpServletRequest
+     * @return ResponseEntity<ImportReport>
+     * @throws IOException if the body cannot be read
+     */
+    @PostMapping(value = "/users/import", consumes = {"text/csv", "application/x-ndjson"})
+    @AdmissionClass(value = TrafficClass.WRITE, adaptive = false)
+    public ResponseEntity<ImportReport> importUsers(@RequestHeader("Content-Type") String contentType,
+                                                    HttpServletRequest request) throws IOException {
+        ImportFormat format = ImportFormat.fromContentType(contentType);
+        log.info("import users from a " + format + " upload");
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8), 1 << 16)) {
+            return ResponseEntity.ok().body(userImporter.importUsers(reader, format));
+        }
+    }
+}
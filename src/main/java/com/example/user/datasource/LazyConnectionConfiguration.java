@@ -0,0 +1,44 @@
+package com.example.user.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * The data source of the application without read replicas: the pool configured by spring.datasource.*, behind the
+ * same lazy proxy as the ReadWriteRoutingConfiguration. A transaction takes its pooled connection when its first
+ * statement runs, so that the read-only transactions of UserService answered without the database (an id known to be
+ * absent, a lookup batched by another thread) do not hold a connection.
+ */
+@Configuration
+@ConditionalOnProperty(name = "user.datasource.replicas.enabled", havingValue = "false", matchIfMissing = true)
+public class LazyConnectionConfiguration {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName(ReadWriteRoutingDataSource.PRIMARY);
+        return dataSource;
+    }
+
+    /**
+     * This method returns the data source of the application, which takes the connection of a transaction when its
+     * first statement runs
+     *
+     * @param primaryDataSource HikariDataSource
+     * @return DataSource
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource) {
+        return new LazyConnectionDataSourceProxy(primaryDataSource);
+    }
+}
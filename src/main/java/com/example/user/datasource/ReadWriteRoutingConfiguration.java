@@ -0,0 +1,80 @@
+package com.example.user.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the reads and the writes of the database when user.datasource.replicas.enabled: the data source of the
+ * application routes the read-only transactions to the replicas of user.datasource.replicas.urls and the others to
+ * the primary, configured by spring.datasource.* (see ReadWriteRoutingDataSource).
+ * The replicas are kept in sync by the ReplicationStandIn unless user.datasource.replicas.stand-in is false, when the
+ * database replicates them itself.
+ */
+@Configuration
+@ConditionalOnProperty(name = "user.datasource.replicas.enabled", havingValue = "true")
+public class ReadWriteRoutingConfiguration {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName(ReadWriteRoutingDataSource.PRIMARY);
+        return dataSource;
+    }
+
+    @Bean
+    public ReadYourWrites readYourWrites(@Value("${user.datasource.replicas.read-your-writes:5s}") Duration window) {
+        return new ReadYourWrites(window);
+    }
+
+    @Bean(destroyMethod = "close")
+    public ReadWriteRoutingDataSource readWriteRoutingDataSource(HikariDataSource primaryDataSource, DataSourceProperties properties,
+                                                                 ReadYourWrites readYourWrites,
+                                                                 @Value("${user.datasource.replicas.urls}") List<String> urls,
+                                                                 @Value("${user.datasource.replicas.pool-size:10}") int poolSize,
+                                                                 @Value("${user.datasource.replicas.max-lag:1s}") Duration maxLag) {
+        List<Replica> replicas = new ArrayList<>();
+        for (String url : urls) {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName("replica-" + replicas.size());
+            dataSource.setJdbcUrl(url.trim());
+            dataSource.setUsername(properties.determineUsername());
+            dataSource.setPassword(properties.determinePassword());
+            dataSource.setMaximumPoolSize(poolSize);
+            replicas.add(new Replica(dataSource.getPoolName(), dataSource));
+        }
+        return new ReadWriteRoutingDataSource(primaryDataSource, replicas, maxLag, readYourWrites);
+    }
+
+    /**
+     * This method returns the data source of the application, which takes the connection of a transaction when its
+     * first statement runs, once the transaction tells if it is read-only
+     *
+     * @param readWriteRoutingDataSource ReadWriteRoutingDataSource
+     * @return DataSource
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadWriteRoutingDataSource readWriteRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(readWriteRoutingDataSource);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "user.datasource.replicas.stand-in", havingValue = "true", matchIfMissing = true)
+    public ReplicationStandIn replicationStandIn(HikariDataSource primaryDataSource, ReadWriteRoutingDataSource readWriteRoutingDataSource,
+                                                 @Value("${user.datasource.replicas.stand-in-interval:200ms}") Duration interval) {
+        return new ReplicationStandIn(primaryDataSource, readWriteRoutingDataSource.getReplicas(), interval);
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.user.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Routes the connections of the read-only transactions (@Transactional(readOnly = true)) to the read replicas, in
+ * turn, and all the others to the primary. A replica is skipped while it lags more than the max lag behind the
+ * primary, or has not caught up with the last write of the client (see ReadYourWrites): the read then goes to the
+ * primary. The key is looked up when the connection is taken, so the data source must be wrapped in a
+ * LazyConnectionDataSourceProxy for the read-only flag of the transaction to be known by then.
+ * <p>
+ * The connections taken by target are counted (users.datasource.routed), the lag of each replica is gauged
+ * (users.datasource.replica.lag) and the pools of the replicas get the Hikari metrics (hikaricp.connections.*,
+ * tagged by pool) like the primary one.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements MeterBinder, Closeable {
+    public static final String PRIMARY = "primary";
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final long maxLagMillis;
+    private final ReadYourWrites readYourWrites;
+    private final AtomicInteger next = new AtomicInteger();
+
+    // no-op meters until the registry binds the real ones
+    private volatile Counter primaryWrites;
+    private volatile Counter primaryReads;
+    private volatile Map<String, Counter> replicaReads;
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<Replica> replicas, Duration maxLag, ReadYourWrites readYourWrites) {
+        this.primary = primary;
+        this.replicas = new ArrayList<>(replicas);
+        this.maxLagMillis = maxLag.toMillis();
+        this.readYourWrites = readYourWrites;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (Replica replica : replicas) {
+            targets.put(replica.getName(), replica.getDataSource());
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+        bindCounters(new CompositeMeterRegistry());
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindCounters(registry);
+        for (Replica replica : replicas) {
+            Gauge.builder("users.datasource.replica.lag", replica, r -> {
+                        long lag = r.lag(System.currentTimeMillis());
+                        return lag == Long.MAX_VALUE ? Double.NaN : lag;
+                    })
+                    .description("How far behind the primary the replica may be")
+                    .tag("replica", replica.getName())
+                    .baseUnit("milliseconds")
+                    .register(registry);
+        }
+        List<DataSource> pools = new ArrayList<>();
+        pools.add(primary);
+        replicas.forEach(replica -> pools.add(replica.getDataSource()));
+        for (DataSource pool : pools) {
+            if (pool instanceof HikariDataSource) {
+                HikariDataSource hikari = (HikariDataSource) pool;
+                if (hikari.getMetricRegistry() == null && hikari.getMetricsTrackerFactory() == null) {
+                    hikari.setMetricRegistry(registry);
+                }
+            }
+        }
+    }
+
+    private void bindCounters(MeterRegistry registry) {
+        primaryWrites = routed(registry, PRIMARY, "write");
+        primaryReads = routed(registry, PRIMARY, "read");
+        Map<String, Counter> counters = new HashMap<>();
+        for (Replica replica : replicas) {
+            counters.put(replica.getName(), routed(registry, replica.getName(), "read"));
+        }
+        replicaReads = counters;
+    }
+
+    private static Counter routed(MeterRegistry registry, String target, String access) {
+        return Counter.builder("users.datasource.routed")
+                .description("Connections taken from each data source, by access")
+                .tag("target", target)
+                .tag("access", access)
+                .register(registry);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            primaryWrites.increment();
+            fenceOnCommit();
+            return PRIMARY;
+        }
+        Replica replica = choose(readYourWrites.fence());
+        if (replica == null) {
+            primaryReads.increment();
+            return PRIMARY;
+        }
+        replicaReads.get(replica.getName()).increment();
+        return replica.getName();
+    }
+
+    /**
+     * This method returns the next replica in turn that is recent enough for the read
+     *
+     * @param fence long the time (epoch millis) of the last write the read must see, 0 for none
+     * @return Replica null if none
+     */
+    Replica choose(long fence) {
+        if (replicas.isEmpty()) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.lag(now) <= maxLagMillis && replica.getCaughtUpTo() >= fence) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private void fenceOnCommit() {
+        if (readYourWrites.isEnabled() && TransactionSynchronizationManager.isActualTransactionActive()
+                && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    readYourWrites.written(System.currentTimeMillis());
+                }
+            });
+        }
+    }
+
+    /**
+     * This method closes the pools of the replicas, the primary being a data source of its own
+     */
+    @Override
+    public void close() {
+        for (Replica replica : replicas) {
+            if (replica.getDataSource() instanceof HikariDataSource) {
+                ((HikariDataSource) replica.getDataSource()).close();
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.user.datasource;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.time.Duration;
+
+/**
+ * Read-your-writes for the clients of the API: a request that wrote in the primary answers with a cookie holding the
+ * time of its commit (the write fence), and the following requests of the client carrying it are read from a replica
+ * that has caught up with that time, or from the primary. The cookie expires after the window, when the replicas are
+ * expected to have caught up. The writes done outside of a request (the asynchronous registrations...) set no fence.
+ */
+public class ReadYourWrites {
+    public static final String COOKIE = "user-write-fence";
+
+    private static final String FENCE_ATTRIBUTE = ReadYourWrites.class.getName() + ".fence";
+
+    private final long windowMillis;
+
+    public ReadYourWrites(Duration window) {
+        this.windowMillis = window.toMillis();
+    }
+
+    public boolean isEnabled() {
+        return windowMillis > 0;
+    }
+
+    /**
+     * This method returns the write fence of the client of the current request
+     *
+     * @return long epoch millis of its last write still in the window, 0 if none
+     */
+    public long fence() {
+        if (!isEnabled()) {
+            return 0;
+        }
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes)) {
+            return 0;
+        }
+        Long fence = (Long) attributes.getAttribute(FENCE_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (fence == null) {
+            fence = parse(((ServletRequestAttributes) attributes).getRequest());
+            attributes.setAttribute(FENCE_ATTRIBUTE, fence, RequestAttributes.SCOPE_REQUEST);
+        }
+        return fence;
+    }
+
+    private long parse(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return 0;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE.equals(cookie.getName())) {
+                try {
+                    long fence = Long.parseLong(cookie.getValue());
+                    return System.currentTimeMillis() - fence <= windowMillis ? fence : 0;
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * This method records a write committed in the primary by the current request: its next reads, and the ones of
+     * its client within the window, see it
+     *
+     * @param time long epoch millis of the commit
+     */
+    public void written(long time) {
+        if (!isEnabled()) {
+            return;
+        }
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes)) {
+            return;
+        }
+        attributes.setAttribute(FENCE_ATTRIBUTE, time, RequestAttributes.SCOPE_REQUEST);
+        HttpServletResponse response = ((ServletRequestAttributes) attributes).getResponse();
+        if (response != null && !response.isCommitted()) {
+            Cookie cookie = new Cookie(COOKIE, Long.toString(time));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) ((windowMillis + 999) / 1000));
+            response.addCookie(cookie);
+        }
+    }
+}
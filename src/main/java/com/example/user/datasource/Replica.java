@@ -0,0 +1,59 @@
+package com.example.user.datasource;
+
+import javax.sql.DataSource;
+
+/**
+ * A read replica of the database, with the time up to which it has caught up with the primary: every change
+ * committed on the primary before that time is visible on the replica. It is advanced by the replication (see
+ * ReplicationStandIn), or would be by a heartbeat read from the replica with a real replication.
+ */
+public final class Replica {
+    private final String name;
+    private final DataSource dataSource;
+    private volatile long caughtUpTo;
+
+    public Replica(String name, DataSource dataSource) {
+        this.name = name;
+        this.dataSource = dataSource;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * This method returns the time (epoch millis) up to which the changes of the primary are visible on the replica,
+     * 0 until it has caught up once
+     *
+     * @return long
+     */
+    public long getCaughtUpTo() {
+        return caughtUpTo;
+    }
+
+    /**
+     * This method records that the changes committed on the primary before the given time are visible on the replica
+     *
+     * @param time long epoch millis
+     */
+    public void caughtUp(long time) {
+        if (time > caughtUpTo) {
+            caughtUpTo = time;
+        }
+    }
+
+    /**
+     * This method returns how far behind the primary the replica may be
+     *
+     * @param now long epoch millis
+     * @return long millis, Long.MAX_VALUE until it has caught up once
+     */
+    public long lag(long now) {
+        long time = caughtUpTo;
+        return time == 0 ? Long.MAX_VALUE : Math.max(0, now - time);
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.user.datasource;
+
+import org.h2.api.Trigger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * The H2 trigger of ReplicationStandIn: logs the id of every inserted, updated or deleted user in the replication log
+ * of the primary, in the transaction of the change.
+ */
+public class ReplicationLogTrigger implements Trigger {
+    private int idColumn;
+
+    @Override
+    public void init(Connection conn, String schemaName, String triggerName, String tableName, boolean before, int type) throws SQLException {
+        try (ResultSet columns = conn.getMetaData().getColumns(null, schemaName, tableName, "ID")) {
+            if (!columns.next()) {
+                throw new SQLException("The table " + tableName + " has no ID column to replicate");
+            }
+            idColumn = columns.getInt("ORDINAL_POSITION") - 1;
+        }
+    }
+
+    @Override
+    public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+        Object[] row = newRow != null ? newRow : oldRow;
+        try (PreparedStatement statement = conn.prepareStatement("insert into " + ReplicationStandIn.LOG_TABLE + " (user_id) values (?)")) {
+            statement.setObject(1, row[idColumn]);
+            statement.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.user.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.ResultSetMetaData;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * A stand-in of the replication of the database, for the local runs and the tests on H2: copies the users of the
+ * primary to the replicas. Once the application is ready, it copies the schema and the rows of the users table, then
+ * every interval the users changed since, logged in the primary by a trigger (see ReplicationLogTrigger). The lag
+ * of the replicas is hence about the interval.
+ * A real deployment replicates with the database instead, and advances the replicas with a heartbeat.
+ */
+@Slf4j
+public class ReplicationStandIn implements Closeable {
+    static final String LOG_TABLE = "replication_log";
+    private static final int BATCH_SIZE = 1000;
+
+    private final JdbcTemplate primary;
+    private final List<Replica> replicas;
+    private final long intervalMillis;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "replication-stand-in");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private List<String> columns;
+    private String mergeSql;
+
+    public ReplicationStandIn(DataSource primary, List<Replica> replicas, Duration interval) {
+        this.primary = new JdbcTemplate(primary);
+        this.replicas = replicas;
+        this.intervalMillis = interval.toMillis();
+    }
+
+    /**
+     * This method makes the replicas copies of the primary, then replicates its changes every interval
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        initialize();
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                replicate();
+            } catch (RuntimeException e) {
+                log.warn("Replication to the replicas failed, retried in {} ms", intervalMillis, e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * This method logs the changes of the users in the primary from now on, and copies the schema and the users to
+     * the replicas
+     */
+    public synchronized void initialize() {
+        primary.execute("create table if not exists " + LOG_TABLE + " (seq bigint auto_increment primary key, user_id bigint not null)");
+        primary.execute("create trigger if not exists users_replication after insert, update, delete on users for each row call \""
+                + ReplicationLogTrigger.class.getName() + "\"");
+        // the table, its primary key and its indexes: the unique constraints are checked by the primary, and could
+        // fail on a replica in the middle of a batch of changes
+        List<String> schema = primary.queryForList("script nodata table users", String.class).stream()
+                .filter(statement -> statement.startsWith("CREATE MEMORY TABLE") || statement.startsWith("CREATE CACHED TABLE")
+                        || statement.startsWith("CREATE INDEX") || statement.startsWith("ALTER") && statement.contains("PRIMARY KEY"))
+                .collect(Collectors.toList());
+        columns = primary.query("select * from users where 1 = 0", resultSet -> {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            List<String> names = new ArrayList<>();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                names.add(metaData.getColumnName(i));
+            }
+            return names;
+        });
+        mergeSql = "merge into users (" + String.join(", ", columns) + ") key (id) values ("
+                + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+        long now = System.currentTimeMillis();
+        for (Replica replica : replicas) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(replica.getDataSource());
+            jdbcTemplate.execute("drop table if exists users");
+            schema.forEach(jdbcTemplate::execute);
+            List<Object[]> rows = new ArrayList<>();
+            primary.query("select " + String.join(", ", columns) + " from users", resultSet -> {
+                Object[] row = new Object[columns.size()];
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = resultSet.getObject(i + 1);
+                }
+                rows.add(row);
+                if (rows.size() == BATCH_SIZE) {
+                    jdbcTemplate.batchUpdate(mergeSql, rows);
+                    rows.clear();
+                }
+            });
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(mergeSql, rows);
+            }
+            replica.caughtUp(now);
+        }
+        log.info("Replication of the users to {} replicas started", replicas.size());
+    }
+
+    /**
+     * This method copies the users changed in the primary to the replicas, which are then caught up with the time of
+     * the call
+     */
+    public synchronized void replicate() {
+        long now = System.currentTimeMillis();
+        List<long[]> entries;
+        while (!(entries = primary.query("select seq, user_id from " + LOG_TABLE + " order by seq limit " + BATCH_SIZE,
+                (resultSet, rowNum) -> new long[]{resultSet.getLong(1), resultSet.getLong(2)})).isEmpty()) {
+            Set<Long> ids = entries.stream().map(entry -> entry[1]).collect(Collectors.toSet());
+            List<Object[]> rows = new NamedParameterJdbcTemplate(primary).query(
+                    "select " + String.join(", ", columns) + " from users where id in (:ids)", new MapSqlParameterSource("ids", ids),
+                    (resultSet, rowNum) -> {
+                        Object[] row = new Object[columns.size()];
+                        for (int i = 0; i < row.length; i++) {
+                            row[i] = resultSet.getObject(i + 1);
+                        }
+                        return row;
+                    });
+            Set<Long> deleted = new HashSet<>(ids);
+            int idColumn = columns.indexOf("ID");
+            rows.forEach(row -> deleted.remove(((Number) row[idColumn]).longValue()));
+            for (Replica replica : replicas) {
+                JdbcTemplate jdbcTemplate = new JdbcTemplate(replica.getDataSource());
+                new TransactionTemplate(new DataSourceTransactionManager(replica.getDataSource())).executeWithoutResult(status -> {
+                    jdbcTemplate.batchUpdate(mergeSql, rows);
+                    if (!deleted.isEmpty()) {
+                        new NamedParameterJdbcTemplate(jdbcTemplate).update("delete from users where id in (:ids)",
+                                new MapSqlParameterSource("ids", deleted));
+                    }
+                });
+            }
+            primary.update("delete from " + LOG_TABLE + " where seq <= ?", entries.get(entries.size() - 1)[0]);
+        }
+        replicas.forEach(replica -> replica.caughtUp(now));
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
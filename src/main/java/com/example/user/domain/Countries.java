@@ -0,0 +1,22 @@
+package com.example.user.domain;
+
+import java.util.Locale;
+
+/**
+ * Normalization of the countries, so that a country is found by an exact match however it was typed
+ */
+public final class Countries {
+
+    private Countries() {
+    }
+
+    /**
+     * This method upper-cases a country, the form of the stored countries: "France" and "france" both become "FRANCE".
+     *
+     * @param country String
+     * @return String the normalized country, null for a null country
+     */
+    public static String normalize(String country) {
+        return country == null ? null : country.toUpperCase(Locale.ROOT);
+    }
+}
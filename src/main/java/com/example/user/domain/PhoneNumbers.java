@@ -0,0 +1,41 @@
+package com.example.user.domain;
+
+/**
+ * Normalization of the phone numbers, so that the same number typed differently is found by an exact match
+ */
+public final class PhoneNumbers {
+
+    private PhoneNumbers() {
+    }
+
+    /**
+     * This method keeps the digits of a phone number only, with a leading + for an international number
+     * (written +33 or 0033): "+33 6 12-34-56-78" and "0033612345678" both become "+33612345678".
+     *
+     * @param phone String
+     * @return String the normalized number, null if it has no digit
+     */
+    public static String normalize(String phone) {
+        if (phone == null) {
+            return null;
+        }
+        StringBuilder digits = new StringBuilder(phone.length());
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        if (digits.length() == 0) {
+            return null;
+        }
+        String trimmed = phone.trim();
+        if (trimmed.startsWith("+")) {
+            return digits.insert(0, '+').toString();
+        }
+        if (digits.length() > 2 && digits.charAt(0) == '0' && digits.charAt(1) == '0') {
+            return digits.replace(0, 2, "+").toString();
+        }
+        return digits.toString();
+    }
+}
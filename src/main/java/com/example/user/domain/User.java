@@ -1,6 +1,7 @@
 package com.example.user.domain;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 
 import javax.persistence.*;
@@ -11,14 +12,22 @@ import java.time.LocalDate;
  */
 @Entity
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "users")
+@Table(name = "users", indexes = {
+        @Index(name = "idx_users_country_birthdate", columnList = "country, birthdate"),
+        @Index(name = "idx_users_birthdate", columnList = "birthdate"),
+        @Index(name = "idx_users_normalized_phone", columnList = "normalized_phone")
+})
 public class User {
 
+    /**
+     * A pooled sequence is used instead of an identity column so that Hibernate can batch the inserts
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, unique = true)
@@ -33,6 +42,36 @@ public class User {
 
     private String phone;
 
+    /**
+     * The phone reduced to its digits (see PhoneNumbers), for the exact-match lookups
+     */
+    @JsonIgnore
+    @Column(name = "normalized_phone")
+    private String normalizedPhone;
+
     private Gender gender;
 
+    /**
+     * Incremented on every update, it is exposed as the ETag of the user rather than in its body.
+     * A primitive so that a user is new when its id is null, whatever its version
+     */
+    @Version
+    @JsonIgnore
+    @Column(nullable = false)
+    private long version;
+
+    public User(Long id, String username, LocalDate birthdate, String country, String phone, Gender gender) {
+        this(id, username, birthdate, country, phone, PhoneNumbers.normalize(phone), gender, 0);
+    }
+
+    /**
+     * The country is stored upper-cased (see Countries), so that the searches by country match it exactly
+     */
+    @PrePersist
+    @PreUpdate
+    void normalize() {
+        country = Countries.normalize(country);
+        normalizedPhone = PhoneNumbers.normalize(phone);
+    }
+
 }
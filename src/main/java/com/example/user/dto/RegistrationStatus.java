@@ -0,0 +1,45 @@
+package com.example.user.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The state of a registration accepted in the asynchronous mode, reported by its ticket
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RegistrationStatus {
+    private String ticket;
+    private State state;
+    private Long userId;
+    private String error;
+
+    public enum State {
+        /**
+         * accepted and journaled, not yet written in the database
+         */
+        PENDING,
+        /**
+         * the user is registered, its id is given
+         */
+        CREATED,
+        /**
+         * the user was not registered, the reason is given (e.g. a duplicate username)
+         */
+        REJECTED
+    }
+
+    public static RegistrationStatus pending(String ticket) {
+        return new RegistrationStatus(ticket, State.PENDING, null, null);
+    }
+
+    public static RegistrationStatus created(String ticket, long userId) {
+        return new RegistrationStatus(ticket, State.CREATED, userId, null);
+    }
+
+    public static RegistrationStatus rejected(String ticket, String error) {
+        return new RegistrationStatus(ticket, State.REJECTED, null, error);
+    }
+}
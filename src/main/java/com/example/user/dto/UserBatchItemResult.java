@@ -0,0 +1,20 @@
+package com.example.user.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * The report of the registration of one user sent in a batch
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserBatchItemResult {
+    private int index;
+    private boolean created;
+    private UserDto user;
+    private List<String> errors;
+}
@@ -0,0 +1,28 @@
+package com.example.user.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * A change of a user, at its offset in the change log
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserChange {
+    private long offset;
+    private Instant time;
+    private Type type;
+    /**
+     * the user after the change
+     */
+    private UserDto user;
+
+    public enum Type {
+        CREATED,
+        UPDATED
+    }
+}
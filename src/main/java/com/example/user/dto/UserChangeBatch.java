@@ -0,0 +1,19 @@
+package com.example.user.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Changes of users in the order of the change log. The next ones are read from offset = nextOffset, whether the
+ * changes are empty or not.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserChangeBatch {
+    private List<UserChange> changes;
+    private long nextOffset;
+}
@@ -1,6 +1,7 @@
 package com.example.user.dto;
 
 import com.example.user.domain.Gender;
+import com.example.user.validators.Registrant;
 import com.example.user.validators.UserAuthorization;
 import lombok.Data;
 
@@ -12,11 +13,10 @@ import java.time.LocalDate;
  */
 @Data
 @UserAuthorization(
-        country = "country",
-        birthdate = "birthdate",
+        policy = "french-adult",
         message = "Only adult French residents are allowed to create an account"
 )
-public class UserDto {
+public class UserDto implements Registrant {
     private Long id;
     @Size(min = 2, message = "user name should have at least 2 characters")
     @NotNull
@@ -0,0 +1,17 @@
+package com.example.user.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The answer for one of the ids of a multi-get: the user, or found = false when no user has this id
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserLookupResult {
+    private long id;
+    private boolean found;
+    private UserDto user;
+}
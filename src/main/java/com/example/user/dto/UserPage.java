@@ -0,0 +1,18 @@
+package com.example.user.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A page of users. The next page is requested with afterId = nextAfterId, which is null on the last page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserPage {
+    private List<UserDto> users;
+    private Long nextAfterId;
+}
@@ -0,0 +1,21 @@
+package com.example.user.dto;
+
+import com.example.user.domain.Gender;
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+
+/**
+ * The optional criteria of a user search, all of them must match
+ */
+@Data
+public class UserSearchCriteria {
+    private String country;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate bornAfter;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate bornBefore;
+    private Gender gender;
+    private String phone;
+}
@@ -0,0 +1,36 @@
+package com.example.user.exception;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * this exception is thrown when a request is shed by the admission control: 429 when its client sends more than its
+ * rate, 503 when too many requests of its class are in flight.
+ * It is thrown at every request of an overload, so it has no stack trace.
+ */
+public class AdmissionRejectedException extends RuntimeException {
+    private final String trafficClass;
+    private final boolean rateLimited;
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(String trafficClass, boolean rateLimited, long retryAfterSeconds) {
+        super(null, null, false, false);
+        this.trafficClass = trafficClass;
+        this.rateLimited = rateLimited;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public HttpStatus getStatus() {
+        return rateLimited ? HttpStatus.TOO_MANY_REQUESTS : HttpStatus.SERVICE_UNAVAILABLE;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    @Override
+    public String getMessage() {
+        return rateLimited
+                ? "Too many " + trafficClass + " requests from this client, retry later"
+                : "Too many " + trafficClass + " requests in progress, retry later";
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.user.exception;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * this exception is thrown when the changes are read from an offset that the change log no longer has, its segment
+ * being removed by the retention, or does not have yet.
+ */
+public class ChangeOffsetOutOfRangeException extends RuntimeException {
+    private final long offset;
+    private final long startOffset;
+    private final long endOffset;
+
+    public ChangeOffsetOutOfRangeException(long offset, long startOffset, long endOffset) {
+        super(null, null, false, false);
+        this.offset = offset;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getStartOffset() {
+        return startOffset;
+    }
+
+    public HttpStatus getStatus() {
+        return offset < startOffset ? HttpStatus.GONE : HttpStatus.BAD_REQUEST;
+    }
+
+    @Override
+    public String getMessage() {
+        return offset < startOffset
+                ? "The changes before offset " + startOffset + " were removed by the retention, offset " + offset + " cannot be read"
+                : "Offset " + offset + " is beyond the end of the changes (" + endOffset + ")";
+    }
+}
@@ -5,12 +5,14 @@ import org.springframework.validation.ObjectError;
 import java.util.List;
 
 /**
- * This exception is thrown when there are invalid attributes when creating a user
+ * This exception is thrown when there are invalid attributes when creating a user.
+ * It is a common rejection, so it has no stack trace.
  */
 public class ContentNotAllowedException extends RuntimeException {
     private final List<ObjectError> errors;
 
     public ContentNotAllowedException(List<ObjectError> errors) {
+        super(null, null, false, false);
         this.errors = errors;
     }
 
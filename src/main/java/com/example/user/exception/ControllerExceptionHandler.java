@@ -1,28 +1,43 @@
 package com.example.user.exception;
 
+import com.example.user.logging.LogRateLimiter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.validation.ObjectError;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
 import javax.validation.ValidationException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Date;
 import java.util.List;
 
-import static java.util.stream.Collectors.toList;
-
 /**
- * Allows to handle exceptions across the whole application in one global handling component
+ * Allows to handle exceptions across the whole application in one global handling component.
+ * The error bodies have the shape of an {@link ErrorMessage} but are rendered from a template (see ErrorBodies), unless
+ * the caller prefers a binary format, and each kind of error is logged a limited number of times per second
+ * (user.errors.logs-per-second), the others being counted in the next logged one.
  */
 @Slf4j
 @ControllerAdvice
 public class ControllerExceptionHandler extends ResponseEntityExceptionHandler {
+    private static final String NOT_NULLABLE = "Birthdate and country must not be nullable!";
+
+    @Value("${user.errors.logs-per-second:10}")
+    private int logsPerSecond = 10;
+
+    private final LogRateLimiter notFoundLogs = new LogRateLimiter();
+    private final LogRateLimiter contentNotAllowedLogs = new LogRateLimiter();
+    private final LogRateLimiter queueFullLogs = new LogRateLimiter();
+    private final LogRateLimiter admissionLogs = new LogRateLimiter();
+    private final LogRateLimiter changeOffsetLogs = new LogRateLimiter();
+    private final LogRateLimiter constraintViolationLogs = new LogRateLimiter();
+    private final LogRateLimiter validationLogs = new LogRateLimiter();
+    private final LogRateLimiter unknownLogs = new LogRateLimiter();
 
     /**
      * Customize the response for UserNotFoundException using an ErrorMessage.
@@ -32,36 +47,90 @@ public class ControllerExceptionHandler extends ResponseEntityExceptionHandler {
      * @return a {@code ResponseEntity} instance
      */
     @ExceptionHandler(UserNotFoundException.class)
-    public ResponseEntity<ErrorMessage> resourceNotFoundException(UserNotFoundException ex, WebRequest request) {
-        ErrorMessage message = new ErrorMessage(
-                HttpStatus.NOT_FOUND.value(),
-                new Date(),
-                Collections.singletonList(ex.getMessage()),
-                request.getDescription(false));
-        log.error(ex.getClass().getSimpleName() + " due to " + ex.getMessage());
-        log.error("handleUserNotFoundException: -> " + message);
-        return new ResponseEntity<>(message, HttpStatus.NOT_FOUND);
+    public ResponseEntity<Object> resourceNotFoundException(UserNotFoundException ex, WebRequest request) {
+        long suppressed = notFoundLogs.tryAcquire(logsPerSecond);
+        if (suppressed >= 0 && log.isInfoEnabled()) {
+            log.info("{} ({} similar errors not logged)", ex.getMessage(), suppressed);
+        }
+        return ErrorBodies.response(request, HttpStatus.NOT_FOUND, request.getDescription(false), ex.getMessage());
     }
 
     /**
      * Customize the response for ContentNotAllowedException using an ErrorMessage.
      *
-     * @param ex ContentNotAllowedException
+     * @param ex      ContentNotAllowedException
+     * @param request WebRequest
      * @return a {@code ResponseEntity} instance
      */
     @ExceptionHandler(ContentNotAllowedException.class)
-    public ResponseEntity<ErrorMessage> contentNotAllowedException(ContentNotAllowedException ex) {
-        List<String> errorMessages = ex.getErrors()
-                .stream()
-                .map(contentError -> contentError.getObjectName() + " " + contentError.getDefaultMessage())
-                .collect(toList());
-        ErrorMessage message = new ErrorMessage(
-                HttpStatus.BAD_REQUEST.value(),
-                new Date(),
-                errorMessages,
-                "Invalid Constraints");
-        log.error("contentNotAllowedException: -> " + message);
-        return new ResponseEntity<>(message, HttpStatus.BAD_REQUEST);
+    public ResponseEntity<Object> contentNotAllowedException(ContentNotAllowedException ex, WebRequest request) {
+        List<ObjectError> errors = ex.getErrors();
+        String[] messages = new String[errors.size()];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = errors.get(i).getObjectName() + " " + errors.get(i).getDefaultMessage();
+        }
+        long suppressed = contentNotAllowedLogs.tryAcquire(logsPerSecond);
+        if (suppressed >= 0 && log.isInfoEnabled()) {
+            log.info("Invalid constraints: {} ({} similar errors not logged)", String.join(", ", messages), suppressed);
+        }
+        return ErrorBodies.response(request, HttpStatus.BAD_REQUEST, "Invalid Constraints", messages);
+    }
+
+    /**
+     * Customize the response for RegistrationQueueFullException using an ErrorMessage: the client is asked to retry.
+     *
+     * @param ex      RegistrationQueueFullException
+     * @param request WebRequest
+     * @return a {@code ResponseEntity} instance
+     */
+    @ExceptionHandler(RegistrationQueueFullException.class)
+    public ResponseEntity<Object> registrationQueueFullException(RegistrationQueueFullException ex, WebRequest request) {
+        long suppressed = queueFullLogs.tryAcquire(logsPerSecond);
+        if (suppressed >= 0) {
+            log.warn("{} ({} similar errors not logged)", ex.getMessage(), suppressed);
+        }
+        ResponseEntity<Object> response = ErrorBodies.response(request, HttpStatus.SERVICE_UNAVAILABLE, request.getDescription(false), ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .headers(response.getHeaders())
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(response.getBody());
+    }
+
+    /**
+     * Customize the response for AdmissionRejectedException using an ErrorMessage.
+     * This exception is thrown when a request is shed by the admission control, before it reaches the controller.
+     *
+     * @param ex      AdmissionRejectedException
+     * @param request WebRequest
+     * @return a {@code ResponseEntity} instance
+     */
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<Object> admissionRejectedException(AdmissionRejectedException ex, WebRequest request) {
+        long suppressed = admissionLogs.tryAcquire(logsPerSecond);
+        if (suppressed >= 0) {
+            log.warn("{} ({} similar errors not logged)", ex.getMessage(), suppressed);
+        }
+        ResponseEntity<Object> response = ErrorBodies.response(request, ex.getStatus(), request.getDescription(false), ex.getMessage());
+        return ResponseEntity.status(ex.getStatus())
+                .headers(response.getHeaders())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(response.getBody());
+    }
+
+    /**
+     * Customize the response for ChangeOffsetOutOfRangeException using an ErrorMessage.
+     *
+     * @param ex      ChangeOffsetOutOfRangeException
+     * @param request WebRequest
+     * @return a {@code ResponseEntity} instance
+     */
+    @ExceptionHandler(ChangeOffsetOutOfRangeException.class)
+    public ResponseEntity<Object> changeOffsetOutOfRangeException(ChangeOffsetOutOfRangeException ex, WebRequest request) {
+        long suppressed = changeOffsetLogs.tryAcquire(logsPerSecond);
+        if (suppressed >= 0 && log.isInfoEnabled()) {
+            log.info("{} ({} similar errors not logged)", ex.getMessage(), suppressed);
+        }
+        return ErrorBodies.response(request, ex.getStatus(), request.getDescription(false), ex.getMessage());
     }
 
     /**
@@ -73,39 +142,30 @@ public class ControllerExceptionHandler extends ResponseEntityExceptionHandler {
      * @return a {@code ResponseEntity} instance
      */
     @ExceptionHandler(DataIntegrityViolationException.class)
-    public ResponseEntity<ErrorMessage> constraintViolation(DataIntegrityViolationException ex, WebRequest request) {
-        log.error("Constraint violation exception : {}", ex.getMessage());
-        ErrorMessage message = new ErrorMessage(
-                HttpStatus.BAD_REQUEST.value(),
-                new Date(),
-                Collections.singletonList(ex.getMessage()),
-                request.getDescription(false));
-        log.error(ex.getClass().getSimpleName() + " due to " + ex.getMessage());
-        log.error("handleConstraintViolation: -> " + message);
-        return new ResponseEntity<>(message, HttpStatus.BAD_REQUEST);
+    public ResponseEntity<Object> constraintViolation(DataIntegrityViolationException ex, WebRequest request) {
+        long suppressed = constraintViolationLogs.tryAcquire(logsPerSecond);
+        if (suppressed >= 0 && log.isInfoEnabled()) {
+            log.info("Constraint violation: {} ({} similar errors not logged)", ex.getMessage(), suppressed);
+        }
+        return ErrorBodies.response(request, HttpStatus.BAD_REQUEST, request.getDescription(false), ex.getMessage());
     }
 
     /**
      * Customize the response for ValidationException using an ErrorMessage.
+     * It is thrown by a validator that could not check a user, e.g. because of a missing birthdate or country.
      *
      * @param e       ValidationException
      * @param request WebRequest
      * @return a {@code ResponseEntity} instance
      */
-    @ExceptionHandler(RuntimeException.class)
-    public ResponseEntity<ErrorMessage> validationException(ValidationException e, WebRequest request) {
-        log.error(String.valueOf(e));
-        List<String> messages = new ArrayList<>();
-        messages.add(e.getMessage());
-        messages.add("Birthdate and country must not be nullable!");
-        ErrorMessage message = new ErrorMessage(
-                HttpStatus.BAD_REQUEST.value(),
-                new Date(),
-                messages,
-                request.getDescription(false));
-        log.error(e.getClass().getSimpleName() + " due to " + e.getMessage() + " => Birthdate and country must not be nullable! ");
-        log.error("validationException: -> " + message);
-        return new ResponseEntity<>(message, HttpStatus.BAD_REQUEST);
+    @ExceptionHandler(ValidationException.class)
+    public ResponseEntity<Object> validationException(ValidationException e, WebRequest request) {
+        long suppressed = validationLogs.tryAcquire(logsPerSecond);
+        if (suppressed >= 0 && log.isInfoEnabled()) {
+            log.info("{} due to {} => {} ({} similar errors not logged)", e.getClass().getSimpleName(), e.getMessage(),
+                    NOT_NULLABLE, suppressed);
+        }
+        return ErrorBodies.response(request, HttpStatus.BAD_REQUEST, request.getDescription(false), e.getMessage(), NOT_NULLABLE);
     }
 
     /**
@@ -116,16 +176,11 @@ public class ControllerExceptionHandler extends ResponseEntityExceptionHandler {
      * @return a {@code ResponseEntity} instance
      */
     @ExceptionHandler(Exception.class)
-    public ResponseEntity<ErrorMessage> globalExceptionHandler(Exception ex, WebRequest request) {
-        if (log.isWarnEnabled()) {
-            log.warn("Unknown exception type: " + ex.getClass().getName());
+    public ResponseEntity<Object> globalExceptionHandler(Exception ex, WebRequest request) {
+        long suppressed = unknownLogs.tryAcquire(logsPerSecond);
+        if (suppressed >= 0) {
+            log.error("Unexpected exception on {} ({} similar errors not logged)", request.getDescription(false), suppressed, ex);
         }
-        ErrorMessage message = new ErrorMessage(
-                HttpStatus.INTERNAL_SERVER_ERROR.value(),
-                new Date(),
-                Collections.singletonList(ex.getMessage()),
-                request.getDescription(false));
-
-        return new ResponseEntity<>(message, HttpStatus.INTERNAL_SERVER_ERROR);
+        return ErrorBodies.response(request, HttpStatus.INTERNAL_SERVER_ERROR, request.getDescription(false), ex.getMessage());
     }
 }
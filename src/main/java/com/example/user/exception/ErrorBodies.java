@@ -0,0 +1,102 @@
+package com.example.user.exception;
+
+import com.example.user.formats.BinaryMediaTypes;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Renders the error responses straight to JSON bytes, in the shape of an {@link ErrorMessage}, from a template:
+ * neither an ErrorMessage nor a Date is created and Jackson is not involved. The timestamp is formatted once per
+ * millisecond at most, as Jackson would format a Date.
+ * The callers preferring a binary format (see BinaryMediaTypes) get an ErrorMessage instead, encoded by the converter
+ * of their format.
+ */
+final class ErrorBodies {
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSxxx")
+            .withZone(ZoneOffset.UTC);
+    static final HttpHeaders JSON_HEADERS = HttpHeaders.readOnlyHttpHeaders(jsonHeaders());
+
+    private static volatile Timestamp lastTimestamp = new Timestamp(Long.MIN_VALUE, null);
+
+    private ErrorBodies() {
+    }
+
+    static ResponseEntity<Object> response(WebRequest request, HttpStatus status, String description, String... messages) {
+        if (BinaryMediaTypes.preferred(request.getHeader(HttpHeaders.ACCEPT))) {
+            return new ResponseEntity<>(new ErrorMessage(status.value(), new Date(), Arrays.asList(messages), description), status);
+        }
+        // the read-only headers are shared by the responses, not copied
+        return new ResponseEntity<>(render(status, description, messages), JSON_HEADERS, status);
+    }
+
+    static byte[] render(HttpStatus status, String description, String... messages) {
+        StringBuilder json = new StringBuilder(128 + 64 * messages.length)
+                .append("{\"statusCode\":").append(status.value())
+                .append(",\"timestamp\":\"").append(timestamp())
+                .append("\",\"message\":[");
+        for (int i = 0; i < messages.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendString(json, messages[i]);
+        }
+        json.append("],\"description\":");
+        appendString(json, description);
+        return json.append('}').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String timestamp() {
+        long now = System.currentTimeMillis();
+        Timestamp timestamp = lastTimestamp;
+        if (timestamp.millis != now) {
+            timestamp = new Timestamp(now, TIMESTAMP_FORMAT.format(Instant.ofEpochMilli(now)));
+            lastTimestamp = timestamp;
+        }
+        return timestamp.text;
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    private static HttpHeaders jsonHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return headers;
+    }
+
+    private static final class Timestamp {
+        private final long millis;
+        private final String text;
+
+        private Timestamp(long millis, String text) {
+            this.millis = millis;
+            this.text = text;
+        }
+    }
+}
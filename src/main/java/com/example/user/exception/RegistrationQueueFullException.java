@@ -0,0 +1,19 @@
+package com.example.user.exception;
+
+/**
+ * this exception is thrown when the asynchronous registration queue cannot accept one more user.
+ * It is thrown at every request of an overload, so it has no stack trace.
+ */
+public class RegistrationQueueFullException extends RuntimeException {
+    private final int capacity;
+
+    public RegistrationQueueFullException(int capacity) {
+        super(null, null, false, false);
+        this.capacity = capacity;
+    }
+
+    @Override
+    public String getMessage() {
+        return "The registration queue is full (" + capacity + " pending registrations), retry later";
+    }
+}
@@ -1,12 +1,14 @@
 package com.example.user.exception;
 
 /**
- * this exception is thrown when trying to display a non-existent user
+ * this exception is thrown when trying to display a non-existent user.
+ * It is a common rejection, so it has no stack trace.
  */
 public class UserNotFoundException extends RuntimeException {
     private final long id;
 
     public UserNotFoundException(long id) {
+        super(null, null, false, false);
         this.id = id;
     }
 
@@ -0,0 +1,19 @@
+package com.example.user.exception;
+
+import org.springframework.dao.DataIntegrityViolationException;
+
+/**
+ * this exception is thrown when registering a username that is already registered.
+ * It is a common rejection, so it has no stack trace.
+ */
+public class UsernameAlreadyExistsException extends DataIntegrityViolationException {
+
+    public UsernameAlreadyExistsException(String username) {
+        super("Username '" + username + "' already exists");
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.user.exporter;
+
+import java.util.Locale;
+
+/**
+ * The formats of the user exports
+ */
+public enum ExportFormat {
+    CSV,
+    NDJSON;
+
+    /**
+     * Guesses the format from the extension of a file: .csv or .ndjson/.jsonl, optionally followed by .gz
+     *
+     * @param fileName String
+     * @return ExportFormat
+     */
+    public static ExportFormat fromFileName(String fileName) {
+        String name = fileName.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".gz")) {
+            name = name.substring(0, name.length() - 3);
+        }
+        if (name.endsWith(".csv")) {
+            return CSV;
+        }
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+            return NDJSON;
+        }
+        throw new IllegalArgumentException("Unknown export format of " + fileName + ", expected .csv, .ndjson or .jsonl (optionally .gz)");
+    }
+
+    /**
+     * Tells whether a file name asks for a gzip compressed export
+     *
+     * @param fileName String
+     * @return boolean
+     */
+    public static boolean isGzip(String fileName) {
+        return fileName.toLowerCase(Locale.ROOT).endsWith(".gz");
+    }
+}
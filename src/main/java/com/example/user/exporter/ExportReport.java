@@ -0,0 +1,18 @@
+package com.example.user.exporter;
+
+import lombok.Data;
+
+/**
+ * The summary of an export: how many users were written, how fast, and the heap used meanwhile
+ */
+@Data
+public class ExportReport {
+    private ExportFormat format;
+    private boolean gzip;
+    private long exported;
+    private long bytes;
+    private long elapsedMillis;
+    private double rowsPerSecond;
+    private long peakHeapBytes;
+    private String file;
+}
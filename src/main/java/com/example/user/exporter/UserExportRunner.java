@@ -0,0 +1,61 @@
+package com.example.user.exporter;
+
+import com.example.user.domain.Gender;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs an export from the command line, then stops the application:
+ * {@code java -jar user.jar --export=users.ndjson.gz [--export.country=France] [--export.gender=FEMALE]}
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserExportRunner implements ApplicationRunner {
+    public static final String EXPORT_OPTION = "export";
+
+    private final UserExporter userExporter;
+    private final ApplicationContext applicationContext;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        String target = option(args, EXPORT_OPTION);
+        if (target == null) {
+            return;
+        }
+        String gender = option(args, EXPORT_OPTION + ".gender");
+        ExportReport report = userExporter.exportFile(Paths.get(target), option(args, EXPORT_OPTION + ".country"),
+                gender == null ? null : Gender.valueOf(gender.toUpperCase(Locale.ROOT)));
+        log.info("Export to {} done: {}", target, report);
+        System.exit(SpringApplication.exit(applicationContext));
+    }
+
+    private static String option(ApplicationArguments args, String name) {
+        List<String> values = args.getOptionValues(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    /**
+     * Tells whether the command line asks for an export
+     *
+     * @param args String[]
+     * @return boolean
+     */
+    public static boolean isExport(String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith("--" + EXPORT_OPTION + "=")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.user.exporter;
+
+import com.example.user.domain.Gender;
+import com.example.user.domain.User;
+import com.example.user.services.UserService;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports the users table for the downstream analytics, in CSV or NDJSON, optionally gzip compressed.
+ * The table is read through a forward-only cursor and each row is written as soon as it is read, straight from the
+ * entity to a streaming writer, so that the heap used does not depend on the size of the table.
+ */
+@Slf4j
+@Service
+public class UserExporter {
+    static final String CSV_HEADER = "id,username,birthdate,country,phone,gender";
+
+    private final UserService userService;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final int bufferSize;
+
+    public UserExporter(UserService userService, @Value("${user.export.buffer-size:65536}") int bufferSize) {
+        this.userService = userService;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * This method exports the users to a file, whose format is given by its extension (.csv, .ndjson or .jsonl,
+     * followed by .gz for a compressed export). An existing file is replaced.
+     *
+     * @param target  Path
+     * @param country String optional filter
+     * @param gender  Gender optional filter
+     * @return ExportReport
+     * @throws IOException if the file cannot be written
+     */
+    public ExportReport exportFile(Path target, String country, Gender gender) throws IOException {
+        String fileName = target.getFileName().toString();
+        ExportFormat format = ExportFormat.fromFileName(fileName);
+        boolean gzip = ExportFormat.isGzip(fileName);
+        resetHeapPeaks();
+        long start = System.nanoTime();
+        long exported;
+        // closing the stream flushes the buffers (and the gzip trailer) and closes the channel
+        OutputStream out = new BufferedOutputStream(Channels.newOutputStream(FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)), bufferSize);
+        if (gzip) {
+            out = new BufferedOutputStream(new GZIPOutputStream(out, bufferSize), bufferSize);
+        }
+        try (OutputStream output = out) {
+            exported = export(output, format, country, gender);
+        }
+        long elapsed = System.nanoTime() - start;
+        ExportReport report = new ExportReport();
+        report.setFormat(format);
+        report.setGzip(gzip);
+        report.setExported(exported);
+        report.setBytes(Files.size(target));
+        report.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(elapsed));
+        report.setRowsPerSecond(elapsed == 0 ? 0 : exported * (double) TimeUnit.SECONDS.toNanos(1) / elapsed);
+        report.setPeakHeapBytes(heapPeak());
+        report.setFile(target.toAbsolutePath().toString());
+        log.info("Exported {} users to {} ({} bytes) in {} ms ({} rows/s), peak heap {} MB", exported, report.getFile(),
+                report.getBytes(), report.getElapsedMillis(), Math.round(report.getRowsPerSecond()), report.getPeakHeapBytes() >> 20);
+        return report;
+    }
+
+    /**
+     * This method writes the users to the given stream, which is not closed
+     *
+     * @param output  OutputStream
+     * @param format  ExportFormat
+     * @param country String optional filter
+     * @param gender  Gender optional filter
+     * @return long the number of users written
+     * @throws IOException if the stream cannot be written
+     */
+    public long export(OutputStream output, ExportFormat format, String country, Gender gender) throws IOException {
+        long[] exported = new long[1];
+        try {
+            if (format == ExportFormat.NDJSON) {
+                try (JsonGenerator generator = jsonFactory.createGenerator(output)) {
+                    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                    generator.setRootValueSeparator(null);
+                    userService.streamUsers(country, gender, user -> {
+                        writeJson(generator, user);
+                        exported[0]++;
+                    });
+                }
+            } else {
+                Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+                writer.write(CSV_HEADER);
+                writer.write('\n');
+                userService.streamUsers(country, gender, user -> {
+                    writeCsv(writer, user);
+                    exported[0]++;
+                });
+                writer.flush();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return exported[0];
+    }
+
+    private static void writeJson(JsonGenerator generator, User user) {
+        try {
+            generator.writeStartObject();
+            generator.writeNumberField("id", user.getId());
+            generator.writeStringField("username", user.getUsername());
+            generator.writeStringField("birthdate", user.getBirthdate() == null ? null : user.getBirthdate().toString());
+            generator.writeStringField("country", user.getCountry());
+            generator.writeStringField("phone", user.getPhone());
+            generator.writeStringField("gender", user.getGender() == null ? null : user.getGender().name());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeCsv(Writer writer, User user) {
+        try {
+            writer.write(Long.toString(user.getId()));
+            writer.write(',');
+            writeCsvField(writer, user.getUsername());
+            writer.write(',');
+            writeCsvField(writer, user.getBirthdate() == null ? null : user.getBirthdate().toString());
+            writer.write(',');
+            writeCsvField(writer, user.getCountry());
+            writer.write(',');
+            writeCsvField(writer, user.getPhone());
+            writer.write(',');
+            writeCsvField(writer, user.getGender() == null ? null : user.getGender().name());
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quoted = false;
+        for (int i = 0; i < value.length() && !quoted; i++) {
+            char c = value.charAt(i);
+            quoted = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quoted) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    private static void resetHeapPeaks() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long heapPeak() {
+        // the pools do not peak at the same time: the sum is an upper bound of the heap used during the export
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.user.formats;
+
+import com.example.user.dto.RegistrationStatus;
+import com.example.user.dto.UserDto;
+import com.example.user.exception.ErrorMessage;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufFactory;
+import com.fasterxml.jackson.dataformat.protobuf.schema.NativeProtobufSchema;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchemaLoader;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Answers the callers accepting CBOR, Smile or protobuf (application/cbor, application/x-jackson-smile,
+ * application/x-protobuf) in that format, and reads the bodies sent in these formats, before the same validation as
+ * the JSON ones. The three converters use the ObjectMapper configuration of Spring Boot (modules, dates as text...),
+ * so that the binary bodies carry the same values as the JSON ones. They come after the JSON converter, which still
+ * answers the requests accepting any type.
+ * The protobuf messages are described by the schema published at /proto/user.proto.
+ */
+@Configuration
+public class BinaryFormatsConfiguration implements WebMvcConfigurer {
+    static final String PROTOBUF_SCHEMA = "static/proto/user.proto";
+
+    private final ObjectProvider<Jackson2ObjectMapperBuilder> builders;
+
+    public BinaryFormatsConfiguration(ObjectProvider<Jackson2ObjectMapperBuilder> builders) {
+        this.builders = builders;
+    }
+
+    /**
+     * This method replaces the CBOR and Smile converters that Spring MVC configures on its own, with the default
+     * settings of Jackson, by ones configured as the JSON converter, and adds the protobuf one
+     *
+     * @param converters List<HttpMessageConverter<?>>
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        replaceOrAdd(converters, new MappingJackson2CborHttpMessageConverter(builders.getObject().factory(new CBORFactory()).build()));
+        replaceOrAdd(converters, new MappingJackson2SmileHttpMessageConverter(builders.getObject().factory(new SmileFactory()).build()));
+        try {
+            converters.add(new UserProtobufHttpMessageConverter(builders.getObject().factory(new ProtobufFactory()).build(),
+                    loadSchema(), UserDto.class, ErrorMessage.class, RegistrationStatus.class));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void replaceOrAdd(List<HttpMessageConverter<?>> converters, HttpMessageConverter<?> converter) {
+        for (int i = 0; i < converters.size(); i++) {
+            if (converters.get(i).getClass() == converter.getClass()) {
+                converters.set(i, converter);
+                return;
+            }
+        }
+        converters.add(converter);
+    }
+
+    /**
+     * This method loads the published protobuf schema from the classpath
+     *
+     * @return NativeProtobufSchema
+     * @throws IOException when the schema cannot be read
+     */
+    public static NativeProtobufSchema loadSchema() throws IOException {
+        try (InputStream in = new ClassPathResource(PROTOBUF_SCHEMA).getInputStream()) {
+            return ProtobufSchemaLoader.std.loadNative(in, true);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.user.formats;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The binary media types answered besides JSON, for the internal callers
+ */
+public final class BinaryMediaTypes {
+    public static final MediaType SMILE = new MediaType("application", "x-jackson-smile");
+    public static final MediaType PROTOBUF = new MediaType("application", "x-protobuf");
+    private static final List<MediaType> ALL = Arrays.asList(MediaType.APPLICATION_CBOR, SMILE, PROTOBUF);
+
+    private BinaryMediaTypes() {
+    }
+
+    /**
+     * This method tells whether an Accept header prefers one of the binary media types to JSON.
+     * The headers not naming any of them, the most common, are answered without being parsed.
+     *
+     * @param accept String the Accept header, optional
+     * @return boolean
+     */
+    public static boolean preferred(String accept) {
+        if (accept == null || !(accept.contains("cbor") || accept.contains("smile") || accept.contains("protobuf"))) {
+            return false;
+        }
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+        MediaType.sortBySpecificityAndQuality(mediaTypes);
+        for (MediaType mediaType : mediaTypes) {
+            for (MediaType binary : ALL) {
+                if (binary.equalsTypeAndSubtype(mediaType)) {
+                    return true;
+                }
+            }
+            if (mediaType.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                return false;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.user.formats;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.protobuf.schema.NativeProtobufSchema;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchema;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes the bodies whose class has a message of the same name in the protobuf schema, with Jackson: the
+ * classes are (de)serialized as in JSON, then encoded with the message of their name. The readers and the writers
+ * are built once per class.
+ */
+public class UserProtobufHttpMessageConverter extends AbstractHttpMessageConverter<Object> {
+    private final Map<Class<?>, ObjectReader> readers = new HashMap<>();
+    private final Map<Class<?>, ObjectWriter> writers = new HashMap<>();
+
+    /**
+     * @param objectMapper ObjectMapper over a ProtobufFactory
+     * @param schema       NativeProtobufSchema the messages
+     * @param types        the classes of the bodies, each one named as its message
+     */
+    public UserProtobufHttpMessageConverter(ObjectMapper objectMapper, NativeProtobufSchema schema, Class<?>... types) {
+        super(BinaryMediaTypes.PROTOBUF);
+        for (Class<?> type : types) {
+            ProtobufSchema messageSchema = schema.forType(type.getSimpleName());
+            readers.put(type, objectMapper.readerFor(type).with(messageSchema));
+            writers.put(type, objectMapper.writerFor(type).with(messageSchema));
+        }
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return writers.containsKey(clazz);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        try {
+            return readers.get(clazz).readValue(inputMessage.getBody());
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotReadableException("Invalid protobuf " + clazz.getSimpleName() + ": " + e.getOriginalMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(Object value, HttpOutputMessage outputMessage) throws IOException {
+        try {
+            writers.get(value.getClass()).writeValue(outputMessage.getBody(), value);
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotWritableException("Could not write protobuf " + value.getClass().getSimpleName() + ": " + e.getOriginalMessage(), e);
+        }
+    }
+}
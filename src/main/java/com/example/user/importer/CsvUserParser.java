@@ -0,0 +1,86 @@
+package com.example.user.importer;
+
+import com.example.user.domain.Gender;
+import com.example.user.dto.UserDto;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Parses the lines of a CSV dump of users. The columns are given by the header line, among:
+ * username, birthdate (yyyy-MM-dd), country, phone and gender. Quoted fields may contain commas but not line breaks.
+ */
+class CsvUserParser {
+    private final int username;
+    private final int birthdate;
+    private final int country;
+    private final int phone;
+    private final int gender;
+
+    CsvUserParser(String header) {
+        List<String> columns = split(header);
+        List<String> names = new ArrayList<>(columns.size());
+        for (String column : columns) {
+            names.add(column.trim().toLowerCase(Locale.ROOT));
+        }
+        this.username = names.indexOf("username");
+        this.birthdate = names.indexOf("birthdate");
+        this.country = names.indexOf("country");
+        this.phone = names.indexOf("phone");
+        this.gender = names.indexOf("gender");
+        if (username < 0 || birthdate < 0 || country < 0) {
+            throw new IllegalArgumentException("The CSV header must contain the username, birthdate and country columns: " + header);
+        }
+    }
+
+    UserDto parse(String line) {
+        List<String> fields = split(line);
+        UserDto userDto = new UserDto();
+        userDto.setUsername(field(fields, username));
+        String birth = field(fields, birthdate);
+        userDto.setBirthdate(birth == null ? null : LocalDate.parse(birth));
+        userDto.setCountry(field(fields, country));
+        userDto.setPhone(field(fields, phone));
+        String genderValue = field(fields, gender);
+        userDto.setGender(genderValue == null ? null : Gender.valueOf(genderValue.toUpperCase(Locale.ROOT)));
+        return userDto;
+    }
+
+    private static String field(List<String> fields, int index) {
+        if (index < 0 || index >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
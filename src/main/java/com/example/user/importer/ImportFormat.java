@@ -0,0 +1,45 @@
+package com.example.user.importer;
+
+import java.util.Locale;
+
+/**
+ * The formats of the user dumps that can be imported
+ */
+public enum ImportFormat {
+    CSV,
+    NDJSON;
+
+    /**
+     * Guesses the format from the extension of a file: .csv or .ndjson/.jsonl
+     *
+     * @param fileName String
+     * @return ImportFormat
+     */
+    public static ImportFormat fromFileName(String fileName) {
+        String name = fileName.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".csv")) {
+            return CSV;
+        }
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+            return NDJSON;
+        }
+        throw new IllegalArgumentException("Unknown import format of " + fileName + ", expected .csv, .ndjson or .jsonl");
+    }
+
+    /**
+     * Guesses the format from a content type: text/csv or application/x-ndjson
+     *
+     * @param contentType String
+     * @return ImportFormat
+     */
+    public static ImportFormat fromContentType(String contentType) {
+        String type = contentType == null ? "" : contentType.toLowerCase(Locale.ROOT);
+        if (type.startsWith("text/csv")) {
+            return CSV;
+        }
+        if (type.startsWith("application/x-ndjson")) {
+            return NDJSON;
+        }
+        throw new IllegalArgumentException("Unknown import content type " + contentType + ", expected text/csv or application/x-ndjson");
+    }
+}
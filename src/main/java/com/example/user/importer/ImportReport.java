@@ -0,0 +1,17 @@
+package com.example.user.importer;
+
+import lombok.Data;
+
+/**
+ * The summary of an import: how many records were read, imported and rejected, and how fast
+ */
+@Data
+public class ImportReport {
+    private ImportFormat format;
+    private long read;
+    private long imported;
+    private long rejected;
+    private long elapsedMillis;
+    private double rowsPerSecond;
+    private String rejectsFile;
+}
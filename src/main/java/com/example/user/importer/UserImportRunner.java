@@ -0,0 +1,61 @@
+package com.example.user.importer;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.ExitCodeGenerator;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Runs an import from the command line, then stops the application:
+ * {@code java -jar user.jar --import=users.csv [--import.rejects=users.rejects]}
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserImportRunner implements ApplicationRunner {
+    public static final String IMPORT_OPTION = "import";
+    public static final String REJECTS_OPTION = "import.rejects";
+
+    private final UserImporter userImporter;
+    private final ApplicationContext applicationContext;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        List<String> sources = args.getOptionValues(IMPORT_OPTION);
+        if (sources == null || sources.isEmpty()) {
+            return;
+        }
+        Path source = Paths.get(sources.get(0));
+        List<String> rejectOptions = args.getOptionValues(REJECTS_OPTION);
+        Path rejects = rejectOptions == null || rejectOptions.isEmpty()
+                ? source.resolveSibling(source.getFileName() + ".rejects")
+                : Paths.get(rejectOptions.get(0));
+        ImportReport report = userImporter.importFile(source, rejects);
+        log.info("Import of {} done: {}", source, report);
+        int exitCode = report.getRejected() == 0 ? 0 : 2;
+        System.exit(SpringApplication.exit(applicationContext, (ExitCodeGenerator) () -> exitCode));
+    }
+
+    /**
+     * Tells whether the command line asks for an import
+     *
+     * @param args String[]
+     * @return boolean
+     */
+    public static boolean isImport(String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith("--" + IMPORT_OPTION + "=")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,392 @@
+package com.example.user.importer;
+
+import com.example.user.domain.User;
+import com.example.user.dto.UserDto;
+import com.example.user.mapper.UserMapper;
+import com.example.user.services.RegistrationOutcome;
+import com.example.user.services.UserService;
+import com.example.user.validators.Eligibility;
+import com.example.user.validators.EligibilityPolicy;
+import com.example.user.validators.EligibilityProperties;
+import com.example.user.validators.UserAuthorization;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Imports large dumps of users (CSV or NDJSON) without loading them in memory.
+ * The records are read incrementally, validated and converted to Users by a pool of workers, then registered in
+ * fixed-size batches by a single committer. Bounded queues between the stages slow the reader down when the database
+ * cannot keep up. Invalid records (bad country, underage, duplicate username, unreadable line...) are written to a
+ * rejects file with their line number and the reason, without stopping the import.
+ */
+@Slf4j
+@Service
+public class UserImporter {
+    private static final List<ImportRow> END_OF_INPUT = Collections.emptyList();
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final UserService userService;
+    private final Validator validator;
+    private final ObjectReader userDtoReader;
+    private final EligibilityPolicy eligibilityPolicy;
+    private final int parallelism;
+    private final int chunkLines;
+    private final int commitSize;
+    private final Path rejectDirectory;
+
+    public UserImporter(UserService userService, Validator validator, ObjectMapper objectMapper,
+                        EligibilityProperties eligibilityProperties,
+                        @Value("${user.import.parallelism:0}") int parallelism,
+                        @Value("${user.import.chunk-lines:1000}") int chunkLines,
+                        @Value("${user.import.commit-size:1000}") int commitSize,
+                        @Value("${user.import.reject-dir:${java.io.tmpdir}}") String rejectDirectory) {
+        this.userService = userService;
+        this.validator = validator;
+        this.userDtoReader = objectMapper.readerFor(UserDto.class);
+        String policy = UserDto.class.getAnnotation(UserAuthorization.class).policy();
+        this.eligibilityPolicy = new EligibilityPolicy(policy, eligibilityProperties.getPolicies().get(policy), Clock.systemDefaultZone());
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.chunkLines = chunkLines;
+        this.commitSize = commitSize;
+        this.rejectDirectory = Paths.get(rejectDirectory);
+    }
+
+    /**
+     * This method imports a dump file, read through a file channel. Its format is given by its extension.
+     *
+     * @param source  Path the .csv, .ndjson or .jsonl file
+     * @param rejects Path the file where the rejected records are written
+     * @return ImportReport
+     * @throws IOException if a file cannot be read or written
+     */
+    public ImportReport importFile(Path source, Path rejects) throws IOException {
+        ImportFormat format = ImportFormat.fromFileName(source.getFileName().toString());
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ);
+             BufferedReader reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), 1 << 16))) {
+            return importUsers(reader, format, rejects);
+        }
+    }
+
+    /**
+     * This method imports an uploaded dump. The rejected records are written to a new file of user.import.reject-dir.
+     *
+     * @param reader BufferedReader
+     * @param format ImportFormat
+     * @return ImportReport
+     * @throws IOException if the dump cannot be read or the rejects cannot be written
+     */
+    public ImportReport importUsers(BufferedReader reader, ImportFormat format) throws IOException {
+        Files.createDirectories(rejectDirectory);
+        return importUsers(reader, format, Files.createTempFile(rejectDirectory, "user-import-", ".rejects"));
+    }
+
+    /**
+     * This method imports the users read from the given reader, one record per line
+     *
+     * @param reader  BufferedReader
+     * @param format  ImportFormat
+     * @param rejects Path the file where the rejected records are written
+     * @return ImportReport
+     * @throws IOException if the dump cannot be read or the rejects cannot be written
+     */
+    public ImportReport importUsers(BufferedReader reader, ImportFormat format, Path rejects) throws IOException {
+        long start = System.nanoTime();
+        try (BufferedWriter rejectWriter = Files.newBufferedWriter(rejects, StandardCharsets.UTF_8)) {
+            ImportRun run = new ImportRun(format, rejectWriter);
+            run.execute(reader);
+            ImportReport report = new ImportReport();
+            report.setFormat(format);
+            report.setRead(run.read.get());
+            report.setImported(run.imported.get());
+            report.setRejected(run.rejected.get());
+            report.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            report.setRowsPerSecond(rowsPerSecond(run.read.get(), System.nanoTime() - start));
+            report.setRejectsFile(rejects.toAbsolutePath().toString());
+            log.info("Imported {} users out of {} records in {} ms ({} rows/s), {} rejects written to {}", report.getImported(),
+                    report.getRead(), report.getElapsedMillis(), Math.round(report.getRowsPerSecond()), report.getRejected(), report.getRejectsFile());
+            return report;
+        }
+    }
+
+    private static double rowsPerSecond(long rows, long elapsedNanos) {
+        return elapsedNanos == 0 ? 0 : rows * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    /**
+     * The state of one import: the stages, their queues and the counters
+     */
+    private final class ImportRun {
+        private final ImportFormat format;
+        private final BufferedWriter rejectWriter;
+        private final Semaphore chunksInFlight = new Semaphore(parallelism * 2);
+        private final BlockingQueue<List<ImportRow>> validated = new ArrayBlockingQueue<>(parallelism * 2);
+        private final AtomicLong read = new AtomicLong();
+        private final AtomicLong imported = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private volatile Throwable failure;
+        private CsvUserParser csvParser;
+        private long lastProgress = System.nanoTime();
+        private final long startedAt = System.nanoTime();
+
+        private ImportRun(ImportFormat format, BufferedWriter rejectWriter) {
+            this.format = format;
+            this.rejectWriter = rejectWriter;
+        }
+
+        private void execute(BufferedReader reader) throws IOException {
+            AtomicInteger threads = new AtomicInteger();
+            ExecutorService workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+                Thread thread = new Thread(runnable, "user-import-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            ExecutorService committer = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "user-import-committer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                Future<?> commits = committer.submit(this::commitLoop);
+                readChunks(reader, workers);
+                acquire(parallelism * 2);
+                put(END_OF_INPUT);
+                commits.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("The import was interrupted");
+            } catch (ExecutionException e) {
+                fail(e.getCause());
+            } finally {
+                workers.shutdownNow();
+                committer.shutdownNow();
+            }
+            if (failure != null) {
+                throw new IOException("The import failed after " + imported.get() + " users", failure);
+            }
+        }
+
+        private void readChunks(BufferedReader reader, ExecutorService workers) throws IOException, InterruptedException {
+            long lineNumber = 0;
+            if (format == ImportFormat.CSV) {
+                String header = reader.readLine();
+                lineNumber++;
+                if (header == null) {
+                    return;
+                }
+                csvParser = new CsvUserParser(header);
+            }
+            List<ImportRow> chunk = new ArrayList<>(chunkLines);
+            String line;
+            while ((line = reader.readLine()) != null && failure == null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                read.incrementAndGet();
+                chunk.add(new ImportRow(lineNumber, line));
+                if (chunk.size() == chunkLines) {
+                    submit(workers, chunk);
+                    chunk = new ArrayList<>(chunkLines);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                submit(workers, chunk);
+            }
+        }
+
+        private void submit(ExecutorService workers, List<ImportRow> chunk) throws InterruptedException {
+            acquire(1);
+            workers.execute(() -> {
+                try {
+                    put(validate(chunk));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    fail(e);
+                } finally {
+                    chunksInFlight.release();
+                }
+            });
+        }
+
+        private List<ImportRow> validate(List<ImportRow> chunk) {
+            List<ImportRow> valid = new ArrayList<>(chunk.size());
+            for (ImportRow row : chunk) {
+                UserDto userDto;
+                try {
+                    userDto = format == ImportFormat.CSV ? csvParser.parse(row.line) : userDtoReader.readValue(row.line);
+                } catch (IOException | RuntimeException e) {
+                    reject(row, "unreadable record: " + e.getMessage());
+                    continue;
+                }
+                if (userDto == null) {
+                    reject(row, "unreadable record: not a user");
+                    continue;
+                }
+                String reason = rejectionReason(userDto);
+                if (reason == null) {
+                    row.user = UserMapper.INSTANCE.convertToUser(userDto);
+                    valid.add(row);
+                } else {
+                    reject(row, reason);
+                }
+            }
+            return valid;
+        }
+
+        private String rejectionReason(UserDto userDto) {
+            if (userDto.getBirthdate() == null || userDto.getCountry() == null) {
+                return "birthdate and country are required";
+            }
+            StringBuilder reasons = new StringBuilder();
+            for (ConstraintViolation<UserDto> violation : validator.validate(userDto)) {
+                if (reasons.length() > 0) {
+                    reasons.append("; ");
+                }
+                if (violation.getConstraintDescriptor().getAnnotation() instanceof UserAuthorization) {
+                    Eligibility eligibility = eligibilityPolicy.check(userDto.getCountry(), userDto.getBirthdate());
+                    reasons.append(eligibility == Eligibility.UNDERAGE ? "underage" : "country '" + userDto.getCountry() + "' is not allowed");
+                } else {
+                    reasons.append(violation.getPropertyPath()).append(' ').append(violation.getMessage());
+                }
+            }
+            return reasons.length() == 0 ? null : reasons.toString();
+        }
+
+        private void commitLoop() {
+            List<ImportRow> pending = new ArrayList<>(commitSize * 2);
+            try {
+                while (true) {
+                    List<ImportRow> rows = take();
+                    if (rows == END_OF_INPUT) {
+                        break;
+                    }
+                    pending.addAll(rows);
+                    while (pending.size() >= commitSize) {
+                        List<ImportRow> batch = pending.subList(0, commitSize);
+                        commit(batch);
+                        batch.clear();
+                    }
+                }
+                commit(pending);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        private void commit(List<ImportRow> rows) {
+            if (rows.isEmpty()) {
+                return;
+            }
+            List<User> users = new ArrayList<>(rows.size());
+            for (ImportRow row : rows) {
+                users.add(row.user);
+            }
+            List<RegistrationOutcome> outcomes = userService.registerNewUsers(users);
+            for (int i = 0; i < outcomes.size(); i++) {
+                if (outcomes.get(i).isCreated()) {
+                    imported.incrementAndGet();
+                } else {
+                    reject(rows.get(i), outcomes.get(i).getError());
+                }
+            }
+            long now = System.nanoTime();
+            if (now - lastProgress >= PROGRESS_INTERVAL_NANOS) {
+                lastProgress = now;
+                log.info("Import in progress: {} records read, {} users imported, {} rejected ({} rows/s)", read.get(),
+                        imported.get(), rejected.get(), Math.round(rowsPerSecond(imported.get() + rejected.get(), now - startedAt)));
+            }
+        }
+
+        private void reject(ImportRow row, String reason) {
+            rejected.incrementAndGet();
+            synchronized (rejectWriter) {
+                try {
+                    rejectWriter.write(Long.toString(row.lineNumber));
+                    rejectWriter.write('\t');
+                    rejectWriter.write(reason.replace('\n', ' ').replace('\t', ' '));
+                    rejectWriter.write('\t');
+                    rejectWriter.write(row.line);
+                    rejectWriter.newLine();
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+        }
+
+        private void acquire(int permits) throws InterruptedException {
+            while (failure == null && !chunksInFlight.tryAcquire(permits, 100, TimeUnit.MILLISECONDS)) {
+                // waits for the workers, unless another stage failed
+            }
+        }
+
+        private void put(List<ImportRow> rows) throws InterruptedException {
+            while (failure == null && !validated.offer(rows, 100, TimeUnit.MILLISECONDS)) {
+                // waits for the committer, unless another stage failed
+            }
+        }
+
+        private List<ImportRow> take() throws InterruptedException {
+            List<ImportRow> rows;
+            while ((rows = validated.poll(100, TimeUnit.MILLISECONDS)) == null) {
+                if (failure != null) {
+                    return END_OF_INPUT;
+                }
+            }
+            return rows;
+        }
+
+        private void fail(Throwable e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+    }
+
+    /**
+     * One record of the dump and, once validated, the user to register
+     */
+    private static final class ImportRow {
+        private final long lineNumber;
+        private final String line;
+        private User user;
+
+        private ImportRow(long lineNumber, String line) {
+            this.lineNumber = lineNumber;
+            this.line = line;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.user.json;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+/**
+ * Formats and parses the yyyy-MM-dd dates digit by digit, without a DateTimeFormatter, for the years 0 to 9999.
+ * The other years are left to ISO_LOCAL_DATE, which writes them with a sign.
+ */
+final class IsoDates {
+    static final int LENGTH = 10;
+
+    private IsoDates() {
+    }
+
+    /**
+     * This method writes the date as yyyy-MM-dd in the buffer, from the offset
+     *
+     * @param date   LocalDate
+     * @param buffer char[] of at least offset + 10 chars
+     * @param offset int
+     * @return the number of chars written, or -1 when the year needs ISO_LOCAL_DATE
+     */
+    static int format(LocalDate date, char[] buffer, int offset) {
+        int year = date.getYear();
+        if (year < 0 || year > 9999) {
+            return -1;
+        }
+        int month = date.getMonthValue();
+        int day = date.getDayOfMonth();
+        buffer[offset] = (char) ('0' + year / 1000);
+        buffer[offset + 1] = (char) ('0' + year / 100 % 10);
+        buffer[offset + 2] = (char) ('0' + year / 10 % 10);
+        buffer[offset + 3] = (char) ('0' + year % 10);
+        buffer[offset + 4] = '-';
+        buffer[offset + 5] = (char) ('0' + month / 10);
+        buffer[offset + 6] = (char) ('0' + month % 10);
+        buffer[offset + 7] = '-';
+        buffer[offset + 8] = (char) ('0' + day / 10);
+        buffer[offset + 9] = (char) ('0' + day % 10);
+        return LENGTH;
+    }
+
+    /**
+     * This method parses a yyyy-MM-dd date
+     *
+     * @param text   char[]
+     * @param offset int
+     * @param length int
+     * @return the date, or null when the text is not a valid yyyy-MM-dd date
+     */
+    static LocalDate parse(char[] text, int offset, int length) {
+        if (length != LENGTH || text[offset + 4] != '-' || text[offset + 7] != '-') {
+            return null;
+        }
+        int year = digits(text, offset, 4);
+        int month = digits(text, offset + 5, 2);
+        int day = digits(text, offset + 8, 2);
+        if (year < 0 || month < 0 || day < 0) {
+            return null;
+        }
+        try {
+            return LocalDate.of(year, month, day);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    private static int digits(char[] text, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int digit = text[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.user.json;
+
+import com.example.user.domain.Gender;
+import com.example.user.dto.UserDto;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.deser.std.DelegatingDeserializer;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * Reads a UserDto field by field, without going through the bean properties. Only the usual shapes are read here: a
+ * JSON object whose fields are strings, integers or nulls, a yyyy-MM-dd birthdate and a gender by name. Any other value
+ * is read by the deserializer Jackson would have used for it, and any other input by the bean deserializer, so that
+ * the coercions and the errors are the same as without this class.
+ */
+class UserDtoDeserializer extends DelegatingDeserializer {
+    private static final long serialVersionUID = 1L;
+    private static final Gender[] GENDERS = Gender.values();
+
+    UserDtoDeserializer(JsonDeserializer<?> beanDeserializer) {
+        super(beanDeserializer);
+    }
+
+    @Override
+    protected JsonDeserializer<?> newDelegatingInstance(JsonDeserializer<?> newDelegatee) {
+        return new UserDtoDeserializer(newDelegatee);
+    }
+
+    @Override
+    public Object deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (!p.isExpectedStartObjectToken()) {
+            return _delegatee.deserialize(p, ctxt);
+        }
+        UserDto userDto = new UserDto();
+        for (String name = p.nextFieldName(); name != null; name = p.nextFieldName()) {
+            p.nextToken();
+            switch (name) {
+                case "id":
+                    userDto.setId(readId(p, ctxt));
+                    break;
+                case "username":
+                    userDto.setUsername(readString(p, ctxt));
+                    break;
+                case "birthdate":
+                    userDto.setBirthdate(readDate(p, ctxt));
+                    break;
+                case "country":
+                    userDto.setCountry(readString(p, ctxt));
+                    break;
+                case "phone":
+                    userDto.setPhone(readString(p, ctxt));
+                    break;
+                case "gender":
+                    userDto.setGender(readGender(p, ctxt));
+                    break;
+                default:
+                    ctxt.handleUnknownProperty(p, _delegatee, UserDto.class, name);
+            }
+        }
+        return userDto;
+    }
+
+    private static Long readId(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (p.hasToken(JsonToken.VALUE_NUMBER_INT) && p.getNumberType() != JsonParser.NumberType.BIG_INTEGER) {
+            return p.getLongValue();
+        }
+        return p.hasToken(JsonToken.VALUE_NULL) ? null : ctxt.readValue(p, Long.class);
+    }
+
+    private static String readString(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (p.hasToken(JsonToken.VALUE_STRING)) {
+            return p.getText();
+        }
+        return p.hasToken(JsonToken.VALUE_NULL) ? null : ctxt.readValue(p, String.class);
+    }
+
+    private static LocalDate readDate(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (p.hasToken(JsonToken.VALUE_STRING)) {
+            LocalDate date = IsoDates.parse(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+            if (date != null) {
+                return date;
+            }
+        }
+        return p.hasToken(JsonToken.VALUE_NULL) ? null : ctxt.readValue(p, LocalDate.class);
+    }
+
+    private static Gender readGender(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (p.hasToken(JsonToken.VALUE_STRING)) {
+            String text = p.getText();
+            for (Gender gender : GENDERS) {
+                if (gender.name().equals(text)) {
+                    return gender;
+                }
+            }
+        }
+        return p.hasToken(JsonToken.VALUE_NULL) ? null : ctxt.readValue(p, Gender.class);
+    }
+}
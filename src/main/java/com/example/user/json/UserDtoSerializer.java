@@ -0,0 +1,80 @@
+package com.example.user.json;
+
+import com.example.user.domain.Gender;
+import com.example.user.dto.UserDto;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Writes a UserDto field by field, as the bean serializer of Jackson does: same order, nulls included, the birthdate
+ * in ISO format and the gender by name. The field names and the genders are encoded once, then copied to the output.
+ */
+class UserDtoSerializer extends StdSerializer<UserDto> {
+    private static final SerializableString ID = new SerializedString("id");
+    private static final SerializableString USERNAME = new SerializedString("username");
+    private static final SerializableString BIRTHDATE = new SerializedString("birthdate");
+    private static final SerializableString COUNTRY = new SerializedString("country");
+    private static final SerializableString PHONE = new SerializedString("phone");
+    private static final SerializableString GENDER = new SerializedString("gender");
+    private static final SerializableString[] GENDERS = genders();
+
+    UserDtoSerializer() {
+        super(UserDto.class);
+    }
+
+    private static SerializableString[] genders() {
+        Gender[] genders = Gender.values();
+        SerializableString[] names = new SerializableString[genders.length];
+        for (Gender gender : genders) {
+            names[gender.ordinal()] = new SerializedString(gender.name());
+        }
+        return names;
+    }
+
+    @Override
+    public void serialize(UserDto value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject(value);
+        gen.writeFieldName(ID);
+        if (value.getId() == null) {
+            gen.writeNull();
+        } else {
+            gen.writeNumber(value.getId());
+        }
+        gen.writeFieldName(USERNAME);
+        gen.writeString(value.getUsername());
+        gen.writeFieldName(BIRTHDATE);
+        writeDate(value.getBirthdate(), gen);
+        gen.writeFieldName(COUNTRY);
+        gen.writeString(value.getCountry());
+        gen.writeFieldName(PHONE);
+        gen.writeString(value.getPhone());
+        gen.writeFieldName(GENDER);
+        if (value.getGender() == null) {
+            gen.writeNull();
+        } else {
+            gen.writeString(GENDERS[value.getGender().ordinal()]);
+        }
+        gen.writeEndObject();
+    }
+
+    private static void writeDate(LocalDate date, JsonGenerator gen) throws IOException {
+        if (date == null) {
+            gen.writeNull();
+            return;
+        }
+        char[] buffer = new char[IsoDates.LENGTH];
+        int length = IsoDates.format(date, buffer, 0);
+        if (length < 0) {
+            gen.writeString(DateTimeFormatter.ISO_LOCAL_DATE.format(date));
+        } else {
+            gen.writeString(buffer, 0, length);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.user.json;
+
+import com.example.user.dto.UserDto;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerModifier;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Replaces the bean (de)serializers of UserDto, the body of GET /user/{id} and POST /user, by hand-written streaming
+ * ones (see UserDtoSerializer and UserDtoDeserializer) producing the same JSON.
+ * Spring Boot adds this module to its ObjectMapper unless user.json.fast-serializers=false. The serializer is only
+ * used when the ObjectMapper writes UserDto as by default: dates as text, enums by name, every property included in
+ * declaration order; otherwise the bean serializer is kept.
+ */
+@Component
+@ConditionalOnProperty(name = "user.json.fast-serializers", havingValue = "true", matchIfMissing = true)
+public class UserJsonModule extends SimpleModule {
+    private static final long serialVersionUID = 1L;
+
+    public UserJsonModule() {
+        super("UserJsonModule");
+        setSerializerModifier(new BeanSerializerModifier() {
+            @Override
+            public JsonSerializer<?> modifySerializer(SerializationConfig config, BeanDescription beanDesc,
+                                                      JsonSerializer<?> serializer) {
+                return beanDesc.getBeanClass() == UserDto.class && writesAsDefault(config) ? new UserDtoSerializer() : serializer;
+            }
+        });
+        setDeserializerModifier(new BeanDeserializerModifier() {
+            @Override
+            public JsonDeserializer<?> modifyDeserializer(DeserializationConfig config, BeanDescription beanDesc,
+                                                          JsonDeserializer<?> deserializer) {
+                return beanDesc.getBeanClass() == UserDto.class && readsAsDefault(config) ? new UserDtoDeserializer(deserializer) : deserializer;
+            }
+        });
+    }
+
+    private static boolean writesAsDefault(SerializationConfig config) {
+        JsonInclude.Include inclusion = config.getDefaultPropertyInclusion(UserDto.class).getValueInclusion();
+        return !config.isEnabled(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                && !config.isEnabled(SerializationFeature.WRITE_ENUMS_USING_TO_STRING)
+                && !config.isEnabled(SerializationFeature.WRITE_ENUMS_USING_INDEX)
+                && !config.isEnabled(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+                && config.getPropertyNamingStrategy() == null
+                && (inclusion == JsonInclude.Include.ALWAYS || inclusion == JsonInclude.Include.USE_DEFAULTS);
+    }
+
+    private static boolean readsAsDefault(DeserializationConfig config) {
+        return !config.isEnabled(MapperFeature.ACCEPT_CASE_INSENSITIVE_PROPERTIES)
+                && config.getPropertyNamingStrategy() == null;
+    }
+}
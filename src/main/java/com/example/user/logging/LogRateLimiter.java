@@ -0,0 +1,33 @@
+package com.example.user.logging;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets at most a given number of log events of one kind through every second, and counts the others. Shared by the
+ * error handler (ControllerExceptionHandler) and the sampled tracing (SampledTracer)
+ */
+public final class LogRateLimiter {
+    private final AtomicLong second = new AtomicLong();
+    private final AtomicInteger logged = new AtomicInteger();
+    private final AtomicLong suppressed = new AtomicLong();
+
+    /**
+     * This method tells whether an event can be logged
+     *
+     * @param perSecond int the number of events logged per second
+     * @return long -1 if the event must not be logged, else the number of events not logged since the last logged one
+     */
+    public long tryAcquire(int perSecond) {
+        long now = System.currentTimeMillis() / 1000;
+        long current = second.get();
+        if (current != now && second.compareAndSet(current, now)) {
+            logged.set(0);
+        }
+        if (logged.incrementAndGet() <= perSecond) {
+            return suppressed.getAndSet(0);
+        }
+        suppressed.incrementAndGet();
+        return -1;
+    }
+}
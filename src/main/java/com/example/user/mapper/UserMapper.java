@@ -3,6 +3,7 @@ package com.example.user.mapper;
 import com.example.user.domain.User;
 import com.example.user.dto.UserDto;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import org.mapstruct.factory.Mappers;
 
 /**
@@ -14,6 +15,8 @@ public interface UserMapper {
 
     UserDto convertToDto(User user);
 
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "normalizedPhone", ignore = true)
     User convertToUser(UserDto userDto);
 
 }
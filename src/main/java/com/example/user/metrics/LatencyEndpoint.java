@@ -0,0 +1,50 @@
+package com.example.user.metrics;
+
+import com.example.user.aspect.LatencyAspect;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Exposes the latency percentiles of every layer at /actuator/latency and logs them periodically
+ */
+@Slf4j
+@Component
+@Endpoint(id = "latency")
+@RequiredArgsConstructor
+public class LatencyEndpoint {
+    private final LatencyAspect latencyAspect;
+
+    /**
+     * The p50, p90, p99, p99.9 and max latencies of every recorded method, split into web, service, persistence and
+     * exception-handler layers
+     *
+     * @return List<LatencySnapshot>
+     */
+    @ReadOperation
+    public List<LatencySnapshot> latencies() {
+        return latencyAspect.snapshots();
+    }
+
+    /**
+     * Logs a snapshot of the latencies, every user.latency.snapshot-interval-ms
+     */
+    @Scheduled(fixedRateString = "${user.latency.snapshot-interval-ms:60000}",
+            initialDelayString = "${user.latency.snapshot-interval-ms:60000}")
+    public void logSnapshot() {
+        if (!log.isInfoEnabled()) {
+            return;
+        }
+        for (LatencySnapshot snapshot : latencyAspect.snapshots()) {
+            if (snapshot.getCount() > 0) {
+                log.info("{} {} count={} p50={}ms p90={}ms p99={}ms p99.9={}ms max={}ms", snapshot.getLayer(), snapshot.getMethod(),
+                        snapshot.getCount(), snapshot.getP50(), snapshot.getP90(), snapshot.getP99(), snapshot.getP999(), snapshot.getMax());
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.user.metrics;
+
+import lombok.Data;
+
+/**
+ * The latency percentiles of one method, in milliseconds
+ */
+@Data
+public class LatencySnapshot {
+    private String layer;
+    private String method;
+    private long count;
+    private double p50;
+    private double p90;
+    private double p99;
+    private double p999;
+    private double max;
+}
@@ -0,0 +1,202 @@
+package com.example.user.registration;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+
+/**
+ * An append-only file of the asynchronous registrations, one line per event:
+ * {@code A<tab>ticket<tab>user as JSON} when a registration is accepted and {@code D<tab>ticket<tab>status as JSON}
+ * when it is done. The accepted registrations without a done line are the ones to replay after a crash.
+ * <p>
+ * Writes are made durable with a group commit: the threads waiting for the disk share a single force of the file.
+ */
+@Slf4j
+class RegistrationJournal implements Closeable {
+    private static final String ACCEPTED = "A";
+    private static final String DONE = "D";
+
+    private final Path file;
+    private final Object writeLock = new Object();
+    private final Object syncLock = new Object();
+    private FileChannel channel;
+    private long written;
+    private volatile long synced;
+
+    RegistrationJournal(Path file) throws IOException {
+        this.file = file;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.channel = open(file);
+        this.written = channel.size();
+        this.synced = written;
+    }
+
+    /**
+     * This method reads the journal and keeps, in order, the registrations without a done line.
+     * A torn last line, left by a crash in the middle of a write, is ignored.
+     *
+     * @param done called with the ticket and the status of every completed registration
+     * @return Map<String, String> the JSON of the pending users by ticket
+     */
+    Map<String, String> replay(BiConsumer<String, String> done) throws IOException {
+        Map<String, String> pending = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 3);
+                if (fields.length < 3) {
+                    log.warn("Ignoring the truncated registration journal line: {}", line);
+                } else if (ACCEPTED.equals(fields[0])) {
+                    pending.put(fields[1], fields[2]);
+                } else if (DONE.equals(fields[0])) {
+                    // a done line may precede its accepted line: the writer can be faster than the journal
+                    pending.remove(fields[1]);
+                    done.accept(fields[1], fields[2]);
+                }
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * This method replaces the journal by the given pending registrations only, through an atomic move of a new file
+     *
+     * @param pending Map<String, String> the JSON of the pending users by ticket
+     */
+    void compact(Map<String, String> pending) throws IOException {
+        synchronized (syncLock) {
+            synchronized (writeLock) {
+                Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+                try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+                    for (Map.Entry<String, String> entry : pending.entrySet()) {
+                        write(out, line(ACCEPTED, entry.getKey(), entry.getValue()));
+                    }
+                    out.force(true);
+                }
+                channel.close();
+                Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                channel = open(file);
+                written = channel.size();
+                synced = written;
+            }
+        }
+    }
+
+    /**
+     * This method durably records an accepted registration: it returns once the line is on the disk
+     *
+     * @param ticket String
+     * @param json   String the user
+     */
+    void accepted(String ticket, String json) throws IOException {
+        sync(append(line(ACCEPTED, ticket, json)));
+    }
+
+    /**
+     * This method durably records the end of some registrations
+     *
+     * @param statuses Collection<String[]> pairs of ticket and status as JSON
+     */
+    void done(Collection<String[]> statuses) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (String[] status : statuses) {
+            lines.append(line(DONE, status[0], status[1]));
+        }
+        sync(append(lines.toString()));
+    }
+
+    /**
+     * This method empties the journal if no registration is pending. The condition is checked under the lock of the
+     * writes, so a registration marked as pending before being journaled cannot be lost.
+     *
+     * @param idle BooleanSupplier whether no registration is pending
+     */
+    void truncateIf(BooleanSupplier idle) throws IOException {
+        synchronized (syncLock) {
+            synchronized (writeLock) {
+                if (!idle.getAsBoolean()) {
+                    return;
+                }
+                channel.truncate(0);
+                channel.force(true);
+                written = 0;
+                synced = 0;
+            }
+        }
+    }
+
+    long size() {
+        synchronized (writeLock) {
+            return written;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            synchronized (writeLock) {
+                channel.close();
+            }
+        }
+    }
+
+    private long append(String lines) throws IOException {
+        synchronized (writeLock) {
+            written += write(channel, lines);
+            return written;
+        }
+    }
+
+    private void sync(long position) throws IOException {
+        if (synced >= position) {
+            return;
+        }
+        synchronized (syncLock) {
+            // the force made by the previous holder of the lock may have covered this position already
+            if (synced >= position) {
+                return;
+            }
+            long target;
+            synchronized (writeLock) {
+                target = written;
+            }
+            channel.force(false);
+            synced = target;
+        }
+    }
+
+    private static int write(FileChannel channel, String lines) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(lines.getBytes(StandardCharsets.UTF_8));
+        int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return length;
+    }
+
+    private static String line(String type, String ticket, String json) {
+        return type + '\t' + ticket + '\t' + json + '\n';
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+}
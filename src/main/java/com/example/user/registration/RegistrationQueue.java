@@ -0,0 +1,350 @@
+package com.example.user.registration;
+
+import com.example.user.domain.User;
+import com.example.user.dto.RegistrationStatus;
+import com.example.user.exception.RegistrationQueueFullException;
+import com.example.user.services.RegistrationOutcome;
+import com.example.user.services.UserService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The write-behind registration of the users, used by POST /user when user.registration.mode is "async".
+ * An accepted user is journaled, then put in a bounded queue that a single writer thread drains with batched inserts.
+ * The outcome of every registration is kept for a while by ticket. When a write fails, only the registrations
+ * without an outcome yet are written again: the users of the chunks already committed are not registered twice.
+ * <p>
+ * At startup, the registrations journaled but not done (e.g. because of a crash) are queued again. Such a
+ * registration may have been written just before the crash: it is then rejected as a duplicate username.
+ */
+@Slf4j
+@Service
+public class RegistrationQueue implements InitializingBean, DisposableBean, MeterBinder {
+    private final UserService userService;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int capacity;
+    private final int batchSize;
+    private final String journalFile;
+    private final long compactThreshold;
+
+    private final Semaphore permits;
+    private final BlockingQueue<Registration> queue;
+    private final Map<String, RegistrationStatus> pending = new ConcurrentHashMap<>();
+    private final Cache<String, RegistrationStatus> completed;
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private RegistrationJournal journal;
+    private Thread writer;
+    private volatile boolean running;
+
+    public RegistrationQueue(UserService userService, ObjectMapper objectMapper,
+                             @Value("${user.registration.mode:sync}") String mode,
+                             @Value("${user.registration.queue-capacity:10000}") int capacity,
+                             @Value("${user.registration.batch-size:500}") int batchSize,
+                             @Value("${user.registration.journal:registrations.journal}") String journalFile,
+                             @Value("${user.registration.journal-compact-bytes:67108864}") long compactThreshold,
+                             @Value("${user.registration.status-retention:1h}") Duration statusRetention,
+                             @Value("${user.registration.status-max-size:100000}") long statusMaxSize) {
+        this.userService = userService;
+        this.objectMapper = objectMapper;
+        this.enabled = "async".equalsIgnoreCase(mode);
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.journalFile = journalFile;
+        this.compactThreshold = compactThreshold;
+        this.permits = new Semaphore(capacity);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(statusMaxSize)
+                .expireAfterWrite(statusRetention)
+                .build();
+    }
+
+    /**
+     * This method tells whether POST /user registers the users asynchronously
+     *
+     * @return boolean
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * This method accepts a validated user for an asynchronous registration. It returns once the registration is
+     * journaled, so that it survives a crash.
+     *
+     * @param user User
+     * @return RegistrationStatus the pending status, with its ticket
+     * @throws RegistrationQueueFullException when the queue is full
+     */
+    public RegistrationStatus submit(User user) {
+        if (!running) {
+            throw new IllegalStateException("The asynchronous registration is not running");
+        }
+        if (!permits.tryAcquire()) {
+            throw new RegistrationQueueFullException(capacity);
+        }
+        String ticket = UUID.randomUUID().toString();
+        RegistrationStatus status = RegistrationStatus.pending(ticket);
+        // pending before journaled: the journal is never truncated while a registration is pending
+        pending.put(ticket, status);
+        try {
+            journal.accepted(ticket, objectMapper.writeValueAsString(user));
+        } catch (IOException e) {
+            pending.remove(ticket);
+            permits.release();
+            throw new UncheckedIOException("Couldn't journal the registration", e);
+        }
+        queue.add(new Registration(ticket, user));
+        return status;
+    }
+
+    /**
+     * This method gives the status of a registration, as long as it is retained
+     *
+     * @param ticket String
+     * @return Optional<RegistrationStatus>
+     */
+    public Optional<RegistrationStatus> getStatus(String ticket) {
+        RegistrationStatus status = pending.get(ticket);
+        return status != null ? Optional.of(status) : Optional.ofNullable(completed.getIfPresent(ticket));
+    }
+
+    /**
+     * The number of registrations accepted and not yet done
+     *
+     * @return int
+     */
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        journal = new RegistrationJournal(Paths.get(journalFile));
+        Map<String, String> replayed = journal.replay(this::restoreStatus);
+        journal.compact(replayed);
+        for (Map.Entry<String, String> entry : replayed.entrySet()) {
+            User user;
+            try {
+                user = objectMapper.readValue(entry.getValue(), User.class);
+            } catch (JsonProcessingException e) {
+                log.warn("Ignoring the torn registration {} of the journal", entry.getKey());
+                continue;
+            }
+            permits.acquireUninterruptibly();
+            pending.put(entry.getKey(), RegistrationStatus.pending(entry.getKey()));
+            queue.add(new Registration(entry.getKey(), user));
+        }
+        if (!replayed.isEmpty()) {
+            log.info("{} journaled registrations queued again", replayed.size());
+        }
+        running = true;
+        writer = new Thread(this::drain, "registration-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * This method stops accepting registrations and lets the writer flush the queue. What is left is replayed at the
+     * next start.
+     */
+    @Override
+    public void destroy() throws Exception {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+        journal.close();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("users.registration.queue.size", pending, Map::size)
+                .description("Registrations accepted and not yet written")
+                .register(registry);
+        FunctionCounter.builder("users.registration.completed", created, AtomicLong::get)
+                .tag("result", "created")
+                .register(registry);
+        FunctionCounter.builder("users.registration.completed", rejected, AtomicLong::get)
+                .tag("result", "rejected")
+                .register(registry);
+    }
+
+    private void drain() {
+        List<Registration> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Registration first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    compactIfIdle();
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+                permits.release(batch.size());
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void write(List<Registration> batch) throws InterruptedException {
+        while (true) {
+            try {
+                register(batch);
+                complete(batch);
+                return;
+            } catch (RuntimeException | IOException e) {
+                long unwritten = batch.stream().filter(registration -> registration.status == null).count();
+                if (!running) {
+                    log.error("Couldn't write {} registrations, they are left to the journal", unwritten, e);
+                    completeWritten(batch);
+                    return;
+                }
+                log.error("Couldn't write {} registrations, retrying", unwritten, e);
+                TimeUnit.SECONDS.sleep(1);
+            }
+        }
+    }
+
+    private void register(List<Registration> batch) {
+        // new users are inserted with JDBC batches, updates by id one by one; a registration gets its status as soon
+        // as it is committed, so that a retry skips it
+        List<Registration> inserts = new ArrayList<>(batch.size());
+        for (Registration registration : batch) {
+            if (registration.status != null) {
+                continue;
+            }
+            if (registration.user.getId() == null) {
+                inserts.add(registration);
+            } else {
+                registration.status = update(registration);
+            }
+        }
+        // one call per chunk committed by the service: the outcomes of a chunk are kept even if a later one fails
+        int chunkSize = Math.max(1, userService.getChunkSize());
+        for (int from = 0; from < inserts.size(); from += chunkSize) {
+            List<Registration> chunk = inserts.subList(from, Math.min(from + chunkSize, inserts.size()));
+            List<User> users = new ArrayList<>(chunk.size());
+            for (Registration registration : chunk) {
+                users.add(registration.user);
+            }
+            List<RegistrationOutcome> outcomes = userService.registerNewUsers(users);
+            for (int i = 0; i < outcomes.size(); i++) {
+                RegistrationOutcome outcome = outcomes.get(i);
+                Registration registration = chunk.get(i);
+                registration.status = outcome.isCreated()
+                        ? RegistrationStatus.created(registration.ticket, outcome.getUser().getId())
+                        : RegistrationStatus.rejected(registration.ticket, outcome.getError());
+            }
+        }
+    }
+
+    private RegistrationStatus update(Registration registration) {
+        try {
+            return RegistrationStatus.created(registration.ticket, userService.registerNewUser(registration.user).getId());
+        } catch (DataIntegrityViolationException e) {
+            return RegistrationStatus.rejected(registration.ticket, e.getMessage());
+        }
+    }
+
+    private void complete(List<Registration> batch) throws IOException {
+        List<String[]> lines = new ArrayList<>(batch.size());
+        for (Registration registration : batch) {
+            lines.add(new String[]{registration.ticket, objectMapper.writeValueAsString(registration.status)});
+        }
+        journal.done(lines);
+        for (Registration registration : batch) {
+            RegistrationStatus status = registration.status;
+            completed.put(status.getTicket(), status);
+            pending.remove(status.getTicket());
+            (status.getState() == RegistrationStatus.State.CREATED ? created : rejected).incrementAndGet();
+        }
+        log.debug("{} registrations written", batch.size());
+    }
+
+    private void completeWritten(List<Registration> batch) {
+        List<Registration> written = new ArrayList<>(batch.size());
+        for (Registration registration : batch) {
+            if (registration.status != null) {
+                written.add(registration);
+            }
+        }
+        try {
+            if (!written.isEmpty()) {
+                complete(written);
+            }
+        } catch (IOException e) {
+            log.error("Couldn't journal {} written registrations, they will be rejected as duplicates at the next start",
+                    written.size(), e);
+        }
+    }
+
+    private void compactIfIdle() {
+        if (pending.isEmpty() && journal.size() > compactThreshold) {
+            try {
+                journal.truncateIf(pending::isEmpty);
+            } catch (IOException e) {
+                log.warn("Couldn't truncate the registration journal", e);
+            }
+        }
+    }
+
+    private void restoreStatus(String ticket, String json) {
+        try {
+            completed.put(ticket, objectMapper.readValue(json, RegistrationStatus.class));
+        } catch (JsonProcessingException e) {
+            // a done line is written after the commit of the users: only its status is lost
+            log.warn("Ignoring the torn status of the registration {} of the journal", ticket);
+        }
+    }
+
+    private static final class Registration {
+        private final String ticket;
+        private final User user;
+        // set once the registration is committed, or rejected
+        private RegistrationStatus status;
+
+        private Registration(String ticket, User user) {
+            this.ticket = ticket;
+            this.user = user;
+        }
+    }
+}
@@ -1,13 +1,139 @@
 package com.example.user.repositories;
 
+import com.example.user.domain.Gender;
 import com.example.user.domain.User;
-import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 /**
  * Dealing with CRUD operations
- * Used for DAO implementation to handle database communication
+ * Used for DAO implementation to handle database communication.
+ * Only the operations used by the application are exposed, so that another storage backend can implement them
+ * (see MappedUserRepository).
  */
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends org.springframework.data.repository.Repository<User, Long>, UserSearchRepository {
+
+    /**
+     * Saves a user: inserts it with a generated id if it is new, updates it otherwise
+     *
+     * @param user User
+     * @return the saved user
+     */
+    <S extends User> S save(S user);
+
+    /**
+     * Saves users, all of them or none
+     *
+     * @param users Iterable<User>
+     * @return the saved users
+     */
+    <S extends User> List<S> saveAll(Iterable<S> users);
+
+    /**
+     * Returns the user with the given id
+     *
+     * @param id Long
+     * @return Optional<User>
+     */
+    Optional<User> findById(Long id);
+
+    /**
+     * Returns the users with the given ids, in no particular order, with a single query: the unknown ids are ignored
+     *
+     * @param ids Iterable<Long>
+     * @return List<User>
+     */
+    List<User> findAllById(Iterable<Long> ids);
+
+    /**
+     * Returns the number of users
+     *
+     * @return long
+     */
+    long count();
+
+    /**
+     * Returns, among the given usernames, the ones that are already registered
+     *
+     * @param usernames Collection<String>
+     * @return List<String>
+     */
+    @Query("select u.username from User u where u.username in :usernames")
+    List<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+
+    /**
+     * Returns the id of the user registered with the given username
+     *
+     * @param username String
+     * @return Optional<Long>
+     */
+    @Query("select u.id from User u where u.username = :username")
+    Optional<Long> findIdByUsername(@Param("username") String username);
+
+    /**
+     * Returns the version of the user with the given id, without loading the user
+     *
+     * @param id long
+     * @return Optional<Long>
+     */
+    @Query("select u.version from User u where u.id = :id")
+    Optional<Long> findVersionById(@Param("id") long id);
+
+    /**
+     * Streams the usernames of all the registered users, must be called in a transaction and closed
+     *
+     * @return Stream<String>
+     */
+    @Query("select u.username from User u")
+    Stream<String> streamAllUsernames();
+
+    /**
+     * Streams the ids of all the registered users, must be called in a transaction and closed
+     *
+     * @return Stream<Long>
+     */
+    @Query("select u.id from User u")
+    Stream<Long> streamAllIds();
+
+    /**
+     * Returns the users following the given id, in the order of the ids (keyset pagination: the page size is given by
+     * the pageable, which must not skip any row). The country is matched in its stored form, upper-cased.
+     *
+     * @param afterId  long the last id of the previous page
+     * @param country  String optional filter
+     * @param gender   Gender optional filter
+     * @param pageable Pageable
+     * @return List<User>
+     */
+    @Query("select u from User u where u.id > :afterId"
+            + " and (:country is null or u.country = upper(:country)) and (:gender is null or u.gender = :gender)"
+            + " order by u.id")
+    List<User> findPageAfter(@Param("afterId") long afterId, @Param("country") String country,
+                             @Param("gender") Gender gender, Pageable pageable);
+
+    /**
+     * Streams the users in the order of the ids through a database cursor, must be called in a transaction and closed.
+     * The country is matched in its stored form, upper-cased.
+     *
+     * @param country String optional filter
+     * @param gender  Gender optional filter
+     * @return Stream<User>
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select u from User u where (:country is null or u.country = upper(:country)) and (:gender is null or u.gender = :gender)"
+            + " order by u.id")
+    Stream<User> streamAll(@Param("country") String country, @Param("gender") Gender gender);
 }
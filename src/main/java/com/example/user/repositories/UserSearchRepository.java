@@ -0,0 +1,22 @@
+package com.example.user.repositories;
+
+import com.example.user.domain.User;
+import com.example.user.dto.UserSearchCriteria;
+
+import java.util.List;
+
+/**
+ * Searches of users by their attributes, implemented with a query built from the criteria that are given only
+ */
+public interface UserSearchRepository {
+
+    /**
+     * Returns the users matching all the given criteria and following the given id, in the order of the ids
+     *
+     * @param criteria UserSearchCriteria
+     * @param afterId  long the last id of the previous page
+     * @param limit    int the size of the page
+     * @return List<User>
+     */
+    List<User> search(UserSearchCriteria criteria, long afterId, int limit);
+}
@@ -0,0 +1,56 @@
+package com.example.user.repositories;
+
+import com.example.user.domain.Countries;
+import com.example.user.domain.PhoneNumbers;
+import com.example.user.domain.User;
+import com.example.user.dto.UserSearchCriteria;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the search query with a predicate per given criterion. Unlike "(:param is null or ...)" conditions, the
+ * query only contains sargable conditions, so the database can use the indexes declared on User:
+ * (country, birthdate) for a country and a birthdate range, birthdate for a range alone, normalized_phone for a phone.
+ * The country is searched in its stored form, upper-cased (see Countries).
+ */
+class UserSearchRepositoryImpl implements UserSearchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<User> search(UserSearchCriteria criteria, long afterId, int limit) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<User> query = builder.createQuery(User.class);
+        Root<User> user = query.from(User.class);
+        List<Predicate> predicates = new ArrayList<>();
+        if (afterId > 0) {
+            // not on the first page: a condition on the id makes the database prefer a scan of the primary key
+            predicates.add(builder.greaterThan(user.get("id"), afterId));
+        }
+        if (criteria.getPhone() != null) {
+            predicates.add(builder.equal(user.get("normalizedPhone"), PhoneNumbers.normalize(criteria.getPhone())));
+        }
+        if (criteria.getCountry() != null) {
+            predicates.add(builder.equal(user.get("country"), Countries.normalize(criteria.getCountry())));
+        }
+        if (criteria.getBornAfter() != null) {
+            predicates.add(builder.greaterThanOrEqualTo(user.get("birthdate"), criteria.getBornAfter()));
+        }
+        if (criteria.getBornBefore() != null) {
+            predicates.add(builder.lessThanOrEqualTo(user.get("birthdate"), criteria.getBornBefore()));
+        }
+        if (criteria.getGender() != null) {
+            predicates.add(builder.equal(user.get("gender"), criteria.getGender()));
+        }
+        query.select(user).where(predicates.toArray(new Predicate[0])).orderBy(builder.asc(user.get("id")));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+}
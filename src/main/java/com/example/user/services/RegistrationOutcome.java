@@ -0,0 +1,27 @@
+package com.example.user.services;
+
+import com.example.user.domain.User;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * The result of the registration of one user of a batch: either the saved user or the reason of the rejection
+ */
+@Data
+@AllArgsConstructor
+public class RegistrationOutcome {
+    private User user;
+    private String error;
+
+    public static RegistrationOutcome created(User user) {
+        return new RegistrationOutcome(user, null);
+    }
+
+    public static RegistrationOutcome rejected(User user, String error) {
+        return new RegistrationOutcome(user, error);
+    }
+
+    public boolean isCreated() {
+        return error == null;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.user.services;
+
+import com.example.user.domain.User;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+/**
+ * The caches of the application, configured by spring.cache.*. The "users" cache holds a copy of each user, and gives
+ * a copy of it on every hit: the cached users are entities that the callers may modify, and a caller must neither
+ * change the user seen by the others nor get a user changed by another one.
+ */
+@Configuration
+@EnableConfigurationProperties(CacheProperties.class)
+public class UserCacheConfiguration {
+
+    /**
+     * This method returns the Caffeine cache manager of the application, with the cache names and the specification
+     * of spring.cache.*
+     *
+     * @param cacheProperties CacheProperties
+     * @return CaffeineCacheManager
+     */
+    @Bean
+    public CaffeineCacheManager cacheManager(CacheProperties cacheProperties) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager() {
+            @Override
+            protected Cache adaptCaffeineCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> cache) {
+                return UserService.USERS_CACHE.equals(name)
+                        ? new UserSnapshotCache(name, cache, isAllowNullValues())
+                        : super.adaptCaffeineCache(name, cache);
+            }
+        };
+        String specification = cacheProperties.getCaffeine().getSpec();
+        if (StringUtils.hasText(specification)) {
+            cacheManager.setCacheSpecification(specification);
+        }
+        if (!cacheProperties.getCacheNames().isEmpty()) {
+            cacheManager.setCacheNames(cacheProperties.getCacheNames());
+        }
+        return cacheManager;
+    }
+
+    /**
+     * A Caffeine cache storing a snapshot of the users put in it and returning a copy of that snapshot. It remains a
+     * CaffeineCache, so that its statistics are still exposed by the actuator.
+     */
+    static class UserSnapshotCache extends CaffeineCache {
+
+        UserSnapshotCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> cache, boolean allowNullValues) {
+            super(name, cache, allowNullValues);
+        }
+
+        @Override
+        protected Object toStoreValue(Object userValue) {
+            return super.toStoreValue(copy(userValue));
+        }
+
+        @Override
+        protected Object fromStoreValue(Object storeValue) {
+            return copy(super.fromStoreValue(storeValue));
+        }
+
+        private static Object copy(Object value) {
+            return value instanceof User ? ((User) value).toBuilder().build() : value;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.user.services;
+
+import com.example.user.domain.User;
+import com.example.user.dto.UserChange;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Published by the UserService for the users it writes, in the transaction of the write
+ */
+@Data
+public class UserChangedEvent {
+    private final UserChange.Type type;
+    private final List<User> users;
+}
@@ -0,0 +1,148 @@
+package com.example.user.services;
+
+import com.example.user.repositories.UserRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Stream;
+
+/**
+ * An in-memory bitset of the ids of the registered users, so that an id known to be absent is answered without
+ * querying the database.
+ * The ids come from a sequence, so they are dense: the bitset is split in pages of 65536 ids, allocated on the first id
+ * they hold. Ids above max-id are not tracked and always looked up. The bitset is rebuilt from the database at startup
+ * and updated on every insert; bits are set lock-free.
+ * <p>
+ * Only the inserts made by this instance are seen: the filter must be disabled (user.id-filter.enabled=false) when
+ * other applications write in the same database.
+ */
+@Slf4j
+@Component
+public class UserIdFilter implements MeterBinder {
+    private static final int PAGE_SHIFT = 16;
+    private static final int PAGE_WORDS = (1 << PAGE_SHIFT) / 64;
+
+    private final UserRepository userRepository;
+    private final boolean enabled;
+    private final long maxId;
+    private final AtomicReferenceArray<AtomicLongArray> pages;
+    private volatile boolean ready;
+
+    private final AtomicLong allocatedPages = new AtomicLong();
+    private final AtomicLong insertions = new AtomicLong();
+    private final AtomicLong absent = new AtomicLong();
+    private final AtomicLong lookedUp = new AtomicLong();
+
+    public UserIdFilter(UserRepository userRepository,
+                        @Value("${user.id-filter.enabled:true}") boolean enabled,
+                        @Value("${user.id-filter.max-id:2147483647}") long maxId) {
+        this.userRepository = userRepository;
+        this.enabled = enabled;
+        this.maxId = maxId;
+        this.pages = new AtomicReferenceArray<>(enabled ? (int) (maxId >>> PAGE_SHIFT) + 1 : 0);
+    }
+
+    /**
+     * This method loads all the registered ids in the filter, once the application is started.
+     * Until it is done, every id is looked up.
+     */
+    @EventListener(ApplicationStartedEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        try (Stream<Long> ids = userRepository.streamAllIds()) {
+            ids.forEach(this::put);
+        }
+        ready = true;
+        log.info("User id filter loaded with {} ids ({} bytes)", insertions.get(), sizeInBytes());
+    }
+
+    /**
+     * This method adds the id of a registered user to the filter
+     *
+     * @param id Long
+     */
+    public void put(Long id) {
+        if (!enabled || id == null || id <= 0 || id > maxId) {
+            return;
+        }
+        AtomicLongArray page = pages.get((int) (id >>> PAGE_SHIFT));
+        if (page == null) {
+            AtomicLongArray newPage = new AtomicLongArray(PAGE_WORDS);
+            if (pages.compareAndSet((int) (id >>> PAGE_SHIFT), null, newPage)) {
+                allocatedPages.incrementAndGet();
+                page = newPage;
+            } else {
+                page = pages.get((int) (id >>> PAGE_SHIFT));
+            }
+        }
+        int word = (int) (id & ((1 << PAGE_SHIFT) - 1)) >>> 6;
+        long mask = 1L << id;
+        long current;
+        do {
+            current = page.get(word);
+            if ((current & mask) != 0) {
+                return;
+            }
+        } while (!page.compareAndSet(word, current, current | mask));
+        insertions.incrementAndGet();
+    }
+
+    /**
+     * This method tells whether a user may be registered with the given id. A false answer is always right.
+     *
+     * @param id long
+     * @return boolean
+     */
+    public boolean mightExist(long id) {
+        if (!ready || id > maxId) {
+            return true;
+        }
+        if (id > 0) {
+            AtomicLongArray page = pages.get((int) (id >>> PAGE_SHIFT));
+            if (page != null && (page.get((int) (id & ((1 << PAGE_SHIFT) - 1)) >>> 6) & (1L << id)) != 0) {
+                lookedUp.incrementAndGet();
+                return true;
+            }
+        }
+        absent.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * The memory used by the pages of the filter
+     *
+     * @return long
+     */
+    public long sizeInBytes() {
+        return allocatedPages.get() * PAGE_WORDS * 8;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("users.id.filter.size", this, UserIdFilter::sizeInBytes)
+                .baseUnit("bytes")
+                .description("Memory used by the user id filter")
+                .register(registry);
+        FunctionCounter.builder("users.id.filter.checks", absent, AtomicLong::get)
+                .tag("result", "absent")
+                .description("Lookups of a user by id answered without querying the database")
+                .register(registry);
+        FunctionCounter.builder("users.id.filter.checks", lookedUp, AtomicLong::get)
+                .tag("result", "present")
+                .register(registry);
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.user.services;
+
+import com.example.user.domain.User;
+import com.example.user.repositories.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Collapses the concurrent lookups of users by id into batches loaded with a single IN query
+ * (user.lookup.batching.enabled, disabled by default).
+ * The first lookup of a batch waits at most user.lookup.batching.window for others to join, then runs the query for
+ * all of them in its own thread; a lookup filling the batch (user.lookup.batching.max-size) runs it at once. The
+ * lookups of an id already in flight wait for its result instead of being queued again (single flight).
+ * The batch sizes, the time the lookups wait before their query starts and the deduplicated lookups are measured
+ * (users.lookup.batch.size, users.lookup.batch.wait, users.lookup.deduplicated) to tune the window.
+ */
+@Component
+public class UserLookupBatcher implements MeterBinder {
+    private final UserRepository userRepository;
+    private final boolean enabled;
+    private final long windowNanos;
+    private final int maxSize;
+    private final ConcurrentMap<Long, CompletableFuture<Optional<User>>> inFlight = new ConcurrentHashMap<>();
+    private Batch current;
+
+    // no-op meters until the registry binds the real ones
+    private volatile DistributionSummary batchSize;
+    private volatile Timer batchWait;
+    private volatile Counter deduplicated;
+
+    public UserLookupBatcher(UserRepository userRepository,
+                             @Value("${user.lookup.batching.enabled:false}") boolean enabled,
+                             @Value("${user.lookup.batching.window:2ms}") Duration window,
+                             @Value("${user.lookup.batching.max-size:100}") int maxSize) {
+        this.userRepository = userRepository;
+        this.enabled = enabled;
+        this.windowNanos = window.toNanos();
+        this.maxSize = Math.max(1, maxSize);
+        bindTo(new CompositeMeterRegistry());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        batchSize = DistributionSummary.builder("users.lookup.batch.size")
+                .description("Number of ids loaded by a batched lookup query")
+                .publishPercentiles(0.5, 0.99)
+                .register(registry);
+        batchWait = Timer.builder("users.lookup.batch.wait")
+                .description("Time a lookup waits for its batch to be queried")
+                .publishPercentiles(0.5, 0.99)
+                .register(registry);
+        deduplicated = Counter.builder("users.lookup.deduplicated")
+                .description("Lookups answered by the query of a lookup of the same id in flight")
+                .register(registry);
+    }
+
+    /**
+     * This method returns the user with the given id, loaded with the other lookups of the same window
+     *
+     * @param id long
+     * @return Optional<User>
+     */
+    public Optional<User> findById(long id) {
+        if (!enabled) {
+            return userRepository.findById(id);
+        }
+        CompletableFuture<Optional<User>> future = new CompletableFuture<>();
+        CompletableFuture<Optional<User>> existing = inFlight.putIfAbsent(id, future);
+        if (existing != null) {
+            deduplicated.increment();
+            return await(existing);
+        }
+        Batch batch;
+        boolean leader = false;
+        boolean full = false;
+        synchronized (this) {
+            if (current == null) {
+                current = new Batch();
+                leader = true;
+            }
+            batch = current;
+            batch.add(id, future);
+            if (batch.ids.size() >= maxSize) {
+                current = null;
+                full = true;
+            }
+        }
+        if (full) {
+            run(batch);
+        } else if (leader) {
+            awaitWindow(future);
+            if (close(batch)) {
+                run(batch);
+            }
+        }
+        return await(future);
+    }
+
+    private void awaitWindow(CompletableFuture<Optional<User>> future) {
+        try {
+            future.get(windowNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // the batch failed or is still open
+        }
+    }
+
+    private synchronized boolean close(Batch batch) {
+        if (current != batch) {
+            return false;
+        }
+        current = null;
+        return true;
+    }
+
+    private void run(Batch batch) {
+        long start = System.nanoTime();
+        for (int i = 0; i < batch.ids.size(); i++) {
+            batchWait.record(start - batch.arrivals.get(i), TimeUnit.NANOSECONDS);
+        }
+        batchSize.record(batch.ids.size());
+        Map<Long, User> users = new HashMap<>();
+        try {
+            if (batch.ids.size() == 1) {
+                userRepository.findById(batch.ids.get(0)).ifPresent(user -> users.put(user.getId(), user));
+            } else {
+                for (User user : userRepository.findAllById(batch.ids)) {
+                    users.put(user.getId(), user);
+                }
+            }
+        } catch (RuntimeException e) {
+            for (int i = 0; i < batch.ids.size(); i++) {
+                inFlight.remove(batch.ids.get(i), batch.futures.get(i));
+                batch.futures.get(i).completeExceptionally(e);
+            }
+            return;
+        }
+        for (int i = 0; i < batch.ids.size(); i++) {
+            inFlight.remove(batch.ids.get(i), batch.futures.get(i));
+            batch.futures.get(i).complete(Optional.ofNullable(users.get(batch.ids.get(i))));
+        }
+    }
+
+    private static Optional<User> await(CompletableFuture<Optional<User>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static final class Batch {
+        private final List<Long> ids = new ArrayList<>();
+        private final List<CompletableFuture<Optional<User>>> futures = new ArrayList<>();
+        private final List<Long> arrivals = new ArrayList<>();
+
+        private void add(long id, CompletableFuture<Optional<User>> future) {
+            ids.add(id);
+            futures.add(future);
+            arrivals.add(System.nanoTime());
+        }
+    }
+}
@@ -1,39 +1,303 @@
 package com.example.user.services;
 
+import com.example.user.domain.Gender;
 import com.example.user.domain.User;
+import com.example.user.dto.UserChange;
+import com.example.user.dto.UserSearchCriteria;
+import com.example.user.exception.UsernameAlreadyExistsException;
 import com.example.user.repositories.UserRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * This class provides some services. Its utility is to make business logic
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class UserService {
+    public static final String USERS_CACHE = "users";
+    public static final String VERSIONS_CACHE = "user-versions";
+
     private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final UsernameFilter usernameFilter;
+    private final UserIdFilter userIdFilter;
+    private final UserLookupBatcher userLookupBatcher;
+    private final EntityManager entityManager;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${user.batch.chunk-size:500}")
+    private int chunkSize = 500;
 
     /**
-     * This method displays the details of a registered user
+     * This method displays the details of a registered user.
+     * The users are read through the "users" cache, unknown ids are not cached.
+     * An id that the id filter knows to be absent is answered without querying the database, the others are loaded
+     * with the concurrent lookups (see UserLookupBatcher).
      *
      * @param id long
      * @return Optional<User>
      */
+    @Cacheable(cacheNames = USERS_CACHE, unless = "#result == null")
+    @Transactional(readOnly = true)
     public Optional<User> getUser(long id) {
-        return userRepository.findById(id);
+        if (!userIdFilter.mightExist(id)) {
+            return Optional.empty();
+        }
+        return userLookupBatcher.findById(id);
+    }
+
+    /**
+     * This method loads the registered users among the given ids with a single query. The ids that the id filter knows
+     * to be absent are not queried, and the users are not read through the "users" cache.
+     *
+     * @param ids Collection<Long>
+     * @return Map<Long, User> the found users by id
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, User> getUsers(Collection<Long> ids) {
+        Set<Long> candidates = new HashSet<>();
+        for (Long id : ids) {
+            if (userIdFilter.mightExist(id)) {
+                candidates.add(id);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Long, User> users = new HashMap<>();
+        for (User user : userRepository.findAllById(candidates)) {
+            users.put(user.getId(), user);
+        }
+        return users;
+    }
+
+    /**
+     * This method returns the version of a registered user, which changes on every update, without loading the user.
+     * The versions are read through the "user-versions" cache, unknown ids are not cached.
+     *
+     * @param id long
+     * @return Optional<Long>
+     */
+    @Cacheable(cacheNames = VERSIONS_CACHE, unless = "#result == null")
+    @Transactional(readOnly = true)
+    public Optional<Long> getUserVersion(long id) {
+        if (!userIdFilter.mightExist(id)) {
+            return Optional.empty();
+        }
+        return userRepository.findVersionById(id);
+    }
+
+    /**
+     * This method returns a page of users, in the order of the ids, starting after the given id (keyset pagination)
+     *
+     * @param afterId long the last id of the previous page, 0 for the first page
+     * @param limit   int the size of the page
+     * @param country String optional filter
+     * @param gender  Gender optional filter
+     * @return List<User>
+     */
+    @Transactional(readOnly = true)
+    public List<User> listUsers(long afterId, int limit, String country, Gender gender) {
+        return userRepository.findPageAfter(afterId, country, gender, PageRequest.of(0, limit));
+    }
+
+    /**
+     * This method returns a page of the users matching all the given criteria, in the order of the ids, starting
+     * after the given id (keyset pagination)
+     *
+     * @param criteria UserSearchCriteria
+     * @param afterId  long the last id of the previous page, 0 for the first page
+     * @param limit    int the size of the page
+     * @return List<User>
+     */
+    @Transactional(readOnly = true)
+    public List<User> searchUsers(UserSearchCriteria criteria, long afterId, int limit) {
+        return userRepository.search(criteria, afterId, limit);
+    }
+
+    /**
+     * This method passes all the users, in the order of the ids, to the given consumer. The users are read through a
+     * database cursor and detached once consumed, so that the memory used does not depend on the number of users.
+     *
+     * @param country  String optional filter
+     * @param gender   Gender optional filter
+     * @param consumer Consumer<User>
+     */
+    @Transactional(readOnly = true)
+    public void streamUsers(String country, Gender gender, Consumer<User> consumer) {
+        try (Stream<User> users = userRepository.streamAll(country, gender)) {
+            users.forEach(user -> {
+                consumer.accept(user);
+                entityManager.detach(user);
+            });
+        }
     }
 
     /**
-     * This method allows to register a user in database
+     * This method allows to register a user in database.
+     * The saved user replaces any cached version of it, so that an update by id is never hidden by the cache.
+     * A username that may already be registered is checked with an indexed lookup instead of failing the insert.
+     * An update by id overwrites the registered user whatever its version (the last write wins), and evicts its
+     * cached version.
+     * The checks run in the transaction of the write, so they read the primary when the reads go to the replicas.
+     * The change is published as a UserChangedEvent, for the change log.
      *
      * @param userData User
      * @return User
      */
+    @Caching(put = @CachePut(cacheNames = USERS_CACHE, key = "#result.id"),
+            evict = @CacheEvict(cacheNames = VERSIONS_CACHE, key = "#result.id"))
+    @Transactional
     public User registerNewUser(User userData) {
-        return Optional.ofNullable(userRepository.save(userData))
+        boolean update = false;
+        if (userData.getId() != null) {
+            Optional<Long> version = userRepository.findVersionById(userData.getId());
+            version.ifPresent(userData::setVersion);
+            update = version.isPresent();
+        }
+        if (usernameFilter.mightContain(userData.getUsername())) {
+            Optional<Long> existingId = userRepository.findIdByUsername(userData.getUsername());
+            if (existingId.isPresent() && !existingId.get().equals(userData.getId())) {
+                throw new UsernameAlreadyExistsException(userData.getUsername());
+            }
+            if (!existingId.isPresent()) {
+                usernameFilter.recordFalsePositive();
+            }
+        }
+        User user = Optional.ofNullable(userRepository.save(userData))
                 .orElseThrow(() -> new DataIntegrityViolationException("Couldn't create a new user"));
+        usernameFilter.put(user.getUsername());
+        userIdFilter.put(user.getId());
+        eventPublisher.publishEvent(new UserChangedEvent(update ? UserChange.Type.UPDATED : UserChange.Type.CREATED,
+                Collections.singletonList(user)));
+        return user;
+    }
+
+    /**
+     * This method gives the number of users committed together by registerNewUsers
+     *
+     * @return int
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * This method allows to register many new users at once. The users are committed in chunks, each chunk being
+     * inserted with JDBC batches. A duplicate username only rejects the concerned user, not its whole chunk.
+     * The users always get new ids, so there is no cached entry to invalidate.
+     * Each committed chunk is published as a UserChangedEvent.
+     *
+     * @param users List<User>
+     * @return List<RegistrationOutcome> one outcome per user, in the same order
+     */
+    public List<RegistrationOutcome> registerNewUsers(List<User> users) {
+        List<RegistrationOutcome> outcomes = new ArrayList<>(users.size());
+        Set<String> requestedUsernames = new HashSet<>();
+        for (int from = 0; from < users.size(); from += chunkSize) {
+            List<User> chunk = users.subList(from, Math.min(from + chunkSize, users.size()));
+            outcomes.addAll(registerChunk(chunk, requestedUsernames));
+        }
+        return outcomes;
+    }
+
+    private List<RegistrationOutcome> registerChunk(List<User> chunk, Set<String> requestedUsernames) {
+        RegistrationOutcome[] outcomes = new RegistrationOutcome[chunk.size()];
+        // only the usernames that the filter may have seen are looked up in the database
+        List<String> candidateUsernames = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            User user = chunk.get(i);
+            // a batch only creates new users: ids are always generated
+            user.setId(null);
+            if (!requestedUsernames.add(user.getUsername())) {
+                outcomes[i] = RegistrationOutcome.rejected(user, "Username '" + user.getUsername() + "' is duplicated in the request");
+            } else if (usernameFilter.mightContain(user.getUsername())) {
+                candidateUsernames.add(user.getUsername());
+            }
+        }
+
+        Set<String> existingUsernames = candidateUsernames.isEmpty()
+                ? Collections.emptySet()
+                : new HashSet<>(userRepository.findExistingUsernames(candidateUsernames));
+        List<Integer> toSave = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            if (outcomes[i] != null) {
+                continue;
+            }
+            User user = chunk.get(i);
+            if (existingUsernames.contains(user.getUsername())) {
+                outcomes[i] = RegistrationOutcome.rejected(user, "Username '" + user.getUsername() + "' already exists");
+            } else {
+                toSave.add(i);
+            }
+        }
+
+        List<User> users = new ArrayList<>(toSave.size());
+        for (int i : toSave) {
+            users.add(chunk.get(i));
+        }
+        try {
+            List<User> saved = transactionTemplate.execute(status -> {
+                List<User> inserted = userRepository.saveAll(users);
+                eventPublisher.publishEvent(new UserChangedEvent(UserChange.Type.CREATED, inserted));
+                return inserted;
+            });
+            for (int i = 0; i < toSave.size(); i++) {
+                usernameFilter.put(saved.get(i).getUsername());
+                userIdFilter.put(saved.get(i).getId());
+                outcomes[toSave.get(i)] = RegistrationOutcome.created(saved.get(i));
+            }
+        } catch (DataIntegrityViolationException e) {
+            // a concurrent registration took one of the usernames: isolate the failing users one by one
+            log.warn("Batch insert of {} users failed, retrying them one by one", users.size());
+            for (int i : toSave) {
+                User user = chunk.get(i);
+                user.setId(null);
+                outcomes[i] = registerOne(user);
+            }
+        }
+        return Arrays.asList(outcomes);
+    }
+
+    private RegistrationOutcome registerOne(User user) {
+        try {
+            User saved = transactionTemplate.execute(status -> {
+                User inserted = userRepository.save(user);
+                eventPublisher.publishEvent(new UserChangedEvent(UserChange.Type.CREATED, Collections.singletonList(inserted)));
+                return inserted;
+            });
+            usernameFilter.put(saved.getUsername());
+            userIdFilter.put(saved.getId());
+            return RegistrationOutcome.created(saved);
+        } catch (DataIntegrityViolationException e) {
+            return RegistrationOutcome.rejected(user, "Username '" + user.getUsername() + "' already exists");
+        }
     }
 }
@@ -0,0 +1,188 @@
+package com.example.user.services;
+
+import com.example.user.repositories.UserRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/**
+ * An in-memory Bloom filter of the registered usernames.
+ * A username that the filter has never seen is certainly not registered, so its registration does not need a duplicate check.
+ * The filter is rebuilt from the database at startup and updated on every insert; bits are set lock-free.
+ */
+@Slf4j
+@Component
+public class UsernameFilter implements MeterBinder {
+    private final UserRepository userRepository;
+    private final AtomicLongArray bits;
+    private final long bitSize;
+    private final int hashFunctions;
+    private volatile boolean ready;
+
+    private final AtomicLong insertions = new AtomicLong();
+    private final AtomicLong definitelyNew = new AtomicLong();
+    private final AtomicLong probableDuplicates = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+
+    public UsernameFilter(UserRepository userRepository,
+                          @Value("${user.username-filter.expected-insertions:1000000}") long expectedInsertions,
+                          @Value("${user.username-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.userRepository = userRepository;
+        long size = (long) (-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bits = new AtomicLongArray((int) Math.max(1, (size + 63) / 64));
+        this.bitSize = bits.length() * 64L;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * This method loads all the registered usernames in the filter, once the application is started (before the
+     * application runners, so that an import run from the command line benefits from it).
+     * Until it is done, every username is considered as a probable duplicate.
+     */
+    @EventListener(ApplicationStartedEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        try (Stream<String> usernames = userRepository.streamAllUsernames()) {
+            usernames.forEach(this::put);
+        }
+        ready = true;
+        log.info("Username filter loaded with {} usernames ({} bytes, {} hash functions)", insertions.get(), bitSize / 8, hashFunctions);
+    }
+
+    /**
+     * This method adds a registered username to the filter
+     *
+     * @param username String
+     */
+    public void put(String username) {
+        if (username == null) {
+            return;
+        }
+        long hash = hash(username);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            setBit(index(hash1 + i * hash2));
+        }
+        insertions.incrementAndGet();
+    }
+
+    /**
+     * This method tells whether a username may be registered. A false answer is always right.
+     *
+     * @param username String
+     * @return boolean
+     */
+    public boolean mightContain(String username) {
+        if (!ready || username == null) {
+            return true;
+        }
+        long hash = hash(username);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            long index = index(hash1 + i * hash2);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                definitelyNew.incrementAndGet();
+                return false;
+            }
+        }
+        probableDuplicates.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * This method records that a username reported by the filter was not registered after all
+     */
+    public void recordFalsePositive() {
+        if (ready) {
+            falsePositives.incrementAndGet();
+        }
+    }
+
+    /**
+     * The false-positive rate expected from the current fill ratio of the filter
+     *
+     * @return double
+     */
+    public double expectedFalsePositiveRate() {
+        long bitCount = 0;
+        for (int i = 0; i < bits.length(); i++) {
+            bitCount += Long.bitCount(bits.get(i));
+        }
+        return Math.pow((double) bitCount / bitSize, hashFunctions);
+    }
+
+    /**
+     * The memory used by the bits of the filter
+     *
+     * @return long
+     */
+    public long sizeInBytes() {
+        return bitSize / 8;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("users.username.filter.expected.fpp", this, UsernameFilter::expectedFalsePositiveRate)
+                .description("False-positive rate expected from the fill ratio of the username filter")
+                .register(registry);
+        Gauge.builder("users.username.filter.size", this, UsernameFilter::sizeInBytes)
+                .baseUnit("bytes")
+                .description("Memory used by the username filter")
+                .register(registry);
+        FunctionCounter.builder("users.username.filter.insertions", insertions, AtomicLong::get)
+                .register(registry);
+        FunctionCounter.builder("users.username.filter.checks", definitelyNew, AtomicLong::get)
+                .tag("result", "new")
+                .register(registry);
+        FunctionCounter.builder("users.username.filter.checks", probableDuplicates, AtomicLong::get)
+                .tag("result", "probable-duplicate")
+                .register(registry);
+        FunctionCounter.builder("users.username.filter.false.positives", falsePositives, AtomicLong::get)
+                .description("Probable duplicates that were not registered")
+                .register(registry);
+    }
+
+    private void setBit(long index) {
+        int word = (int) (index >>> 6);
+        long mask = 1L << index;
+        long current;
+        do {
+            current = bits.get(word);
+            if ((current & mask) != 0) {
+                return;
+            }
+        } while (!bits.compareAndSet(word, current, current | mask));
+    }
+
+    private long index(int combinedHash) {
+        return (combinedHash & Integer.MAX_VALUE) % bitSize;
+    }
+
+    private static long hash(String username) {
+        // FNV-1a followed by the murmur3 finalizer to spread the bits over the two halves
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < username.length(); i++) {
+            hash ^= username.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb93fe53ec5b2L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.user.store;
+
+/**
+ * A map of long keys to int values stored in two primitive arrays (open addressing, linear probing), so that
+ * neither the keys nor the values are boxed. The key 0 is reserved for the empty buckets. Not thread-safe.
+ */
+final class LongIntHashMap {
+    private static final int MISSING = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Returns the value of the key, -1 when the key is missing
+     *
+     * @param key long
+     * @return int
+     */
+    int get(long key) {
+        for (int i = bucket(key); ; i = (i + 1) & mask) {
+            long current = keys[i];
+            if (current == 0) {
+                return MISSING;
+            }
+            if (current == key) {
+                return values[i];
+            }
+        }
+    }
+
+    void put(long key, int value) {
+        if (key == 0) {
+            throw new IllegalArgumentException("The key 0 is reserved");
+        }
+        if ((size + 1) * 2 > keys.length) {
+            resize();
+        }
+        for (int i = bucket(key); ; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            if (keys[i] == 0) {
+                keys[i] = key;
+                values[i] = value;
+                size++;
+                return;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        mask = keys.length - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private int bucket(long key) {
+        // murmur3 finalizer: consecutive ids spread over the whole table
+        long hash = key;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return (int) hash & mask;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.user.store;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Replaces the database behind UserRepository by a memory-mapped file when user.store.backend=mapped.
+ * The JPA repository still exists but is no longer injected: the services use the primary UserRepository.
+ */
+@Configuration
+@ConditionalOnProperty(name = "user.store.backend", havingValue = "mapped")
+public class MappedStoreConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public MappedUserStore mappedUserStore(@Value("${user.store.mapped.file:users.store}") String file,
+                                           @Value("${user.store.mapped.capacity:1000000}") int capacity,
+                                           @Value("${user.store.mapped.sync-writes:false}") boolean syncWrites) throws IOException {
+        return new MappedUserStore(Paths.get(file), capacity, syncWrites);
+    }
+
+    @Bean
+    @Primary
+    public MappedUserRepository mappedUserRepository(MappedUserStore mappedUserStore) {
+        return new MappedUserRepository(mappedUserStore);
+    }
+}
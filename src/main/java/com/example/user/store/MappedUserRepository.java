@@ -0,0 +1,129 @@
+package com.example.user.store;
+
+import com.example.user.domain.Gender;
+import com.example.user.domain.Countries;
+import com.example.user.domain.PhoneNumbers;
+import com.example.user.domain.User;
+import com.example.user.dto.UserSearchCriteria;
+import com.example.user.repositories.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The UserRepository backed by a MappedUserStore instead of the database, selected by user.store.backend=mapped.
+ * The lookups by id and username use the indexes of the store; the filtered listings and the searches scan the
+ * records in the order of the ids.
+ */
+@RequiredArgsConstructor
+public class MappedUserRepository implements UserRepository {
+    private final MappedUserStore store;
+
+    @Override
+    public <S extends User> S save(S user) {
+        store.save(user);
+        return user;
+    }
+
+    @Override
+    public <S extends User> List<S> saveAll(Iterable<S> users) {
+        List<User> list = new ArrayList<>();
+        users.forEach(list::add);
+        store.saveAll(list);
+        List<S> saved = new ArrayList<>(list.size());
+        users.forEach(saved::add);
+        return saved;
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        return store.findById(id);
+    }
+
+    @Override
+    public List<User> findAllById(Iterable<Long> ids) {
+        List<User> users = new ArrayList<>();
+        for (Long id : ids) {
+            store.findById(id).ifPresent(users::add);
+        }
+        return users;
+    }
+
+    @Override
+    public long count() {
+        return store.count();
+    }
+
+    @Override
+    public List<String> findExistingUsernames(Collection<String> usernames) {
+        List<String> existing = new ArrayList<>();
+        for (String username : usernames) {
+            if (store.findIdByUsername(username).isPresent()) {
+                existing.add(username);
+            }
+        }
+        return existing;
+    }
+
+    @Override
+    public Optional<Long> findIdByUsername(String username) {
+        return store.findIdByUsername(username);
+    }
+
+    @Override
+    public Optional<Long> findVersionById(long id) {
+        return store.findVersionById(id);
+    }
+
+    @Override
+    public Stream<String> streamAllUsernames() {
+        return store.usernames();
+    }
+
+    @Override
+    public Stream<Long> streamAllIds() {
+        return store.ids().boxed();
+    }
+
+    @Override
+    public List<User> findPageAfter(long afterId, String country, Gender gender, Pageable pageable) {
+        return store.stream(afterId)
+                .filter(matches(country, gender))
+                .limit(pageable.getPageSize())
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Stream<User> streamAll(String country, Gender gender) {
+        return store.stream(0).filter(matches(country, gender));
+    }
+
+    @Override
+    public List<User> search(UserSearchCriteria criteria, long afterId, int limit) {
+        String phone = PhoneNumbers.normalize(criteria.getPhone());
+        Predicate<User> predicate = matches(criteria.getCountry(), criteria.getGender());
+        if (criteria.getPhone() != null) {
+            predicate = predicate.and(user -> Objects.equals(user.getNormalizedPhone(), phone));
+        }
+        if (criteria.getBornAfter() != null) {
+            predicate = predicate.and(user -> !user.getBirthdate().isBefore(criteria.getBornAfter()));
+        }
+        if (criteria.getBornBefore() != null) {
+            predicate = predicate.and(user -> !user.getBirthdate().isAfter(criteria.getBornBefore()));
+        }
+        return store.stream(afterId).filter(predicate).limit(limit).collect(Collectors.toList());
+    }
+
+    private static Predicate<User> matches(String country, Gender gender) {
+        String normalizedCountry = Countries.normalize(country);
+        return user -> (country == null || normalizedCountry.equals(user.getCountry())) && (gender == null || gender == user.getGender());
+    }
+}
@@ -0,0 +1,618 @@
+package com.example.user.store;
+
+import com.example.user.domain.Gender;
+import com.example.user.domain.Countries;
+import com.example.user.domain.PhoneNumbers;
+import com.example.user.domain.User;
+import com.example.user.exception.UsernameAlreadyExistsException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * A store of users kept in a memory-mapped file of fixed-size records, for the read-mostly deployments that do not
+ * need a database. The records are appended in the order of their ids, which are generated by the store.
+ * Two indexes are rebuilt from the file at start-up: the ids in a primitive long-to-slot map, and the usernames in
+ * an off-heap hash table of slots (the usernames themselves are compared in the mapped records).
+ * <p>
+ * Layout: a header of {@value #HEADER_SIZE} bytes then records of {@value #RECORD_SIZE} bytes. Strings are stored as
+ * a length byte (255 for null) followed by their UTF-8 bytes, up to 64 bytes for the username, 48 for the country
+ * and 32 for the phones. The whole file is mapped at once, hence at most about 8 million records.
+ * <p>
+ * Reads share a read lock, writes are serialized.
+ */
+@Slf4j
+public class MappedUserStore implements Closeable {
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 256;
+
+    private static final int MAGIC = 0x55535231;
+    private static final int LAYOUT_VERSION = 1;
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_LAYOUT = 4;
+    private static final int HEADER_RECORD_SIZE = 8;
+    private static final int HEADER_CAPACITY = 12;
+    private static final int HEADER_COUNT = 16;
+    private static final int HEADER_NEXT_ID = 24;
+
+    private static final int ID = 0;
+    private static final int VERSION = 8;
+    private static final int BIRTHDATE = 16;
+    private static final int GENDER = 20;
+    private static final int USERNAME = 24;
+    private static final int USERNAME_SIZE = 64;
+    private static final int COUNTRY = USERNAME + 1 + USERNAME_SIZE;
+    private static final int COUNTRY_SIZE = 48;
+    private static final int PHONE = COUNTRY + 1 + COUNTRY_SIZE;
+    private static final int PHONE_SIZE = 32;
+    private static final int NORMALIZED_PHONE = PHONE + 1 + PHONE_SIZE;
+
+    private static final int NULL_LENGTH = 0xFF;
+    private static final int NULL_DATE = Integer.MIN_VALUE;
+    private static final int EMPTY_BUCKET = 0;
+    private static final int REMOVED_BUCKET = -1;
+    private static final Gender[] GENDERS = Gender.values();
+
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[RECORD_SIZE]);
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer records;
+    private final int capacity;
+    private final boolean syncWrites;
+    private final LongIntHashMap slotsById;
+    private final ByteBuffer usernameTable;
+    private final int usernameMask;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private int count;
+    private long nextId;
+
+    /**
+     * Opens the store file, or creates it with the given capacity
+     *
+     * @param file       Path
+     * @param capacity   int the maximum number of users of a new store
+     * @param syncWrites boolean whether every write is forced to the disk before returning
+     * @throws IOException if the file cannot be opened or is not a user store
+     */
+    public MappedUserStore(Path file, int capacity, boolean syncWrites) throws IOException {
+        this.file = file;
+        this.syncWrites = syncWrites;
+        boolean created = !Files.exists(file) || Files.size(file) == 0;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (!created) {
+                capacity = readCapacity(file);
+            }
+            if (capacity <= 0 || capacity > (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE) {
+                throw new IllegalArgumentException("The capacity of a user store must be between 1 and "
+                        + (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE + ": " + capacity);
+            }
+            this.capacity = capacity;
+            records = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+            if (created) {
+                records.putInt(HEADER_MAGIC, MAGIC);
+                records.putInt(HEADER_LAYOUT, LAYOUT_VERSION);
+                records.putInt(HEADER_RECORD_SIZE, RECORD_SIZE);
+                records.putInt(HEADER_CAPACITY, capacity);
+                records.putLong(HEADER_COUNT, 0);
+                records.putLong(HEADER_NEXT_ID, 1);
+            }
+            count = (int) records.getLong(HEADER_COUNT);
+            nextId = records.getLong(HEADER_NEXT_ID);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+
+        int buckets = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        usernameTable = ByteBuffer.allocateDirect(buckets * 4);
+        usernameMask = buckets - 1;
+        slotsById = new LongIntHashMap(Math.max(count, 1024));
+        for (int slot = 0; slot < count; slot++) {
+            slotsById.put(records.getLong(offset(slot) + ID), slot);
+            indexUsername(slot);
+        }
+        log.info("User store {} opened with {} users out of {}", file, count, capacity);
+    }
+
+    private int readCapacity(Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        if (header.getInt(HEADER_MAGIC) != MAGIC || header.getInt(HEADER_LAYOUT) != LAYOUT_VERSION
+                || header.getInt(HEADER_RECORD_SIZE) != RECORD_SIZE) {
+            throw new IOException(file + " is not a user store of layout version " + LAYOUT_VERSION);
+        }
+        return header.getInt(HEADER_CAPACITY);
+    }
+
+    /**
+     * The number of users of the store
+     *
+     * @return long
+     */
+    public long count() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the user with the given id
+     *
+     * @param id long
+     * @return Optional<User>
+     */
+    public Optional<User> findById(long id) {
+        lock.readLock().lock();
+        try {
+            int slot = slotOf(id);
+            return slot < 0 ? Optional.empty() : Optional.of(read(slot));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the id of the user registered with the given username
+     *
+     * @param username String
+     * @return Optional<Long>
+     */
+    public Optional<Long> findIdByUsername(String username) {
+        lock.readLock().lock();
+        try {
+            int slot = findUsernameSlot(username);
+            return slot < 0 ? Optional.empty() : Optional.of(records.getLong(offset(slot) + ID));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the version of the user with the given id
+     *
+     * @param id long
+     * @return Optional<Long>
+     */
+    public Optional<Long> findVersionById(long id) {
+        lock.readLock().lock();
+        try {
+            int slot = slotOf(id);
+            return slot < 0 ? Optional.empty() : Optional.of(records.getLong(offset(slot) + VERSION));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Saves a user like a JPA merge: a user whose id is unknown is appended with a generated id, the user with a known
+     * id is replaced (its version must be the stored one, and is incremented if the user changed).
+     * The given user gets its id, version, upper-cased country and normalized phone.
+     *
+     * @param user User
+     * @return User the given user
+     * @throws DataIntegrityViolationException if the username is taken or a value is too long
+     */
+    public User save(User user) {
+        lock.writeLock().lock();
+        try {
+            int slot = slotOf(user);
+            checkInsertable(user, slot, 1);
+            write(user, slot);
+            sync();
+            return user;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Saves users like {@link #save(User)}, all or none: nothing is written if one of them cannot be saved
+     *
+     * @param users List<User>
+     * @return List<User> the given users
+     * @throws DataIntegrityViolationException if a username is taken (or given twice) or a value is too long
+     */
+    public List<User> saveAll(List<User> users) {
+        lock.writeLock().lock();
+        try {
+            int[] slots = new int[users.size()];
+            int inserts = 0;
+            Set<String> usernames = new HashSet<>();
+            for (int i = 0; i < users.size(); i++) {
+                User user = users.get(i);
+                slots[i] = slotOf(user);
+                if (slots[i] < 0) {
+                    inserts++;
+                }
+                if (!usernames.add(user.getUsername())) {
+                    throw new UsernameAlreadyExistsException(user.getUsername());
+                }
+                checkInsertable(user, slots[i], inserts);
+            }
+            for (int i = 0; i < users.size(); i++) {
+                write(users.get(i), slots[i]);
+            }
+            sync();
+            return users;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Streams the users following the given id, in the order of the ids. The users added during the stream are not
+     * included.
+     *
+     * @param afterId long
+     * @return Stream<User>
+     */
+    public Stream<User> stream(long afterId) {
+        int from;
+        int to;
+        lock.readLock().lock();
+        try {
+            from = firstSlotAfter(afterId);
+            to = count;
+        } finally {
+            lock.readLock().unlock();
+        }
+        return IntStream.range(from, to).mapToObj(slot -> {
+            lock.readLock().lock();
+            try {
+                return read(slot);
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Streams the ids of all the users
+     *
+     * @return LongStream
+     */
+    public LongStream ids() {
+        return IntStream.range(0, (int) count()).mapToLong(slot -> {
+            lock.readLock().lock();
+            try {
+                return records.getLong(offset(slot) + ID);
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Streams the usernames of all the users
+     *
+     * @return Stream<String>
+     */
+    public Stream<String> usernames() {
+        return IntStream.range(0, (int) count()).mapToObj(slot -> {
+            lock.readLock().lock();
+            try {
+                return readString(offset(slot) + USERNAME);
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Forces the writes to the disk
+     */
+    public void force() {
+        lock.writeLock().lock();
+        try {
+            records.force();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+        log.info("User store {} closed with {} users", file, count);
+    }
+
+    private int slotOf(User user) {
+        return user.getId() == null ? -1 : slotOf(user.getId());
+    }
+
+    private int slotOf(long id) {
+        // the ids are generated from 1, and 0 is the empty key of slotsById
+        return id <= 0 ? -1 : slotsById.get(id);
+    }
+
+    private void checkInsertable(User user, int slot, int inserts) {
+        int owner = findUsernameSlot(user.getUsername());
+        if (owner >= 0 && owner != slot) {
+            throw new UsernameAlreadyExistsException(user.getUsername());
+        }
+        checkLength("username", user.getUsername(), USERNAME_SIZE);
+        checkLength("country", user.getCountry(), COUNTRY_SIZE);
+        checkLength("phone", user.getPhone(), PHONE_SIZE);
+        if (slot >= 0 && user.getVersion() != records.getLong(offset(slot) + VERSION)) {
+            throw new ObjectOptimisticLockingFailureException(User.class, user.getId());
+        }
+        if (count + inserts > capacity) {
+            throw new DataAccessResourceFailureException("The user store " + file + " is full (" + capacity + " users)");
+        }
+    }
+
+    private static void checkLength(String field, String value, int size) {
+        if (value != null && encode(value, SCRATCH.get(), size) < 0) {
+            throw new DataIntegrityViolationException("The " + field + " is longer than " + size + " bytes");
+        }
+    }
+
+    private void write(User user, int slot) {
+        user.setCountry(Countries.normalize(user.getCountry()));
+        user.setNormalizedPhone(PhoneNumbers.normalize(user.getPhone()));
+        if (slot < 0) {
+            slot = count;
+            user.setId(nextId++);
+            user.setVersion(0);
+            writeRecord(slot, user);
+            records.putLong(HEADER_NEXT_ID, nextId);
+            // the record is complete before it is counted
+            records.putLong(HEADER_COUNT, ++count);
+            slotsById.put(user.getId(), slot);
+            indexUsername(slot);
+            return;
+        }
+        User stored = read(slot);
+        if (Objects.equals(stored.getUsername(), user.getUsername()) && Objects.equals(stored.getBirthdate(), user.getBirthdate())
+                && Objects.equals(stored.getCountry(), user.getCountry()) && Objects.equals(stored.getPhone(), user.getPhone())
+                && stored.getGender() == user.getGender()) {
+            return;
+        }
+        unindexUsername(slot);
+        user.setVersion(stored.getVersion() + 1);
+        writeRecord(slot, user);
+        indexUsername(slot);
+    }
+
+    private void writeRecord(int slot, User user) {
+        int base = offset(slot);
+        records.putLong(base + ID, user.getId());
+        records.putLong(base + VERSION, user.getVersion());
+        records.putInt(base + BIRTHDATE, user.getBirthdate() == null ? NULL_DATE : (int) user.getBirthdate().toEpochDay());
+        records.put(base + GENDER, user.getGender() == null ? -1 : (byte) user.getGender().ordinal());
+        writeString(base + USERNAME, USERNAME_SIZE, user.getUsername());
+        writeString(base + COUNTRY, COUNTRY_SIZE, user.getCountry());
+        writeString(base + PHONE, PHONE_SIZE, user.getPhone());
+        writeString(base + NORMALIZED_PHONE, PHONE_SIZE, user.getNormalizedPhone());
+    }
+
+    private void sync() {
+        if (syncWrites) {
+            records.force();
+        }
+    }
+
+    private User read(int slot) {
+        int base = offset(slot);
+        return new User(records.getLong(base + ID), readString(base + USERNAME), readDate(base), readString(base + COUNTRY),
+                readString(base + PHONE), readString(base + NORMALIZED_PHONE), readGender(base), records.getLong(base + VERSION));
+    }
+
+    private LocalDate readDate(int base) {
+        int epochDay = records.getInt(base + BIRTHDATE);
+        return epochDay == NULL_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    private Gender readGender(int base) {
+        byte gender = records.get(base + GENDER);
+        return gender < 0 ? null : GENDERS[gender];
+    }
+
+    private String readString(int position) {
+        int length = records.get(position) & 0xFF;
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] scratch = SCRATCH.get();
+        for (int i = 0; i < length; i++) {
+            scratch[i] = records.get(position + 1 + i);
+        }
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private void writeString(int position, int size, String value) {
+        if (value == null) {
+            records.put(position, (byte) NULL_LENGTH);
+            return;
+        }
+        byte[] scratch = SCRATCH.get();
+        int length = encode(value, scratch, size);
+        records.put(position, (byte) length);
+        for (int i = 0; i < length; i++) {
+            records.put(position + 1 + i, scratch[i]);
+        }
+    }
+
+    private int firstSlotAfter(long afterId) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (records.getLong(offset(middle) + ID) <= afterId) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int findUsernameSlot(String username) {
+        if (username == null) {
+            return -1;
+        }
+        byte[] scratch = SCRATCH.get();
+        int length = encode(username, scratch, USERNAME_SIZE);
+        if (length < 0) {
+            return -1;
+        }
+        int hash = 0x811c9dc5;
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ (scratch[i] & 0xFF)) * 0x01000193;
+        }
+        int bucket = mix(hash) & usernameMask;
+        for (int probes = 0; probes <= usernameMask; probes++, bucket = (bucket + 1) & usernameMask) {
+            int value = usernameTable.getInt(bucket * 4);
+            if (value == EMPTY_BUCKET) {
+                return -1;
+            }
+            if (value != REMOVED_BUCKET && usernameEquals(value - 1, scratch, length)) {
+                return value - 1;
+            }
+        }
+        return -1;
+    }
+
+    private boolean usernameEquals(int slot, byte[] username, int length) {
+        int position = offset(slot) + USERNAME;
+        if ((records.get(position) & 0xFF) != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (records.get(position + 1 + i) != username[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void indexUsername(int slot) {
+        int bucket = usernameBucket(slot);
+        if (bucket < 0) {
+            return;
+        }
+        while (true) {
+            int value = usernameTable.getInt(bucket * 4);
+            if (value == EMPTY_BUCKET || value == REMOVED_BUCKET) {
+                usernameTable.putInt(bucket * 4, slot + 1);
+                return;
+            }
+            bucket = (bucket + 1) & usernameMask;
+        }
+    }
+
+    private void unindexUsername(int slot) {
+        int bucket = usernameBucket(slot);
+        if (bucket < 0) {
+            return;
+        }
+        for (int probes = 0; probes <= usernameMask; probes++, bucket = (bucket + 1) & usernameMask) {
+            int value = usernameTable.getInt(bucket * 4);
+            if (value == EMPTY_BUCKET) {
+                return;
+            }
+            if (value == slot + 1) {
+                usernameTable.putInt(bucket * 4, REMOVED_BUCKET);
+                return;
+            }
+        }
+    }
+
+    /**
+     * The first bucket of the username of a record, -1 for a null username
+     */
+    private int usernameBucket(int slot) {
+        int position = offset(slot) + USERNAME;
+        int length = records.get(position) & 0xFF;
+        if (length == NULL_LENGTH) {
+            return -1;
+        }
+        int hash = 0x811c9dc5;
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ (records.get(position + 1 + i) & 0xFF)) * 0x01000193;
+        }
+        return mix(hash) & usernameMask;
+    }
+
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    /**
+     * Encodes a string in UTF-8 into the given array
+     *
+     * @return int the number of bytes, -1 if they are more than the limit
+     */
+    private static int encode(String value, byte[] target, int limit) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            int c = value.charAt(i);
+            if (Character.isHighSurrogate((char) c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                c = Character.toCodePoint((char) c, value.charAt(++i));
+            } else if (Character.isSurrogate((char) c)) {
+                // like String.getBytes: an unpaired surrogate is replaced
+                c = '?';
+            }
+            int bytes = c < 0x80 ? 1 : c < 0x800 ? 2 : c < 0x10000 ? 3 : 4;
+            if (length + bytes > limit) {
+                return -1;
+            }
+            switch (bytes) {
+                case 1:
+                    target[length++] = (byte) c;
+                    break;
+                case 2:
+                    target[length++] = (byte) (0xC0 | c >> 6);
+                    target[length++] = (byte) (0x80 | c & 0x3F);
+                    break;
+                case 3:
+                    target[length++] = (byte) (0xE0 | c >> 12);
+                    target[length++] = (byte) (0x80 | c >> 6 & 0x3F);
+                    target[length++] = (byte) (0x80 | c & 0x3F);
+                    break;
+                default:
+                    target[length++] = (byte) (0xF0 | c >> 18);
+                    target[length++] = (byte) (0x80 | c >> 12 & 0x3F);
+                    target[length++] = (byte) (0x80 | c >> 6 & 0x3F);
+                    target[length++] = (byte) (0x80 | c & 0x3F);
+                    break;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.user.store;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the database behind UserRepository by several ones when user.store.backend=sharded: the users are spread
+ * across the databases of user.store.sharded.urls, each with its own pool of connections.
+ * The JPA repository still exists but is no longer injected: the services use the primary UserRepository.
+ */
+@Configuration
+@ConditionalOnProperty(name = "user.store.backend", havingValue = "sharded")
+public class ShardedStoreConfiguration {
+
+    @Bean(destroyMethod = "close")
+    @Primary
+    public ShardedUserRepository shardedUserRepository(@Value("${user.store.sharded.urls}") List<String> urls,
+                                                       @Value("${user.store.sharded.username:sa}") String username,
+                                                       @Value("${user.store.sharded.password:}") String password,
+                                                       @Value("${user.store.sharded.pool-size:10}") int poolSize) {
+        List<DataSource> dataSources = new ArrayList<>();
+        try {
+            for (String url : urls) {
+                HikariDataSource dataSource = new HikariDataSource();
+                dataSource.setPoolName("users-shard-" + dataSources.size());
+                dataSource.setJdbcUrl(url.trim());
+                dataSource.setUsername(username);
+                dataSource.setPassword(password);
+                dataSource.setMaximumPoolSize(poolSize);
+                dataSources.add(dataSource);
+            }
+            return new ShardedUserRepository(dataSources);
+        } catch (RuntimeException e) {
+            dataSources.forEach(dataSource -> ((HikariDataSource) dataSource).close());
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,536 @@
+package com.example.user.store;
+
+import com.example.user.domain.Gender;
+import com.example.user.domain.Countries;
+import com.example.user.domain.PhoneNumbers;
+import com.example.user.domain.User;
+import com.example.user.dto.UserSearchCriteria;
+import com.example.user.exception.UsernameAlreadyExistsException;
+import com.example.user.repositories.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The UserRepository spreading the users across several databases (shards), selected by user.store.backend=sharded.
+ * <p>
+ * A new user is stored in the shard given by the hash of its username, and its id encodes that shard: id = local id
+ * (from a sequence of the shard) * {@value #MAX_SHARDS} + shard, so the lookups by id go straight to one shard.
+ * The usernames are unique across the shards through a directory partitioned the same way: each shard holds the
+ * usernames hashed to it with the id of their user. A registration is hence a single local transaction; a rename
+ * moving a username to another partition writes in the shards involved, in transactions committed together at the
+ * end (a failure of one commit after another cannot be undone and is logged).
+ * <p>
+ * The listings, searches and streams of all the users query every shard in parallel and merge the results in the
+ * order of the ids. The number of shards cannot change once users are stored, as it places the usernames.
+ */
+@Slf4j
+public class ShardedUserRepository implements UserRepository, Closeable {
+    public static final int MAX_SHARDS = 16;
+
+    private static final TransactionDefinition WRITE = new DefaultTransactionDefinition();
+
+    private final List<UserShard> shards = new ArrayList<>();
+    private final ExecutorService executor;
+
+    public ShardedUserRepository(List<DataSource> dataSources) {
+        if (dataSources.isEmpty() || dataSources.size() > MAX_SHARDS) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_SHARDS + " shards are supported, not " + dataSources.size());
+        }
+        for (int i = 0; i < dataSources.size(); i++) {
+            shards.add(new UserShard(i, dataSources.get(i)));
+        }
+        AtomicInteger threads = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(dataSources.size(), runnable -> {
+            Thread thread = new Thread(runnable, "user-shard-query-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * This method returns the shard holding the user of the given id
+     *
+     * @param id long
+     * @return int
+     */
+    public static int shardOf(long id) {
+        return (int) Math.floorMod(id, (long) MAX_SHARDS);
+    }
+
+    /**
+     * This method returns the shard of the given username: the one storing its new user and its directory entry
+     *
+     * @param username String
+     * @return int
+     */
+    public int partitionOf(String username) {
+        int hash = username.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shards.size());
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    private Optional<UserShard> shardOfId(long id) {
+        if (id <= 0) {
+            // never generated: such a user is unknown, and is inserted with a new id
+            return Optional.empty();
+        }
+        int shard = shardOf(id);
+        return shard < shards.size() ? Optional.of(shards.get(shard)) : Optional.empty();
+    }
+
+    @Override
+    public <S extends User> S save(S user) {
+        write(Collections.singletonList(user));
+        return user;
+    }
+
+    @Override
+    public <S extends User> List<S> saveAll(Iterable<S> users) {
+        List<S> list = new ArrayList<>();
+        users.forEach(list::add);
+        write(list);
+        return list;
+    }
+
+    /**
+     * This method saves users like the mapped store: the new ones (no id, or an unknown one) are inserted with a
+     * generated id, the others are updated if their version is still the stored one and they changed. All or none.
+     *
+     * @param users List<User>
+     */
+    private void write(List<? extends User> users) {
+        Set<String> usernames = new HashSet<>();
+        Map<Integer, ShardWrites> writes = new TreeMap<>();
+        for (User user : users) {
+            if (!usernames.add(user.getUsername())) {
+                throw new UsernameAlreadyExistsException(user.getUsername());
+            }
+            User row = new User(user.getId(), user.getUsername(), user.getBirthdate(), Countries.normalize(user.getCountry()),
+                    user.getPhone(), PhoneNumbers.normalize(user.getPhone()), user.getGender(), user.getVersion());
+            User stored = user.getId() == null ? null : shardOfId(user.getId()).flatMap(shard -> shard.findById(user.getId())).orElse(null);
+            if (stored == null) {
+                writes.computeIfAbsent(partitionOf(row.getUsername()), ShardWrites::new).insert(user, row);
+                continue;
+            }
+            if (stored.getVersion() != user.getVersion()) {
+                throw new ObjectOptimisticLockingFailureException(User.class, user.getId());
+            }
+            if (sameValues(stored, row)) {
+                continue;
+            }
+            row.setVersion(stored.getVersion() + 1);
+            writes.computeIfAbsent(shardOf(row.getId()), ShardWrites::new).update(user, row, stored.getVersion());
+            if (!stored.getUsername().equals(row.getUsername())) {
+                writes.computeIfAbsent(partitionOf(stored.getUsername()), ShardWrites::new).release(stored.getUsername(), row.getId());
+                writes.computeIfAbsent(partitionOf(row.getUsername()), ShardWrites::new).reserve(row.getUsername(), row.getId());
+            }
+        }
+        if (writes.isEmpty()) {
+            return;
+        }
+        List<ShardWrites> opened = new ArrayList<>();
+        try {
+            for (ShardWrites shardWrites : writes.values()) {
+                shardWrites.status = shardWrites.shard().getTransactionManager().getTransaction(WRITE);
+                opened.add(shardWrites);
+            }
+            // the released usernames first, so that users can swap their usernames
+            for (ShardWrites shardWrites : opened) {
+                shardWrites.shard().releaseUsernames(shardWrites.releasedUsernames, shardWrites.releasedIds);
+            }
+            for (ShardWrites shardWrites : opened) {
+                shardWrites.writeDirectory();
+            }
+            for (ShardWrites shardWrites : opened) {
+                shardWrites.writeUsers();
+            }
+        } catch (RuntimeException e) {
+            rollback(opened);
+            throw e;
+        }
+        commit(opened);
+        for (ShardWrites shardWrites : opened) {
+            shardWrites.apply();
+        }
+    }
+
+    private static boolean sameValues(User stored, User user) {
+        return Objects.equals(stored.getUsername(), user.getUsername()) && Objects.equals(stored.getBirthdate(), user.getBirthdate())
+                && Objects.equals(stored.getCountry(), user.getCountry()) && Objects.equals(stored.getPhone(), user.getPhone())
+                && stored.getGender() == user.getGender();
+    }
+
+    // in the reverse order of their opening, so that the first transaction, which may own the synchronizations of the
+    // thread, completes last
+    private void commit(List<ShardWrites> opened) {
+        for (int i = opened.size() - 1; i >= 0; i--) {
+            ShardWrites shardWrites = opened.get(i);
+            try {
+                shardWrites.shard().getTransactionManager().commit(shardWrites.status);
+            } catch (RuntimeException e) {
+                if (i < opened.size() - 1) {
+                    log.error("The writes of shard {} failed after the ones of the shards {} were committed",
+                            shardWrites.index, opened.subList(i + 1, opened.size()).stream().map(w -> w.index).collect(Collectors.toList()));
+                }
+                rollback(opened.subList(0, i));
+                throw e;
+            }
+        }
+    }
+
+    private static void rollback(List<ShardWrites> opened) {
+        for (int i = opened.size() - 1; i >= 0; i--) {
+            ShardWrites shardWrites = opened.get(i);
+            try {
+                shardWrites.shard().getTransactionManager().rollback(shardWrites.status);
+            } catch (RuntimeException e) {
+                log.warn("Rollback of the writes of shard {} failed", shardWrites.index, e);
+            }
+        }
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        return shardOfId(id).flatMap(shard -> shard.findById(id));
+    }
+
+    @Override
+    public List<User> findAllById(Iterable<Long> ids) {
+        Map<UserShard, List<Long>> idsByShard = new LinkedHashMap<>();
+        for (Long id : ids) {
+            shardOfId(id).ifPresent(shard -> idsByShard.computeIfAbsent(shard, s -> new ArrayList<>()).add(id));
+        }
+        return scatter(idsByShard.keySet(), shard -> shard.findAllById(idsByShard.get(shard))).stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public long count() {
+        return scatter(shards, UserShard::count).stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Override
+    public List<String> findExistingUsernames(Collection<String> usernames) {
+        Map<UserShard, List<String>> usernamesByShard = new LinkedHashMap<>();
+        for (String username : usernames) {
+            usernamesByShard.computeIfAbsent(shards.get(partitionOf(username)), s -> new ArrayList<>()).add(username);
+        }
+        return scatter(usernamesByShard.keySet(), shard -> shard.findExistingUsernames(usernamesByShard.get(shard))).stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Optional<Long> findIdByUsername(String username) {
+        return shards.get(partitionOf(username)).findIdByUsername(username);
+    }
+
+    @Override
+    public Optional<Long> findVersionById(long id) {
+        return shardOfId(id).flatMap(shard -> shard.findVersionById(id));
+    }
+
+    @Override
+    public Stream<String> streamAllUsernames() {
+        return concat(UserShard::streamUsernames);
+    }
+
+    @Override
+    public Stream<Long> streamAllIds() {
+        return concat(UserShard::streamIds);
+    }
+
+    @Override
+    public List<User> findPageAfter(long afterId, String country, Gender gender, Pageable pageable) {
+        Where where = new Where();
+        where.add("id > ?", afterId);
+        where.add("country = ?", Countries.normalize(country));
+        where.add("gender = ?", gender == null ? null : gender.ordinal());
+        return gather(where, pageable.getPageSize());
+    }
+
+    @Override
+    public Stream<User> streamAll(String country, Gender gender) {
+        Where where = new Where();
+        where.add("country = ?", Countries.normalize(country));
+        where.add("gender = ?", gender == null ? null : gender.ordinal());
+        List<Stream<User>> streams = new ArrayList<>();
+        try {
+            for (UserShard shard : shards) {
+                streams.add(shard.stream(where.toString(), where.args));
+            }
+        } catch (RuntimeException e) {
+            streams.forEach(Stream::close);
+            throw e;
+        }
+        return mergeById(streams);
+    }
+
+    @Override
+    public List<User> search(UserSearchCriteria criteria, long afterId, int limit) {
+        Where where = new Where();
+        if (afterId > 0) {
+            where.add("id > ?", afterId);
+        }
+        where.add("normalized_phone = ?", criteria.getPhone() == null ? null : PhoneNumbers.normalize(criteria.getPhone()));
+        where.add("country = ?", Countries.normalize(criteria.getCountry()));
+        where.add("birthdate >= ?", criteria.getBornAfter());
+        where.add("birthdate <= ?", criteria.getBornBefore());
+        where.add("gender = ?", criteria.getGender() == null ? null : criteria.getGender().ordinal());
+        return gather(where, limit);
+    }
+
+    /**
+     * This method queries the page of every shard and keeps the first users of their union in the order of the ids
+     *
+     * @param where Where
+     * @param limit int
+     * @return List<User>
+     */
+    private List<User> gather(Where where, int limit) {
+        return scatter(shards, shard -> shard.query(where.toString(), where.args, limit)).stream()
+                .flatMap(List::stream)
+                .sorted(Comparator.comparing(User::getId))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    private <T> List<T> scatter(Collection<UserShard> targets, Function<UserShard, T> query) {
+        if (targets.size() == 1) {
+            return Collections.singletonList(query.apply(targets.iterator().next()));
+        }
+        List<CompletableFuture<T>> futures = targets.stream()
+                .map(shard -> CompletableFuture.supplyAsync(() -> query.apply(shard), executor))
+                .collect(Collectors.toList());
+        List<T> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<T> future : futures) {
+            try {
+                results.add(future.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+        return results;
+    }
+
+    // each stream of a shard is opened when the previous one is consumed, and closed after it
+    private <T> Stream<T> concat(Function<UserShard, Stream<T>> stream) {
+        return shards.stream().flatMap(stream);
+    }
+
+    /**
+     * This method merges streams ordered by id into one, which closes them when closed
+     *
+     * @param streams List<Stream<User>>
+     * @return Stream<User>
+     */
+    private static Stream<User> mergeById(List<Stream<User>> streams) {
+        PriorityQueue<Head> heads = new PriorityQueue<>(Comparator.comparing((Head head) -> head.user.getId()));
+        Iterator<User> merged = new Iterator<User>() {
+            private boolean started;
+
+            @Override
+            public boolean hasNext() {
+                if (!started) {
+                    started = true;
+                    for (Stream<User> stream : streams) {
+                        Iterator<User> iterator = stream.iterator();
+                        if (iterator.hasNext()) {
+                            heads.add(new Head(iterator.next(), iterator));
+                        }
+                    }
+                }
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public User next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Head head = heads.poll();
+                User user = head.user;
+                if (head.rest.hasNext()) {
+                    heads.add(new Head(head.rest.next(), head.rest));
+                }
+                return user;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> streams.forEach(Stream::close));
+    }
+
+    /**
+     * This method stops the query threads and closes the data sources of the shards that can be closed
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        for (UserShard shard : shards) {
+            if (shard.getDataSource() instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) shard.getDataSource()).close();
+                } catch (Exception e) {
+                    log.warn("Closing the data source of shard {} failed", shard.getIndex(), e);
+                }
+            }
+        }
+    }
+
+    private static final class Head {
+        private final User user;
+        private final Iterator<User> rest;
+
+        private Head(User user, Iterator<User> rest) {
+            this.user = user;
+            this.rest = rest;
+        }
+    }
+
+    /**
+     * The conditions of a query on the users, only the ones of the given values (sargable, as in UserSearchRepositoryImpl)
+     */
+    private static final class Where {
+        private final List<String> conditions = new ArrayList<>();
+        private final List<Object> args = new ArrayList<>();
+
+        private void add(String condition, Object arg) {
+            if (arg != null) {
+                conditions.add(condition);
+                args.add(arg);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return conditions.isEmpty() ? "" : " where " + String.join(" and ", conditions);
+        }
+    }
+
+    /**
+     * The writes of a save in one shard: the users inserted there, with their directory entries, the users updated
+     * there and the directory entries of the renamed users that move in or out of its partition
+     */
+    private final class ShardWrites {
+        private final int index;
+        private final List<User> insertedUsers = new ArrayList<>();
+        private final List<User> insertedRows = new ArrayList<>();
+        private final List<User> updatedUsers = new ArrayList<>();
+        private final List<User> updatedRows = new ArrayList<>();
+        private final List<Long> updatedVersions = new ArrayList<>();
+        private final List<String> reservedUsernames = new ArrayList<>();
+        private final List<Long> reservedIds = new ArrayList<>();
+        private final List<String> releasedUsernames = new ArrayList<>();
+        private final List<Long> releasedIds = new ArrayList<>();
+        private TransactionStatus status;
+
+        private ShardWrites(int index) {
+            this.index = index;
+        }
+
+        private UserShard shard() {
+            return shards.get(index);
+        }
+
+        private void insert(User user, User row) {
+            row.setVersion(0);
+            insertedUsers.add(user);
+            insertedRows.add(row);
+        }
+
+        private void update(User user, User row, long version) {
+            updatedUsers.add(user);
+            updatedRows.add(row);
+            updatedVersions.add(version);
+        }
+
+        private void reserve(String username, long id) {
+            reservedUsernames.add(username);
+            reservedIds.add(id);
+        }
+
+        private void release(String username, long id) {
+            releasedUsernames.add(username);
+            releasedIds.add(id);
+        }
+
+        private void writeDirectory() {
+            if (!insertedRows.isEmpty()) {
+                List<Long> localIds = shard().nextLocalIds(insertedRows.size());
+                for (int i = 0; i < insertedRows.size(); i++) {
+                    User row = insertedRows.get(i);
+                    row.setId(localIds.get(i) * MAX_SHARDS + index);
+                    reserve(row.getUsername(), row.getId());
+                }
+            }
+            shard().reserveUsernames(reservedUsernames, reservedIds);
+        }
+
+        private void writeUsers() {
+            if (!insertedRows.isEmpty()) {
+                shard().insert(insertedRows);
+            }
+            for (int i = 0; i < updatedRows.size(); i++) {
+                if (!shard().update(updatedRows.get(i), updatedVersions.get(i))) {
+                    throw new ObjectOptimisticLockingFailureException(User.class, updatedRows.get(i).getId());
+                }
+            }
+        }
+
+        private void apply() {
+            for (int i = 0; i < insertedUsers.size(); i++) {
+                copy(insertedRows.get(i), insertedUsers.get(i));
+            }
+            for (int i = 0; i < updatedUsers.size(); i++) {
+                copy(updatedRows.get(i), updatedUsers.get(i));
+            }
+        }
+
+        private void copy(User row, User user) {
+            user.setId(row.getId());
+            user.setVersion(row.getVersion());
+            user.setCountry(row.getCountry());
+            user.setNormalizedPhone(row.getNormalizedPhone());
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.user.store;
+
+import com.example.user.domain.Gender;
+import com.example.user.domain.User;
+import com.example.user.exception.UsernameAlreadyExistsException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * One database of the sharded store: the users whose id encodes its index, and the partition of the username
+ * directory of the usernames hashed to it (username to id, the unique key of the usernames across the shards).
+ * The tables and the sequence of the local ids are created if they do not exist.
+ * The writes join the transaction of the shard opened by the caller through {@link #getTransactionManager()}.
+ */
+final class UserShard {
+    private static final String COLUMNS = "id, username, birthdate, country, phone, normalized_phone, gender, version";
+    private static final Gender[] GENDERS = Gender.values();
+    private static final RowMapper<User> USER_MAPPER = (rs, rowNum) -> {
+        int ordinal = rs.getInt("gender");
+        Gender gender = rs.wasNull() ? null : GENDERS[ordinal];
+        return new User(rs.getLong("id"), rs.getString("username"), rs.getDate("birthdate").toLocalDate(),
+                rs.getString("country"), rs.getString("phone"), rs.getString("normalized_phone"), gender, rs.getLong("version"));
+    };
+
+    private final int index;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final DataSourceTransactionManager transactionManager;
+
+    UserShard(int index, DataSource dataSource) {
+        this.index = index;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(500);
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionManager = new DataSourceTransactionManager(dataSource);
+        createSchema();
+    }
+
+    private void createSchema() {
+        jdbcTemplate.execute("create table if not exists users (id bigint primary key, username varchar(255) not null,"
+                + " birthdate date not null, country varchar(255) not null, phone varchar(255), normalized_phone varchar(255),"
+                + " gender integer, version bigint not null)");
+        jdbcTemplate.execute("create index if not exists idx_users_country_birthdate on users (country, birthdate)");
+        jdbcTemplate.execute("create index if not exists idx_users_birthdate on users (birthdate)");
+        jdbcTemplate.execute("create index if not exists idx_users_normalized_phone on users (normalized_phone)");
+        jdbcTemplate.execute("create table if not exists username_directory (username varchar(255) primary key, user_id bigint not null)");
+        jdbcTemplate.execute("create sequence if not exists users_seq");
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    DataSourceTransactionManager getTransactionManager() {
+        return transactionManager;
+    }
+
+    DataSource getDataSource() {
+        return jdbcTemplate.getDataSource();
+    }
+
+    /**
+     * This method takes the next values of the sequence of the shard, to be encoded with its index into ids
+     *
+     * @param count int
+     * @return List<Long> the local ids
+     */
+    List<Long> nextLocalIds(int count) {
+        return jdbcTemplate.queryForList("select next value for users_seq from system_range(1, ?)", Long.class, count);
+    }
+
+    /**
+     * This method reserves usernames in the directory partition of the shard, within the transaction of the caller
+     *
+     * @param usernames List<String>
+     * @param ids       List<Long> the ids of the users
+     * @throws UsernameAlreadyExistsException if one of the usernames is already reserved
+     */
+    void reserveUsernames(List<String> usernames, List<Long> ids) {
+        for (int i = 0; i < usernames.size(); i++) {
+            try {
+                jdbcTemplate.update("insert into username_directory (username, user_id) values (?, ?)", usernames.get(i), ids.get(i));
+            } catch (DuplicateKeyException e) {
+                throw new UsernameAlreadyExistsException(usernames.get(i));
+            }
+        }
+    }
+
+    /**
+     * This method releases usernames in the directory partition of the shard, within the transaction of the caller
+     *
+     * @param usernames List<String>
+     * @param ids       List<Long> the ids of the users holding them
+     */
+    void releaseUsernames(List<String> usernames, List<Long> ids) {
+        for (int i = 0; i < usernames.size(); i++) {
+            jdbcTemplate.update("delete from username_directory where username = ? and user_id = ?", usernames.get(i), ids.get(i));
+        }
+    }
+
+    void insert(List<User> users) {
+        jdbcTemplate.batchUpdate("insert into users (" + COLUMNS + ") values (?, ?, ?, ?, ?, ?, ?, ?)", users, users.size(),
+                (ps, user) -> {
+                    ps.setLong(1, user.getId());
+                    ps.setString(2, user.getUsername());
+                    ps.setDate(3, user.getBirthdate() == null ? null : Date.valueOf(user.getBirthdate()));
+                    ps.setString(4, user.getCountry());
+                    ps.setString(5, user.getPhone());
+                    ps.setString(6, user.getNormalizedPhone());
+                    ps.setObject(7, user.getGender() == null ? null : user.getGender().ordinal());
+                    ps.setLong(8, user.getVersion());
+                });
+    }
+
+    /**
+     * This method updates a user whose version is still the given one
+     *
+     * @param user    User with its new version
+     * @param version long the version read
+     * @return boolean false if the user has been changed (or removed) since
+     */
+    boolean update(User user, long version) {
+        return jdbcTemplate.update("update users set username = ?, birthdate = ?, country = ?, phone = ?, normalized_phone = ?,"
+                        + " gender = ?, version = ? where id = ? and version = ?",
+                user.getUsername(), user.getBirthdate() == null ? null : Date.valueOf(user.getBirthdate()), user.getCountry(),
+                user.getPhone(), user.getNormalizedPhone(), user.getGender() == null ? null : user.getGender().ordinal(),
+                user.getVersion(), user.getId(), version) == 1;
+    }
+
+    Optional<User> findById(long id) {
+        return jdbcTemplate.query("select " + COLUMNS + " from users where id = ?", USER_MAPPER, id).stream().findFirst();
+    }
+
+    List<User> findAllById(Collection<Long> ids) {
+        return namedJdbcTemplate.query("select " + COLUMNS + " from users where id in (:ids)",
+                new MapSqlParameterSource("ids", ids), USER_MAPPER);
+    }
+
+    Optional<Long> findVersionById(long id) {
+        return jdbcTemplate.queryForList("select version from users where id = ?", Long.class, id).stream().findFirst();
+    }
+
+    Optional<Long> findIdByUsername(String username) {
+        return jdbcTemplate.queryForList("select user_id from username_directory where username = ?", Long.class, username)
+                .stream().findFirst();
+    }
+
+    List<String> findExistingUsernames(Collection<String> usernames) {
+        return namedJdbcTemplate.queryForList("select username from username_directory where username in (:usernames)",
+                new MapSqlParameterSource("usernames", usernames), String.class);
+    }
+
+    long count() {
+        return jdbcTemplate.queryForObject("select count(*) from users", Long.class);
+    }
+
+    /**
+     * This method returns the users matching the given conditions, in the order of the ids
+     *
+     * @param where String conditions joined by "and", empty for all the users
+     * @param args  List<Object> the arguments of the conditions
+     * @param limit int
+     * @return List<User>
+     */
+    List<User> query(String where, List<Object> args, int limit) {
+        Object[] params = args.toArray(new Object[args.size() + 1]);
+        params[args.size()] = limit;
+        return jdbcTemplate.query("select " + COLUMNS + " from users" + where + " order by id limit ?", USER_MAPPER, params);
+    }
+
+    /**
+     * This method streams the users matching the given conditions in the order of the ids, through a cursor that is
+     * released when the stream is closed
+     *
+     * @param where String conditions joined by "and", empty for all the users
+     * @param args  List<Object> the arguments of the conditions
+     * @return Stream<User>
+     */
+    Stream<User> stream(String where, List<Object> args) {
+        return jdbcTemplate.queryForStream("select " + COLUMNS + " from users" + where + " order by id", USER_MAPPER, args.toArray());
+    }
+
+    Stream<Long> streamIds() {
+        return jdbcTemplate.queryForStream("select id from users", (rs, rowNum) -> rs.getLong(1));
+    }
+
+    Stream<String> streamUsernames() {
+        return jdbcTemplate.queryForStream("select username from username_directory", (rs, rowNum) -> rs.getString(1));
+    }
+}
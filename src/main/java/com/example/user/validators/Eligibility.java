@@ -0,0 +1,10 @@
+package com.example.user.validators;
+
+/**
+ * The verdict of an eligibility policy on a registrant
+ */
+public enum Eligibility {
+    ELIGIBLE,
+    COUNTRY_NOT_ALLOWED,
+    UNDERAGE
+}
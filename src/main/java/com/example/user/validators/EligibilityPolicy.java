@@ -0,0 +1,91 @@
+package com.example.user.validators;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * A compiled eligibility policy: the allowed countries and, for each of them, the latest birthdate of an eligible registrant.
+ * These cutoff dates only depend on the current day, so they are computed once per day and checking a registrant does not allocate.
+ */
+public class EligibilityPolicy {
+    private final String name;
+    private final String[] countries;
+    private final int[] minimumAges;
+    private final Clock clock;
+    private volatile Cutoffs cutoffs;
+
+    public EligibilityPolicy(String name, Map<String, Integer> minimumAgeByCountry, Clock clock) {
+        this.name = name;
+        this.countries = new String[minimumAgeByCountry.size()];
+        this.minimumAges = new int[minimumAgeByCountry.size()];
+        this.clock = clock;
+        int i = 0;
+        for (Map.Entry<String, Integer> rule : minimumAgeByCountry.entrySet()) {
+            countries[i] = rule.getKey();
+            minimumAges[i] = rule.getValue();
+            i++;
+        }
+        this.cutoffs = computeCutoffs();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * This method checks if a registrant lives in an allowed country and has reached the minimum age of this country
+     *
+     * @param country   String
+     * @param birthdate LocalDate
+     * @return boolean
+     */
+    public boolean isEligible(String country, LocalDate birthdate) {
+        return check(country, birthdate) == Eligibility.ELIGIBLE;
+    }
+
+    /**
+     * This method tells whether a registrant is eligible and, if not, why
+     *
+     * @param country   String
+     * @param birthdate LocalDate
+     * @return Eligibility
+     */
+    public Eligibility check(String country, LocalDate birthdate) {
+        for (int i = 0; i < countries.length; i++) {
+            if (countries[i].equalsIgnoreCase(country)) {
+                return birthdate.toEpochDay() <= currentCutoffs().latestBirthdates[i] ? Eligibility.ELIGIBLE : Eligibility.UNDERAGE;
+            }
+        }
+        return Eligibility.COUNTRY_NOT_ALLOWED;
+    }
+
+    private Cutoffs currentCutoffs() {
+        Cutoffs current = cutoffs;
+        if (clock.millis() >= current.expiresAt) {
+            current = computeCutoffs();
+            cutoffs = current;
+        }
+        return current;
+    }
+
+    private Cutoffs computeCutoffs() {
+        LocalDate today = LocalDate.now(clock);
+        long[] latestBirthdates = new long[minimumAges.length];
+        for (int i = 0; i < minimumAges.length; i++) {
+            latestBirthdates[i] = today.minusYears(minimumAges[i]).toEpochDay();
+        }
+        long expiresAt = today.plusDays(1).atStartOfDay(clock.getZone()).toInstant().toEpochMilli();
+        return new Cutoffs(latestBirthdates, expiresAt);
+    }
+
+    private static final class Cutoffs {
+        private final long[] latestBirthdates;
+        private final long expiresAt;
+
+        private Cutoffs(long[] latestBirthdates, long expiresAt) {
+            this.latestBirthdates = latestBirthdates;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.user.validators;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The eligibility policies, by name: each one gives the minimum age required in every allowed country.
+ * i.e: user.eligibility.policies.french-adult.FRANCE=18
+ */
+@Data
+@ConfigurationProperties(prefix = "user.eligibility")
+public class EligibilityProperties {
+    private Map<String, Map<String, Integer>> policies = new HashMap<>();
+}
@@ -0,0 +1,13 @@
+package com.example.user.validators;
+
+import java.time.LocalDate;
+
+/**
+ * The data checked by the eligibility policies, read through typed accessors
+ */
+public interface Registrant {
+
+    String getCountry();
+
+    LocalDate getBirthdate();
+}
@@ -8,7 +8,7 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 /**
- * A custom validator to enforce the validation rules: Adult and French residents
+ * A custom validator to enforce the validation rules of an eligibility policy (i.e: Adult and French residents)
  *
  * @interface to define our annotation
  */
@@ -18,9 +18,10 @@ import java.lang.annotation.Target;
 public @interface UserAuthorization {
     String message() default "User is not authorized to create an account";
 
-    String country();
-
-    String birthdate();
+    /**
+     * The name of the eligibility policy, as configured in user.eligibility.policies
+     */
+    String policy();
 
     Class<?>[] groups() default {};
 
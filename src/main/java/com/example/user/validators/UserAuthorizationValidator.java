@@ -1,48 +1,50 @@
 package com.example.user.validators;
 
-import org.springframework.beans.BeanWrapperImpl;
-
+import javax.validation.ConstraintDeclarationException;
 import javax.validation.ConstraintValidator;
 import javax.validation.ConstraintValidatorContext;
 import javax.validation.ValidationException;
-import java.time.LocalDate;
-import java.time.Period;
-import java.time.format.DateTimeFormatter;
+import java.time.Clock;
+import java.util.Map;
 
 /**
  * The validator class that is going to validate our fields: country and birthdate
  */
-public class UserAuthorizationValidator implements ConstraintValidator<UserAuthorization, Object> {
-    private String country;
-    private String birthdate;
+public class UserAuthorizationValidator implements ConstraintValidator<UserAuthorization, Registrant> {
+    private final EligibilityProperties eligibilityProperties;
+    private EligibilityPolicy policy;
+
+    public UserAuthorizationValidator(EligibilityProperties eligibilityProperties) {
+        this.eligibilityProperties = eligibilityProperties;
+    }
 
+    /**
+     * Compiles the eligibility policy named by the annotation, once for all the validations
+     *
+     * @param annotation UserAuthorization
+     */
+    @Override
     public void initialize(UserAuthorization annotation) {
-        this.country = annotation.country();
-        this.birthdate = annotation.birthdate();
+        Map<String, Integer> rules = eligibilityProperties.getPolicies().get(annotation.policy());
+        if (rules == null) {
+            throw new ConstraintDeclarationException("Unknown eligibility policy '" + annotation.policy() + "'");
+        }
+        this.policy = new EligibilityPolicy(annotation.policy(), rules, Clock.systemDefaultZone());
     }
 
     /**
-     * This method checks if the user is authorized to create an account. It calculates the age and checks if the country is France.
+     * This method checks if the user is authorized to create an account: its country must be allowed by the policy
+     * and its age must have reached the minimum age of this country.
      *
      * @param value   object to validate
      * @param context context in which the constraint is evaluated
      * @return boolean
      */
-    public boolean isValid(Object value, ConstraintValidatorContext context) {
-        Object countryValue = new BeanWrapperImpl(value)
-                .getPropertyValue(country);
-        Object birthdateValue = new BeanWrapperImpl(value)
-                .getPropertyValue(birthdate);
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-        LocalDate birth;
-        if (birthdateValue != null)
-            birth = LocalDate.parse(birthdateValue.toString(), formatter);
-        else
-            throw new ValidationException();
-        int age = Period.between(birth, LocalDate.now()).getYears();
-        if (countryValue != null)
-            return (countryValue.toString().equalsIgnoreCase("FRANCE")) && age > 18;
-        else
+    @Override
+    public boolean isValid(Registrant value, ConstraintValidatorContext context) {
+        if (value.getBirthdate() == null || value.getCountry() == null) {
             throw new ValidationException();
+        }
+        return policy.isEligible(value.getCountry(), value.getBirthdate());
     }
 }
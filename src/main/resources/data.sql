@@ -1,11 +1,13 @@
-INSERT INTO USERS(username, birthdate, country, phone,gender) values
-('Alex','2000-10-12','FRANCE','+3307919235',0),
-('Nour','1966-09-11','FRANCE','98667182',1),
-('Bob','1999-10-16','FRANCE','+3306919605',0),
-('Alexandre','1970-06-17','FRANCE','6262535',0),
-('Lisa','1976-10-15','FRANCE','072662623',1),
-('Gabriel','1989-11-27','FRANCE','27626622',0),
-('Jules','2001-05-02','FRANCE','28833044',0),
-('Louis','1998-12-12','FRANCE','671772832',0),
-('Alice','1972-04-19','FRANCE','077383921',1),
-('Paul','1999-11-12','FRANCE','727291910',0);
\ No newline at end of file
+INSERT INTO USERS(id, username, birthdate, country, phone, normalized_phone, gender, version) values
+(1,'Alex','2000-10-12','FRANCE','+3307919235','+3307919235',0,0),
+(2,'Nour','1966-09-11','FRANCE','98667182','98667182',1,0),
+(3,'Bob','1999-10-16','FRANCE','+3306919605','+3306919605',0,0),
+(4,'Alexandre','1970-06-17','FRANCE','6262535','6262535',0,0),
+(5,'Lisa','1976-10-15','FRANCE','072662623','072662623',1,0),
+(6,'Gabriel','1989-11-27','FRANCE','27626622','27626622',0,0),
+(7,'Jules','2001-05-02','FRANCE','28833044','28833044',0,0),
+(8,'Louis','1998-12-12','FRANCE','671772832','671772832',0,0),
+(9,'Alice','1972-04-19','FRANCE','077383921','077383921',1,0),
+(10,'Paul','1999-11-12','FRANCE','727291910','727291910',0,0);
+
+ALTER SEQUENCE USERS_SEQ RESTART WITH 11;
\ No newline at end of file
@@ -0,0 +1,201 @@
+package com.example.user.admission;
+
+import com.example.user.controllers.UserController;
+import com.example.user.registration.RegistrationQueue;
+import com.example.user.services.UserService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests of the admission control: the limiters on their own, and the rejections answered in front of the controller
+ */
+@RunWith(SpringRunner.class)
+@WebMvcTest(controllers = UserController.class, properties = {
+        "user.admission.write.rate=1",
+        "user.admission.write.burst=2",
+        "user.admission.write.latency-target=10ms",
+        "user.admission.trusted-proxies=127.0.0.1",
+        "user.admission.read.initial-limit=2",
+        "user.admission.read.min-limit=1"})
+public class AdmissionInterceptorTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private AdmissionInterceptor admissionInterceptor;
+
+    @MockBean
+    private UserService service;
+
+    @MockBean
+    private RegistrationQueue registrationQueue;
+
+    /**
+     * This test checks if the writes of a client beyond its burst are answered 429 with a Retry-After, without
+     * limiting the other clients nor the reads
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void writesBeyondTheRateOfTheClient_shouldReturn429() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            mvc.perform(post("/user").header("X-Client-Id", "greedy").contentType(MediaType.APPLICATION_JSON).content("{}"))
+                    .andExpect(status().isBadRequest());
+        }
+        mvc.perform(post("/user").header("X-Client-Id", "greedy").contentType(MediaType.APPLICATION_JSON).content("{}"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+                .andExpect(jsonPath("$.message[0]").value("Too many write requests from this client, retry later"));
+        mvc.perform(post("/user").header("X-Client-Id", "polite").contentType(MediaType.APPLICATION_JSON).content("{}"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/users").param("ids", "1").header("X-Client-Id", "greedy"))
+                .andExpect(status().isOk());
+    }
+
+    /**
+     * This test checks if the client header is ignored when the request does not come from a trusted proxy, so that
+     * a client cannot escape its bucket by changing it
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void clientHeaderOfAnUntrustedAddress_shouldBeIgnored() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            mvc.perform(post("/user").header("X-Client-Id", "rotated" + i).contentType(MediaType.APPLICATION_JSON).content("{}")
+                            .with(request -> {
+                                request.setRemoteAddr("10.0.0.7");
+                                return request;
+                            }))
+                    .andExpect(status().isBadRequest());
+        }
+        mvc.perform(post("/user").header("X-Client-Id", "rotated2").contentType(MediaType.APPLICATION_JSON).content("{}")
+                        .with(request -> {
+                            request.setRemoteAddr("10.0.0.7");
+                            return request;
+                        }))
+                .andExpect(status().isTooManyRequests());
+    }
+
+    /**
+     * This test checks if a bulk request slower than the latency target does not cut the limit of its class
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void slowBulkRequest_shouldNotCutTheLimit() throws Exception {
+        when(service.registerNewUsers(anyList())).thenAnswer(invocation -> {
+            Thread.sleep(50);
+            return Collections.emptyList();
+        });
+        AdaptiveConcurrencyLimiter writes = admissionInterceptor.getConcurrencyLimiter(TrafficClass.WRITE);
+        int limit = writes.getLimit();
+        mvc.perform(post("/users/batch").header("X-Client-Id", "bulk").contentType(MediaType.APPLICATION_JSON).content("[]"))
+                .andExpect(status().isOk());
+        assertEquals(writes.getLimit(), limit);
+        assertEquals(writes.getInFlight(), 0);
+    }
+
+    /**
+     * This test checks if the reads are answered 503 while the limit of reads in flight is reached
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void readsBeyondTheConcurrencyLimit_shouldReturn503() throws Exception {
+        AdaptiveConcurrencyLimiter reads = admissionInterceptor.getConcurrencyLimiter(TrafficClass.READ);
+        int limit = reads.getLimit();
+        for (int i = 0; i < limit; i++) {
+            assertTrue(reads.tryAcquire());
+        }
+        try {
+            mvc.perform(post("/users/lookup").contentType(MediaType.APPLICATION_JSON).content("[1]"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+        } finally {
+            for (int i = 0; i < limit; i++) {
+                reads.release();
+            }
+        }
+    }
+
+    /**
+     * This test checks if a bucket lets a burst through, then one request per interval
+     */
+    @Test
+    public void clientRateLimiter_shouldRefillAtTheRate() {
+        AtomicLong now = new AtomicLong(1_000);
+        ClientRateLimiter limiter = new ClientRateLimiter(100, 10, 3, now::get);
+        assertEquals(limiter.getStripes(), 128);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(limiter.tryAcquire("client"), 0L);
+        }
+        assertEquals(limiter.tryAcquire("client"), TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(limiter.tryAcquire("other"), 0L);
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(60));
+        assertEquals(limiter.tryAcquire("client"), TimeUnit.MILLISECONDS.toNanos(40));
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(40));
+        assertEquals(limiter.tryAcquire("client"), 0L);
+        assertTrue(limiter.tryAcquire("client") > 0);
+        assertFalse(new ClientRateLimiter(1, 0, 1).isEnabled());
+    }
+
+    /**
+     * This test checks if the limit is cut once per latency target by the slow requests, and grows back by the fast
+     * ones while it is used
+     */
+    @Test
+    public void adaptiveConcurrencyLimiter_shouldFollowTheLatency() {
+        AtomicLong now = new AtomicLong();
+        long target = TimeUnit.MILLISECONDS.toNanos(100);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 2, 20, target, now::get);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        assertFalse(limiter.tryAcquire());
+        limiter.release(2 * target, false);
+        limiter.release(2 * target, true);
+        assertEquals(limiter.getLimit(), 9);
+        now.addAndGet(target);
+        limiter.release(2 * target, false);
+        assertEquals(limiter.getLimit(), 8);
+        assertEquals(limiter.getInFlight(), 7);
+        for (int i = 0; i < 7; i++) {
+            limiter.release(target / 2, false);
+        }
+        assertEquals(limiter.getInFlight(), 0);
+        assertEquals(limiter.getLimit(), 8);
+        for (int i = 0; i < 100; i++) {
+            int used = limiter.getLimit();
+            for (int j = 0; j < used; j++) {
+                assertTrue(limiter.tryAcquire());
+            }
+            for (int j = 0; j < used; j++) {
+                limiter.release(target / 2, false);
+            }
+        }
+        assertEquals(limiter.getLimit(), 20);
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.user.aspect;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit Tests for the ring buffer of the sampled tracing mode
+ */
+@RunWith(SpringRunner.class)
+public class TraceRingBufferTest {
+
+    /**
+     * This test checks if the elements are polled in order and dropped when the buffer is full
+     */
+    @Test
+    public void shouldDropWhenFull() {
+        TraceRingBuffer<Integer> buffer = new TraceRingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+        assertEquals(buffer.dropped(), 1L);
+        assertEquals(buffer.poll(), 0);
+        assertTrue(buffer.offer(5));
+        assertEquals(buffer.poll(), 1);
+        assertEquals(buffer.poll(), 2);
+        assertEquals(buffer.poll(), 3);
+        assertEquals(buffer.poll(), 5);
+        assertNull(buffer.poll());
+    }
+
+    /**
+     * This test checks if a claimed slot keeps its place in the order until it is published, and if nothing can be
+     * claimed when the buffer is full
+     */
+    @Test
+    public void shouldPublishTheClaimedSlotsInOrder() {
+        TraceRingBuffer<Integer> buffer = new TraceRingBuffer<>(4);
+        long first = buffer.claim();
+        for (int i = 1; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertEquals(buffer.claim(), -1L);
+        assertEquals(buffer.dropped(), 1L);
+        assertNull(buffer.poll());
+        buffer.publish(first, 0);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(buffer.poll(), i);
+        }
+        assertNull(buffer.poll());
+    }
+
+    /**
+     * This test checks if every element offered by concurrent producers is either polled or counted as dropped
+     */
+    @Test
+    public void shouldNotLoseElementsOfConcurrentProducers() throws InterruptedException {
+        TraceRingBuffer<Integer> buffer = new TraceRingBuffer<>(64);
+        ExecutorService producers = Executors.newFixedThreadPool(4);
+        CountDownLatch done = new CountDownLatch(4);
+        for (int p = 0; p < 4; p++) {
+            producers.execute(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    buffer.offer(i);
+                }
+                done.countDown();
+            });
+        }
+        long polled = 0;
+        while (done.getCount() > 0) {
+            if (buffer.poll() != null) {
+                polled++;
+            }
+        }
+        while (buffer.poll() != null) {
+            polled++;
+        }
+        producers.shutdown();
+        producers.awaitTermination(1, TimeUnit.SECONDS);
+        assertEquals(polled + buffer.dropped(), 40000L);
+    }
+}
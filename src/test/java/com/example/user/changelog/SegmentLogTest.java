@@ -0,0 +1,139 @@
+package com.example.user.changelog;
+
+import com.example.user.exception.ChangeOffsetOutOfRangeException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit Tests for the segments of the change log
+ */
+@RunWith(SpringRunner.class)
+public class SegmentLogTest {
+    // 4 records of 10 bytes per segment
+    private static final int SEGMENT_BYTES = 4 * (Segment.HEADER + 10);
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("segment-log");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    private static List<byte[]> records(int from, int count) {
+        List<byte[]> payloads = new ArrayList<>();
+        for (int i = from; i < from + count; i++) {
+            payloads.add(String.format("record%04d", i).getBytes(StandardCharsets.UTF_8));
+        }
+        return payloads;
+    }
+
+    private static List<String> payloads(List<LogRecord> records) {
+        return records.stream().map(record -> new String(record.getPayload(), StandardCharsets.UTF_8)).collect(Collectors.toList());
+    }
+
+    /**
+     * This test checks if the records get consecutive offsets across the segments, are read once committed, and are
+     * found again with their offsets when the log is reopened
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void shouldReadTheCommittedRecordsAcrossSegmentsAndRestarts() throws Exception {
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_BYTES)) {
+            assertEquals(log.append(records(0, 3), 1000), 0L);
+            assertEquals(log.append(records(3, 7), 2000), 3L);
+            assertTrue(log.awaitCommittedBeyond(9, 5000));
+            assertEquals(log.getCommittedOffset(), 10L);
+            List<LogRecord> read = log.read(2, 5);
+            assertEquals(payloads(read), payloads(toRecords(records(2, 5))));
+            assertEquals(read.get(0).getOffset(), 2L);
+            assertEquals(read.get(0).getTime(), 1000L);
+            assertEquals(read.get(4).getOffset(), 6L);
+            assertEquals(read.get(4).getTime(), 2000L);
+            assertEquals(log.read(10, 5), Collections.emptyList());
+            assertThrows(ChangeOffsetOutOfRangeException.class, () -> log.read(11, 5));
+        }
+        assertEquals(Files.list(directory).filter(file -> file.toString().endsWith(".log")).count(), 3L);
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_BYTES)) {
+            assertEquals(log.getStartOffset(), 0L);
+            assertEquals(log.getCommittedOffset(), 10L);
+            assertEquals(log.append(records(10, 1), 3000), 10L);
+            assertTrue(log.awaitCommittedBeyond(10, 5000));
+            assertEquals(payloads(log.read(0, 100)), payloads(toRecords(records(0, 11))));
+        }
+    }
+
+    /**
+     * This test checks if a reader waiting for the next record is woken by its commit, and a cancelled one is not
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void shouldWakeTheReadersOnCommit() throws Exception {
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_BYTES)) {
+            CountDownLatch woken = new CountDownLatch(1);
+            CountDownLatch cancelled = new CountDownLatch(1);
+            log.whenCommittedBeyond(0, woken::countDown);
+            log.whenCommittedBeyond(0, cancelled::countDown).run();
+            assertEquals(woken.getCount(), 1L);
+            log.append(records(0, 1), 1000);
+            assertTrue(woken.await(5, TimeUnit.SECONDS));
+            assertEquals(cancelled.getCount(), 1L);
+            CountDownLatch immediate = new CountDownLatch(1);
+            log.whenCommittedBeyond(0, immediate::countDown);
+            assertEquals(immediate.getCount(), 0L);
+        }
+    }
+
+    /**
+     * This test checks if the retention removes the oldest segments, but never the last one, and the log then
+     * starts after them
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void retention_shouldRemoveTheOldestSegments() throws Exception {
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_BYTES)) {
+            log.append(records(0, 4), 1000);
+            log.append(records(4, 4), 2000);
+            log.append(records(8, 2), 3000);
+            assertTrue(log.awaitCommittedBeyond(9, 5000));
+            assertEquals(log.applyRetention(1000, Long.MAX_VALUE), 0);
+            assertEquals(log.applyRetention(1001, Long.MAX_VALUE), 1);
+            assertEquals(log.getStartOffset(), 4L);
+            ChangeOffsetOutOfRangeException e = assertThrows(ChangeOffsetOutOfRangeException.class, () -> log.read(3, 5));
+            assertEquals(e.getStartOffset(), 4L);
+            assertEquals(log.applyRetention(0, SEGMENT_BYTES), 1);
+            assertEquals(log.applyRetention(Long.MAX_VALUE, 0), 0);
+            assertEquals(payloads(log.read(8, 5)), payloads(toRecords(records(8, 2))));
+        }
+    }
+
+    private static List<LogRecord> toRecords(List<byte[]> payloads) {
+        return payloads.stream().map(payload -> new LogRecord(0, 0, payload)).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.user.changelog;
+
+import com.example.user.domain.User;
+import com.example.user.dto.UserChange;
+import com.example.user.services.UserChangedEvent;
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests of the change log of the users: the registrations read by the long poll and delivered to the subscriptions
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:changeLog;DB_CLOSE_DELAY=-1",
+        "user.changelog.enabled=true"})
+@AutoConfigureMockMvc
+public class UserChangeLogTest {
+    private static Path directory;
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private UserChangeLog userChangeLog;
+
+    @DynamicPropertySource
+    static void changeLogDirectory(DynamicPropertyRegistry registry) throws IOException {
+        directory = Files.createTempDirectory("user-changelog");
+        registry.add("user.changelog.dir", directory::toString);
+    }
+
+    @AfterClass
+    public static void deleteDirectory() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    private void register(String username) throws Exception {
+        mvc.perform(post("/user").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"" + username + "\",\"birthdate\":\"1990-01-01\",\"country\":\"France\"}"))
+                .andExpect(status().isCreated());
+    }
+
+    /**
+     * This test checks if a long poll from the end of the log waits for the next registration, and is answered with
+     * it and the offset to resume from
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void longPoll_shouldAnswerTheNextRegistration() throws Exception {
+        long offset = userChangeLog.getEndOffset();
+        MvcResult poll = mvc.perform(get("/users/changes").param("offset", String.valueOf(offset)).param("wait", "10"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        register("Polled");
+        mvc.perform(asyncDispatch(poll))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changes[0].offset").value(offset))
+                .andExpect(jsonPath("$.changes[0].type").value("CREATED"))
+                .andExpect(jsonPath("$.changes[0].user.username").value("Polled"))
+                .andExpect(jsonPath("$.nextOffset").value(offset + 1));
+
+        MvcResult empty = mvc.perform(get("/users/changes").param("offset", String.valueOf(offset + 1)).param("wait", "0"))
+                .andReturn();
+        mvc.perform(asyncDispatch(empty))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changes").isEmpty())
+                .andExpect(jsonPath("$.nextOffset").value(offset + 1));
+        mvc.perform(get("/users/changes").param("offset", String.valueOf(offset + 2)))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * This test checks if a subscription gets the changes from its offset, then the new ones, in order, the batch
+     * registrations included
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void subscription_shouldDeliverTheChangesFromItsOffset() throws Exception {
+        long offset = userChangeLog.getEndOffset();
+        register("Subscribed1");
+        BlockingQueue<UserChange> changes = new LinkedBlockingQueue<>();
+        UserChangeLog.Subscription subscription = userChangeLog.subscribe(offset, changes::add);
+        try {
+            register("Subscribed2");
+            mvc.perform(post("/users/batch").contentType(MediaType.APPLICATION_JSON)
+                            .content("[{\"username\":\"Subscribed3\",\"birthdate\":\"1990-01-01\",\"country\":\"France\"},"
+                                    + "{\"username\":\"Subscribed4\",\"birthdate\":\"1990-01-01\",\"country\":\"France\"}]"))
+                    .andExpect(status().isOk());
+            for (int i = 0; i < 4; i++) {
+                UserChange change = changes.poll(10, TimeUnit.SECONDS);
+                assertEquals(change.getOffset(), offset + i);
+                assertEquals(change.getUser().getUsername(), "Subscribed" + (i + 1));
+            }
+            assertNull(changes.poll(200, TimeUnit.MILLISECONDS));
+            assertEquals(subscription.getOffset(), offset + 4);
+        } finally {
+            subscription.close();
+        }
+        List<UserChange> read = userChangeLog.read(offset, 10).getChanges();
+        assertEquals(read.size(), 4);
+        assertTrue(read.stream().allMatch(change -> change.getType() == UserChange.Type.CREATED));
+    }
+
+    private static UserChangedEvent updated(String username, long version) {
+        User user = new User(1_000_000L, username, LocalDate.of(1990, 1, 1), "France", null, null);
+        user.setVersion(version);
+        return new UserChangedEvent(UserChange.Type.UPDATED, Collections.singletonList(user));
+    }
+
+    /**
+     * This test checks if a change of a user reaching the log after a later change of the same user, its commit
+     * being overtaken, is not appended, so that the log ends with the current state of the user
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void overtakenChange_shouldNotBeAppended() throws Exception {
+        long offset = userChangeLog.getEndOffset();
+        userChangeLog.onUserChanged(updated("Version2", 2));
+        userChangeLog.onUserChanged(updated("Version1", 1));
+        userChangeLog.onUserChanged(updated("Version2Again", 2));
+        userChangeLog.onUserChanged(updated("Version3", 3));
+        List<UserChange> read = Collections.emptyList();
+        for (int i = 0; i < 100 && read.size() < 2; i++) {
+            Thread.sleep(50);
+            read = userChangeLog.read(offset, 10).getChanges();
+        }
+        assertEquals(read.size(), 2);
+        assertEquals(read.get(0).getUser().getUsername(), "Version2");
+        assertEquals(read.get(1).getUser().getUsername(), "Version3");
+        Thread.sleep(200);
+        assertEquals(userChangeLog.getEndOffset(), offset + 2);
+    }
+}
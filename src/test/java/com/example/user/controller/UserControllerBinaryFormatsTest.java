@@ -0,0 +1,195 @@
+package com.example.user.controller;
+
+import com.example.user.controllers.UserController;
+import com.example.user.domain.Gender;
+import com.example.user.domain.User;
+import com.example.user.dto.UserDto;
+import com.example.user.exception.ErrorMessage;
+import com.example.user.formats.BinaryFormatsConfiguration;
+import com.example.user.formats.BinaryMediaTypes;
+import com.example.user.registration.RegistrationQueue;
+import com.example.user.services.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufMapper;
+import com.fasterxml.jackson.dataformat.protobuf.schema.NativeProtobufSchema;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Unit Tests for the CBOR, Smile and protobuf bodies of the REST Controller
+ */
+@RunWith(SpringRunner.class)
+@WebMvcTest(UserController.class)
+@Import(BinaryFormatsConfiguration.class)
+public class UserControllerBinaryFormatsTest {
+    private final ObjectMapper cborMapper = CBORMapper.builder()
+            .addModule(new JavaTimeModule())
+            .addModule(new ParameterNamesModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+    private final ObjectMapper smileMapper = SmileMapper.builder()
+            .addModule(new JavaTimeModule())
+            .addModule(new ParameterNamesModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+    private final ObjectMapper protobufMapper = ProtobufMapper.builder()
+            .addModule(new JavaTimeModule())
+            .addModule(new ParameterNamesModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+    private NativeProtobufSchema schema;
+    private MockMvc mockMvc;
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+    @MockBean
+    private UserService service;
+    @MockBean
+    private RegistrationQueue registrationQueue;
+
+    @Before
+    public void setup() throws Exception {
+        mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        schema = BinaryFormatsConfiguration.loadSchema();
+    }
+
+    private static UserDto userDto(String username, String country) {
+        UserDto userDto = new UserDto();
+        userDto.setUsername(username);
+        userDto.setBirthdate(LocalDate.of(1989, 11, 27));
+        userDto.setCountry(country);
+        userDto.setGender(Gender.FEMALE);
+        return userDto;
+    }
+
+    /**
+     * This test checks if the GET request on the /user/{id} URL answers the user in CBOR or in protobuf when asked
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void shouldReturnUserInBinaryFormats() throws Exception {
+        User user = new User(1L, "Jihane", LocalDate.of(1989, 11, 27), "France", "0612345678", Gender.FEMALE);
+        when(service.getUser(1L)).thenReturn(Optional.of(user));
+
+        MvcResult cbor = mockMvc.perform(get("/user/{id}", 1L).accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn();
+        UserDto fromCbor = cborMapper.readValue(cbor.getResponse().getContentAsByteArray(), UserDto.class);
+        assertEquals(fromCbor.getUsername(), "Jihane");
+        assertEquals(fromCbor.getBirthdate(), user.getBirthdate());
+
+        MvcResult protobuf = mockMvc.perform(get("/user/{id}", 1L).accept(BinaryMediaTypes.PROTOBUF))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(BinaryMediaTypes.PROTOBUF))
+                .andReturn();
+        UserDto fromProtobuf = protobufMapper.readerFor(UserDto.class).with(schema.forType("UserDto"))
+                .readValue(protobuf.getResponse().getContentAsByteArray());
+        assertEquals(fromProtobuf.getId(), 1L);
+        assertEquals(fromProtobuf.getPhone(), "0612345678");
+        assertEquals(fromProtobuf.getGender(), Gender.FEMALE);
+        assertEquals(fromProtobuf.getBirthdate(), user.getBirthdate());
+    }
+
+    /**
+     * This test checks if a user sent in protobuf is validated and registered as a JSON one, and answered in protobuf
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void registerUser_shouldAcceptProtobuf() throws Exception {
+        when(service.registerNewUser(any(User.class))).thenAnswer(i -> i.getArguments()[0]);
+        byte[] body = protobufMapper.writerFor(UserDto.class).with(schema.forType("UserDto"))
+                .writeValueAsBytes(userDto("Jihane", "France"));
+        MvcResult result = mockMvc.perform(post("/user")
+                        .contentType(BinaryMediaTypes.PROTOBUF)
+                        .accept(BinaryMediaTypes.PROTOBUF)
+                        .content(body))
+                .andExpect(status().isCreated())
+                .andReturn();
+        UserDto created = protobufMapper.readerFor(UserDto.class).with(schema.forType("UserDto"))
+                .readValue(result.getResponse().getContentAsByteArray());
+        assertEquals(created.getUsername(), "Jihane");
+    }
+
+    /**
+     * This test checks if a user sent in Smile and refused by the validation is answered with an ErrorMessage in Smile
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void registerUser_shouldReturn400InSmile() throws Exception {
+        MvcResult result = mockMvc.perform(post("/user")
+                        .contentType(BinaryMediaTypes.SMILE)
+                        .accept(BinaryMediaTypes.SMILE)
+                        .content(smileMapper.writeValueAsBytes(userDto("Hans", "Germany"))))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentType(BinaryMediaTypes.SMILE))
+                .andReturn();
+        ErrorMessage error = smileMapper.readValue(result.getResponse().getContentAsByteArray(), ErrorMessage.class);
+        assertEquals(error.getStatusCode(), 400);
+        assertEquals(error.getDescription(), "Invalid Constraints");
+        verify(service, never()).registerNewUser(any(User.class));
+    }
+
+    /**
+     * This test checks if the 404 of an unknown user is answered with an ErrorMessage in protobuf when asked
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void shouldReturnNotFoundUserInProtobuf() throws Exception {
+        when(service.getUser(100L)).thenReturn(Optional.empty());
+        MvcResult result = mockMvc.perform(get("/user/{id}", 100L).accept(BinaryMediaTypes.PROTOBUF))
+                .andExpect(status().isNotFound())
+                .andExpect(content().contentType(BinaryMediaTypes.PROTOBUF))
+                .andReturn();
+        ErrorMessage error = protobufMapper.readerFor(ErrorMessage.class).with(schema.forType("ErrorMessage"))
+                .readValue(result.getResponse().getContentAsByteArray());
+        assertEquals(error.getStatusCode(), 404);
+        assertEquals(error.getMessage(), Collections.singletonList("User '100' not found"));
+        assertEquals(error.getDescription(), "uri=/user/100");
+    }
+
+    /**
+     * This test checks if a binary format is only preferred when the Accept header ranks it before JSON
+     */
+    @Test
+    public void shouldPreferBinaryFormatsOnlyWhenAsked() {
+        assertFalse(BinaryMediaTypes.preferred(null));
+        assertFalse(BinaryMediaTypes.preferred("application/json, */*"));
+        assertTrue(BinaryMediaTypes.preferred("application/x-protobuf"));
+        assertTrue(BinaryMediaTypes.preferred("application/json;q=0.5, application/cbor"));
+        assertFalse(BinaryMediaTypes.preferred("application/json, application/cbor;q=0.5"));
+        assertFalse(BinaryMediaTypes.preferred("not a media type, cbor"));
+    }
+}
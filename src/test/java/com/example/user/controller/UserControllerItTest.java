@@ -1,5 +1,6 @@
 package com.example.user.controller;
 
+import com.example.user.domain.Gender;
 import com.example.user.domain.User;
 import com.example.user.services.UserService;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -18,15 +19,22 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /**
@@ -57,23 +65,23 @@ public class UserControllerItTest {
      */
     @Test
     public void createUser_shouldSuccess() throws Exception {
-        Long userId = 1L;
         String birthdateValue = "1999-12-11";
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
         LocalDate birth = LocalDate.parse(birthdateValue, formatter);
 
+        // a username which is not seeded, so that the user is created with a generated id
         MvcResult result = mvc.perform(MockMvcRequestBuilders
                         .post("/user")
                         .contentType(MediaType.APPLICATION_JSON)
-                        .content(objectMapper.writeValueAsString(User.builder().id(userId).username("Bob").country("France").birthdate(birth).build())))
+                        .content(objectMapper.writeValueAsString(User.builder().username("Robert").country("France").birthdate(birth).build())))
                 .andDo(print())
                 .andReturn();
         MockHttpServletResponse response = result.getResponse();
-        User user = objectMapper.readValue(response.getContentAsString(), User.class);
         assertEquals(response.getStatus(), HttpStatus.CREATED.value());
-        assertThat(response, is(notNullValue()));
-        assertEquals(user.getId(), userId);
-        assertEquals(userService.getUser(userId).get().getUsername(), "Bob");
+        User user = objectMapper.readValue(response.getContentAsString(), User.class);
+        Long userId = user.getId();
+        assertThat(userId, is(notNullValue()));
+        assertEquals(userService.getUser(userId).get().getUsername(), "Robert");
         // A get request to verify the registration of the user after a post request
         MvcResult result_get = mvc.perform(get("/user/{id}", userId))
                 .andDo(print())
@@ -82,7 +90,7 @@ public class UserControllerItTest {
         String content = result_get.getResponse().getContentAsString();
         User useradd = objectMapper.readValue(content, User.class);
         assertEquals(useradd.getId(), userId);
-        assertEquals(useradd.getUsername(), "Bob");
+        assertEquals(useradd.getUsername(), "Robert");
     }
 
     /**
@@ -110,7 +118,6 @@ public class UserControllerItTest {
      */
     @Test
     public void createUserAlreadyExists_shouldReturn400() throws Exception {
-        Long userId = 1L;
         String birthdateValue = "1999-12-11";
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
         LocalDate birth = LocalDate.parse(birthdateValue, formatter);
@@ -118,23 +125,23 @@ public class UserControllerItTest {
         MvcResult result = mvc.perform(MockMvcRequestBuilders
                         .post("/user")
                         .contentType(MediaType.APPLICATION_JSON)
-                        .content(objectMapper.writeValueAsString(User.builder().id(userId).username("Bob").country("France").birthdate(birth).build())))
+                        .content(objectMapper.writeValueAsString(User.builder().username("Roberta").country("France").birthdate(birth).build())))
                 .andDo(print())
                 .andReturn();
         MockHttpServletResponse response = result.getResponse();
-        User user = objectMapper.readValue(response.getContentAsString(), User.class);
         assertEquals(response.getStatus(), HttpStatus.CREATED.value());
-        assertEquals(user.getId(), userId);
-        assertEquals(userService.getUser(userId).get().getUsername(), "Bob");
+        User user = objectMapper.readValue(response.getContentAsString(), User.class);
+        assertEquals(userService.getUser(user.getId()).get().getUsername(), "Roberta");
 
-        MvcResult resultex = mvc.perform(MockMvcRequestBuilders
+        // the error body is an ErrorMessage, not a user
+        mvc.perform(MockMvcRequestBuilders
                         .post("/user")
                         .contentType(MediaType.APPLICATION_JSON)
-                        .content(objectMapper.writeValueAsString(User.builder().id(2L).username("Bob").country("France").birthdate(birth).build())))
+                        .content(objectMapper.writeValueAsString(User.builder().username("Roberta").country("France").birthdate(birth).build())))
                 .andDo(print())
-                .andReturn();
-        MockHttpServletResponse resp = resultex.getResponse();
-        assertEquals(resp.getStatus(), HttpStatus.BAD_REQUEST.value());
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.statusCode").value(HttpStatus.BAD_REQUEST.value()))
+                .andExpect(jsonPath("$.message[0]").value("Username 'Roberta' already exists"));
     }
 
     @Test
@@ -154,4 +161,194 @@ public class UserControllerItTest {
         assertEquals(response.getStatus(), HttpStatus.BAD_REQUEST.value());
     }
 
+    /**
+     * This test checks if the POST request on the /users/batch URL saves the new users and rejects the existing usernames
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void createUsers_shouldSaveNewUsersOnly() throws Exception {
+        LocalDate birth = LocalDate.parse("1985-03-21", DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+        mvc.perform(MockMvcRequestBuilders
+                        .post("/users/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Arrays.asList(
+                                User.builder().username("Batch1").country("France").birthdate(birth).build(),
+                                User.builder().username("Nour").country("France").birthdate(birth).build(),
+                                User.builder().username("Batch2").country("France").birthdate(birth).build()))))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].created").value(true))
+                .andExpect(jsonPath("$[1].created").value(false))
+                .andExpect(jsonPath("$[2].created").value(true));
+    }
+
+    /**
+     * This test checks if the GET request on the /users URL returns the users page by page, in the order of the ids
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void listUsers_shouldReturnPagesAfterTheGivenId() throws Exception {
+        mvc.perform(get("/users").param("limit", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users.length()").value(3))
+                .andExpect(jsonPath("$.users[0].id").value(1))
+                .andExpect(jsonPath("$.nextAfterId").value(3));
+        mvc.perform(get("/users").param("afterId", "3").param("limit", "2").param("gender", "FEMALE"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users[0].id").value(5))
+                .andExpect(jsonPath("$.users[1].id").value(9));
+    }
+
+    /**
+     * This test checks if the GET request on the /users/stream URL writes one JSON user per line
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void streamUsers_shouldWriteNdjson() throws Exception {
+        MvcResult result = mvc.perform(get("/users/stream").param("gender", "FEMALE"))
+                .andExpect(status().isOk())
+                .andReturn();
+        String[] lines = result.getResponse().getContentAsString().split("\n");
+        assertEquals(lines.length, 3);
+        assertEquals(objectMapper.readValue(lines[0], User.class).getUsername(), "Nour");
+        assertEquals(objectMapper.readValue(lines[2], User.class).getUsername(), "Alice");
+    }
+
+    /**
+     * This test checks if the POST request on the /users/import URL registers the valid users of a CSV dump and
+     * writes the others to the rejects file with their reason
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void importUsers_shouldRegisterValidRowsAndRejectOthers() throws Exception {
+        String csv = "username,birthdate,country,phone,gender\n"
+                + "Import1,1985-03-21,France,0601020304,MALE\n"
+                + "Import2,2015-03-21,France,,MALE\n"
+                + "Import3,1985-03-21,Spain,,MALE\n"
+                + "Nour,1985-03-21,France,,MALE\n"
+                + "Import4,not-a-date,France,,MALE\n";
+        MvcResult result = mvc.perform(MockMvcRequestBuilders
+                        .post("/users/import")
+                        .contentType("text/csv")
+                        .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.read").value(5))
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.rejected").value(4))
+                .andReturn();
+        String rejectsFile = objectMapper.readTree(result.getResponse().getContentAsString()).get("rejectsFile").asText();
+        List<String> rejects = Files.readAllLines(Paths.get(rejectsFile));
+        Files.delete(Paths.get(rejectsFile));
+        assertEquals(rejects.size(), 4);
+        assertThat(rejects.contains("3\tunderage\tImport2,2015-03-21,France,,MALE"), is(true));
+        assertThat(rejects.stream().anyMatch(reject -> reject.startsWith("5\tUsername 'Nour' already exists")), is(true));
+    }
+
+    /**
+     * This test checks if the GET request on the /user/{id} URL returns the version of the user as ETag, a 304
+     * status when the client sends it back in If-None-Match, and a new ETag once the user is updated
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void getUser_shouldAnswerNotModifiedToTheCurrentETag() throws Exception {
+        String eTag = mvc.perform(get("/user/{id}", 4L))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+        mvc.perform(get("/user/{id}", 4L).header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+        mvc.perform(get("/user/{id}", 4L).header("If-None-Match", "\"-1\""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.username").value("Alexandre"));
+
+        mvc.perform(MockMvcRequestBuilders
+                        .post("/user")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(User.builder().id(4L).username("Alexandre").country("FRANCE")
+                                .birthdate(LocalDate.of(1970, 6, 17)).phone("6262536").gender(Gender.MALE).build())))
+                .andExpect(status().isCreated());
+        mvc.perform(get("/user/{id}", 4L).header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(eTag)));
+    }
+
+    /**
+     * This test checks if the GET request on the /users/search URL combines the criteria, and finds a phone however it
+     * is written
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void searchUsers_shouldMatchAllTheCriteria() throws Exception {
+        mvc.perform(get("/users/search").param("country", "FRANCE")
+                        .param("bornAfter", "1970-01-01").param("bornBefore", "1979-12-31"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users.length()").value(3))
+                .andExpect(jsonPath("$.users[0].username").value("Alexandre"))
+                .andExpect(jsonPath("$.users[2].username").value("Alice"));
+        mvc.perform(get("/users/search").param("country", "FRANCE").param("gender", "FEMALE")
+                        .param("bornBefore", "1979-12-31").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users[0].username").value("Nour"))
+                .andExpect(jsonPath("$.nextAfterId").value(2));
+        mvc.perform(get("/users/search").param("phone", "+33 06-91-96-05"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users.length()").value(1))
+                .andExpect(jsonPath("$.users[0].username").value("Bob"));
+    }
+
+    /**
+     * This test checks if a country is stored upper-cased, and found by the listings and searches however it is written
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void searchUsers_shouldMatchTheCountryWhateverItsCase() throws Exception {
+        mvc.perform(MockMvcRequestBuilders
+                        .post("/user")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(User.builder().username("Casey").country("france")
+                                .birthdate(LocalDate.of(1985, 4, 2)).gender(Gender.MALE).build())))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.country").value("FRANCE"));
+        mvc.perform(get("/users/search").param("country", "France")
+                        .param("bornAfter", "1985-01-01").param("bornBefore", "1985-12-31"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users.length()").value(1))
+                .andExpect(jsonPath("$.users[0].username").value("Casey"))
+                .andExpect(jsonPath("$.users[0].country").value("FRANCE"));
+        mvc.perform(get("/users/search").param("country", "fRaNcE").param("gender", "FEMALE")
+                        .param("bornBefore", "1979-12-31").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users[0].username").value("Nour"));
+        mvc.perform(get("/users").param("country", "france").param("gender", "FEMALE").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users[0].username").value("Nour"));
+    }
+
+
+    /**
+     * This test checks if the POST request on the /users/lookup URL answers the registered users in the order of the
+     * ids and reports the unknown ones
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void lookupUsers_shouldAnswerInTheOrderOfTheIds() throws Exception {
+        mvc.perform(MockMvcRequestBuilders
+                        .post("/users/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[9, 123456, 2, 9]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(4))
+                .andExpect(jsonPath("$[0].user.username").value("Alice"))
+                .andExpect(jsonPath("$[1].found").value(false))
+                .andExpect(jsonPath("$[2].user.username").value("Nour"))
+                .andExpect(jsonPath("$[3].user.username").value("Alice"));
+    }
 }
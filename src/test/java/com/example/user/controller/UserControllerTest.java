@@ -3,6 +3,9 @@ package com.example.user.controller;
 import com.example.user.controllers.UserController;
 import com.example.user.domain.Gender;
 import com.example.user.domain.User;
+import com.example.user.dto.RegistrationStatus;
+import com.example.user.registration.RegistrationQueue;
+import com.example.user.services.RegistrationOutcome;
 import com.example.user.services.UserService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
@@ -23,17 +26,29 @@ import org.springframework.web.context.WebApplicationContext;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /**
@@ -53,6 +68,8 @@ public class UserControllerTest {
      */
     @MockBean
     private UserService service;
+    @MockBean
+    private RegistrationQueue registrationQueue;
 
     @Before
     public void setup() {
@@ -86,6 +103,23 @@ public class UserControllerTest {
         assertEquals(response.getGender(), user.getGender());
     }
 
+    /**
+     * This test checks if the GET request on the /user/{id} URL returns a 304 status, without loading the user, when
+     * the ETag known by the client is the current version of the user
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void shouldReturnNotModifiedUser() throws Exception {
+        long id = 1L;
+        when(this.service.getUserVersion(id)).thenReturn(Optional.of(3L));
+        mockMvc.perform(get("/user/{id}", id).header("If-None-Match", "\"2\", \"3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"3\""))
+                .andExpect(content().string(""));
+        verify(this.service, never()).getUser(id);
+    }
+
     /**
      * This test checks if the GET request on the /user/{id} URL returns a 404 status
      *
@@ -97,6 +131,26 @@ public class UserControllerTest {
         when(this.service.getUser(id)).thenReturn(Optional.empty());
         mockMvc.perform(get("/user/{id}", id))
                 .andExpect(status().isNotFound())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.statusCode").value(404))
+                .andExpect(jsonPath("$.timestamp").isNotEmpty())
+                .andExpect(jsonPath("$.message[0]").value("User '100' not found"))
+                .andExpect(jsonPath("$.description").value("uri=/user/100"))
+                .andDo(print());
+    }
+
+    /**
+     * This test checks if an unexpected runtime exception is answered with a 500 status and an error body
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void shouldReturnInternalServerError() throws Exception {
+        when(this.service.getUser(100L)).thenThrow(new IllegalStateException("Unexpected \"failure\""));
+        mockMvc.perform(get("/user/{id}", 100L))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.statusCode").value(500))
+                .andExpect(jsonPath("$.message[0]").value("Unexpected \"failure\""))
                 .andDo(print());
     }
 
@@ -124,6 +178,29 @@ public class UserControllerTest {
         assertEquals(useradd.getId(), user.getId());
     }
 
+    /**
+     * This test checks if the POST request on the /user URL returns a 202 status with the ticket of the registration
+     * when the registrations are asynchronous, without saving the user inline
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void registerUser_shouldBeAcceptedWhenAsync() throws Exception {
+        LocalDate birth = LocalDate.parse("1999-12-11", DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+        User user = new User(null, "Jihane", birth, "France", "15608658", Gender.FEMALE);
+        when(registrationQueue.isEnabled()).thenReturn(true);
+        when(registrationQueue.submit(any(User.class))).thenReturn(RegistrationStatus.pending("42"));
+        mockMvc.perform(post("/user")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(user)))
+                .andDo(print())
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/user/registrations/42"))
+                .andExpect(jsonPath("$.ticket").value("42"))
+                .andExpect(jsonPath("$.state").value("PENDING"));
+        verify(service, never()).registerNewUser(any(User.class));
+    }
+
     /**
      * This test checks if the POST request on the /user URL returns a 400 status when adding a user without username
      *
@@ -142,4 +219,67 @@ public class UserControllerTest {
                 .andReturn();
         assertEquals(result.getResponse().getStatus(), HttpStatus.BAD_REQUEST.value());
     }
+
+    /**
+     * This test checks if the GET request on the /users?ids= URL answers the users in the order of the ids, the
+     * unknown ones being reported as not found
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void getUsers_shouldReportMissingIdsInOrder() throws Exception {
+        User user = new User(7L, "Jihane", LocalDate.of(1989, 11, 27), "France", "15608658", Gender.FEMALE);
+        when(service.getUsers(Arrays.asList(9L, 7L))).thenReturn(Collections.singletonMap(7L, user));
+        mockMvc.perform(get("/users").param("ids", "9,7"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(9))
+                .andExpect(jsonPath("$[0].found").value(false))
+                .andExpect(jsonPath("$[1].id").value(7))
+                .andExpect(jsonPath("$[1].found").value(true))
+                .andExpect(jsonPath("$[1].user.username").value("Jihane"));
+        verify(service, never()).getUser(anyLong());
+    }
+
+    /**
+     * This test checks if the POST request on the /users/lookup URL refuses more ids than allowed
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void lookupUsers_shouldRefuseTooManyIds() throws Exception {
+        String ids = LongStream.rangeClosed(1, 101).mapToObj(String::valueOf).collect(Collectors.joining(",", "[", "]"));
+        mockMvc.perform(post("/users/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(ids))
+                .andDo(print())
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message[0]").value("ids at most 100 users can be looked up at once"));
+        verify(service, never()).getUsers(anyList());
+    }
+
+    /**
+     * This test checks if the POST request on the /users/batch URL reports the invalid users without saving them
+     *
+     * @throws Exception exception
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void registerUsers_shouldReportEachUser() throws Exception {
+        LocalDate birth = LocalDate.parse("1980-01-15", DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+        User valid = new User(null, "Jihane", birth, "France", "15608658", Gender.FEMALE);
+        User notFrench = new User(null, "Hans", birth, "Germany", "328172", Gender.MALE);
+        when(service.registerNewUsers(anyList())).thenAnswer(i -> ((List<User>) i.getArguments()[0]).stream()
+                .map(RegistrationOutcome::created)
+                .collect(Collectors.toList()));
+        mockMvc.perform(post("/users/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Arrays.asList(valid, notFrench))))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].created").value(true))
+                .andExpect(jsonPath("$[0].user.username").value("Jihane"))
+                .andExpect(jsonPath("$[1].created").value(false))
+                .andExpect(jsonPath("$[1].index").value(1));
+    }
 }
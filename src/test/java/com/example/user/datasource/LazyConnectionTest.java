@@ -0,0 +1,54 @@
+package com.example.user.datasource;
+
+import com.example.user.services.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.sql.DataSource;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the connections taken by the read-only transactions when there is no read replica
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:lazyConnection;DB_CLOSE_DELAY=-1")
+public class LazyConnectionTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private long acquired() {
+        return meterRegistry.get("hikaricp.connections.acquire").timer().count();
+    }
+
+    /**
+     * This test checks if the read-only transactions answered without a query take no pooled connection, while the
+     * others take one
+     */
+    @Test
+    public void getUser_shouldTakeAConnectionOnlyWhenItQueries() {
+        assertTrue(dataSource instanceof LazyConnectionDataSourceProxy);
+        long before = acquired();
+        assertFalse(userService.getUser(Integer.MAX_VALUE - 1).isPresent());
+        assertTrue(userService.getUsers(Arrays.asList(-1L, (long) Integer.MAX_VALUE - 2)).isEmpty());
+        assertEquals(acquired(), before);
+
+        assertTrue(userService.getUserVersion(1L).isPresent());
+        assertEquals(acquired(), before + 1);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.user.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import javax.servlet.http.Cookie;
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests of the routing of the reads to a replica kept in sync by the replication stand-in, which only replicates when
+ * asked to here
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routingPrimary;DB_CLOSE_DELAY=-1",
+        "user.datasource.replicas.enabled=true",
+        "user.datasource.replicas.urls=jdbc:h2:mem:routingReplica;DB_CLOSE_DELAY=-1",
+        "user.datasource.replicas.max-lag=1h",
+        "user.datasource.replicas.read-your-writes=5s",
+        "user.datasource.replicas.stand-in-interval=1h"})
+@AutoConfigureMockMvc
+public class ReadWriteRoutingTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private ReplicationStandIn replicationStandIn;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private String listing(Cookie... cookies) throws Exception {
+        MockHttpServletRequestBuilder request = get("/users").param("limit", "100");
+        if (cookies.length > 0) {
+            request.cookie(cookies);
+        }
+        return mvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    /**
+     * This test checks if the reads go to the replica, which sees the registrations once replicated, except the reads
+     * of the client of a registration, which see it at once
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void reads_shouldGoToTheReplicaExceptForTheClientOfAWrite() throws Exception {
+        assertTrue(listing().contains("\"Alex\""));
+        MvcResult registration = mvc.perform(post("/user").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"Replicated\",\"birthdate\":\"1990-01-01\",\"country\":\"France\"}"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        Cookie fence = registration.getResponse().getCookie(ReadYourWrites.COOKIE);
+
+        assertFalse(listing().contains("\"Replicated\""));
+        assertTrue(listing(fence).contains("\"Replicated\""));
+        replicationStandIn.replicate();
+        assertTrue(listing().contains("\"Replicated\""));
+        assertTrue(listing(fence).contains("\"Replicated\""));
+
+        assertTrue(meterRegistry.get("users.datasource.routed").tag("target", "replica-0").counter().count() >= 3);
+        assertTrue(meterRegistry.get("users.datasource.routed").tag("target", "primary").tag("access", "read").counter().count() >= 1);
+        assertEquals(meterRegistry.get("hikaricp.connections.max").tag("pool", "replica-0").gauge().value(), 10.0);
+        assertEquals(meterRegistry.get("hikaricp.connections.max").tag("pool", "primary").gauge().value(), 10.0);
+    }
+
+    /**
+     * This test checks if a replica is skipped when it lags too much, or has not caught up with the write of the
+     * client, and if the others are taken in turn
+     */
+    @Test
+    public void choose_shouldSkipTheReplicasBehind() {
+        long now = System.currentTimeMillis();
+        Replica lagging = new Replica("replica-0", mock(DataSource.class));
+        lagging.caughtUp(now - 10_000);
+        Replica upToDate = new Replica("replica-1", mock(DataSource.class));
+        upToDate.caughtUp(now);
+        Replica starting = new Replica("replica-2", mock(DataSource.class));
+        ReadWriteRoutingDataSource router = new ReadWriteRoutingDataSource(mock(DataSource.class),
+                Arrays.asList(lagging, upToDate, starting), Duration.ofSeconds(1), new ReadYourWrites(Duration.ZERO));
+
+        assertEquals(router.choose(0), upToDate);
+        assertEquals(router.choose(0), upToDate);
+        assertEquals(router.choose(now + 60_000), null);
+        lagging.caughtUp(now);
+        assertTrue(router.choose(0) != router.choose(0));
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.user.exporter;
+
+import com.example.user.domain.Gender;
+import com.example.user.repositories.UserRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the exports of the users table
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class UserExporterTest {
+
+    @Autowired
+    private UserExporter userExporter;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    /**
+     * This test checks that a gzip NDJSON export contains one line per user
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void exportFile_shouldWriteOneGzipLinePerUser() throws Exception {
+        Path target = Files.createTempFile("users", ".ndjson.gz");
+        try {
+            ExportReport report = userExporter.exportFile(target, null, null);
+            List<String> lines;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(target)), StandardCharsets.UTF_8))) {
+                lines = reader.lines().collect(Collectors.toList());
+            }
+            assertEquals(report.getExported(), userRepository.count());
+            assertEquals(lines.size(), report.getExported());
+            assertTrue(lines.get(0).startsWith("{\"id\":1,\"username\":\"Alex\""));
+            assertTrue(report.isGzip());
+        } finally {
+            Files.delete(target);
+        }
+    }
+
+    /**
+     * This test checks that a CSV export starts with the header and applies the filters
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void export_shouldWriteFilteredCsv() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        long exported = userExporter.export(output, ExportFormat.CSV, null, Gender.FEMALE);
+        String[] lines = output.toString(StandardCharsets.UTF_8.name()).split("\n");
+        assertEquals(lines[0], UserExporter.CSV_HEADER);
+        assertEquals(lines.length, exported + 1);
+        assertTrue(lines[1].endsWith(",FEMALE"));
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.user.importer;
+
+import com.example.user.repositories.UserRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the imports of user dumps
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:importer;DB_CLOSE_DELAY=-1",
+        "user.import.chunk-lines=2",
+        "user.import.commit-size=2"})
+public class UserImporterTest {
+
+    @Autowired
+    private UserImporter userImporter;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private static String lines(String... lines) {
+        return String.join("\n", lines) + "\n";
+    }
+
+    private ImportReport importUsers(String dump, ImportFormat format, Path rejects) throws Exception {
+        return userImporter.importUsers(new BufferedReader(new StringReader(dump)), format, rejects);
+    }
+
+    /**
+     * This test checks that the invalid NDJSON records, a null one included, are written to the rejects with their
+     * line number and reason while the valid ones are imported
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void importNdjson_shouldRejectTheInvalidRecordsAndImportTheOthers() throws Exception {
+        Path rejects = Files.createTempFile("users", ".rejects");
+        try {
+            ImportReport report = importUsers(lines(
+                    "{\"username\":\"Imported1\",\"birthdate\":\"1990-01-01\",\"country\":\"France\"}",
+                    "null",
+                    "",
+                    "{\"username\":",
+                    "{\"username\":\"Imported2\",\"birthdate\":\"2020-01-01\",\"country\":\"France\"}",
+                    "{\"username\":\"Alex\",\"birthdate\":\"1991-01-01\",\"country\":\"France\"}",
+                    "{\"username\":\"Imported3\",\"birthdate\":\"1992-01-01\",\"country\":\"France\"}"), ImportFormat.NDJSON, rejects);
+            assertEquals(report.getRead(), 6L);
+            assertEquals(report.getImported(), 2L);
+            assertEquals(report.getRejected(), 4L);
+            assertTrue(userRepository.findIdByUsername("Imported1").isPresent());
+            assertTrue(userRepository.findIdByUsername("Imported3").isPresent());
+
+            List<String> rejected = Files.readAllLines(rejects);
+            rejected.sort(null);
+            assertEquals(rejected.size(), 4);
+            assertTrue(rejected.get(0).startsWith("2\tunreadable record: not a user\tnull"));
+            assertTrue(rejected.get(1).startsWith("4\tunreadable record: "));
+            assertTrue(rejected.get(2).startsWith("5\tunderage\t"));
+            assertTrue(rejected.get(3).startsWith("6\tUsername 'Alex' already exists\t"));
+        } finally {
+            Files.delete(rejects);
+        }
+    }
+
+    /**
+     * This test checks that a CSV dump is read by the columns of its header, in any order and with quoted fields
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void importCsv_shouldReadTheColumnsOfTheHeader() throws Exception {
+        Path rejects = Files.createTempFile("users", ".rejects");
+        try {
+            ImportReport report = importUsers(lines(
+                    "country,gender,username,birthdate",
+                    "France,female,\"Csv, Imported\",1990-01-01",
+                    "France,,CsvImported2,01/01/1990"), ImportFormat.CSV, rejects);
+            assertEquals(report.getImported(), 1L);
+            assertEquals(report.getRejected(), 1L);
+            assertTrue(userRepository.findIdByUsername("Csv, Imported").isPresent());
+            assertTrue(Files.readAllLines(rejects).get(0).startsWith("3\tunreadable record: "));
+        } finally {
+            Files.delete(rejects);
+        }
+    }
+
+    /**
+     * This test checks the split of the CSV fields, with quotes and escaped quotes
+     */
+    @Test
+    public void csvSplit_shouldHandleTheQuotes() {
+        assertEquals(CsvUserParser.split("a,\"b,c\",\"d\"\"e\",,"), Arrays.asList("a", "b,c", "d\"e", "", ""));
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.user.json;
+
+import com.example.user.domain.Gender;
+import com.example.user.dto.UserDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit Tests checking that the UserDto (de)serializers of UserJsonModule read and write the same JSON as the bean
+ * (de)serializers of Jackson, with the ObjectMapper configuration of Spring Boot
+ */
+@RunWith(SpringRunner.class)
+public class UserJsonModuleTest {
+    private final ObjectMapper defaultMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    private final ObjectMapper moduleMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .modulesToInstall(new UserJsonModule())
+            .build();
+
+    private static UserDto userDto(Long id, String username, LocalDate birthdate, String phone, Gender gender) {
+        UserDto userDto = new UserDto();
+        userDto.setId(id);
+        userDto.setUsername(username);
+        userDto.setBirthdate(birthdate);
+        userDto.setCountry("France");
+        userDto.setPhone(phone);
+        userDto.setGender(gender);
+        return userDto;
+    }
+
+    /**
+     * This test checks if the written bytes are the same as the ones of the bean serializer, including the nulls, the
+     * escaped characters and the years written with a sign
+     */
+    @Test
+    public void serialize_shouldWriteTheSameBytes() throws Exception {
+        List<UserDto> users = Arrays.asList(
+                userDto(1L, "Jihane", LocalDate.of(1989, 11, 27), "0612345678", Gender.FEMALE),
+                new UserDto(),
+                userDto(Long.MAX_VALUE, "\"Zoë\"\t\\ 日本 😀\u0001", LocalDate.of(5, 1, 9), null, Gender.MALE),
+                userDto(-1L, "", LocalDate.of(10000, 12, 31), "", null),
+                userDto(0L, "x", LocalDate.of(-1, 1, 1), null, null));
+        for (UserDto user : users) {
+            assertArrayEquals(moduleMapper.writeValueAsBytes(user), defaultMapper.writeValueAsBytes(user));
+            assertEquals(moduleMapper.writerWithDefaultPrettyPrinter().writeValueAsString(user),
+                    defaultMapper.writerWithDefaultPrettyPrinter().writeValueAsString(user));
+        }
+        assertArrayEquals(moduleMapper.writeValueAsBytes(users), defaultMapper.writeValueAsBytes(users));
+    }
+
+    /**
+     * This test checks if the bean serializer is kept when the ObjectMapper does not write UserDto as by default
+     */
+    @Test
+    public void serialize_shouldKeepTheBeanSerializerWhenConfiguredOtherwise() throws Exception {
+        UserDto user = userDto(1L, "Jihane", LocalDate.of(1989, 11, 27), null, Gender.FEMALE);
+        ObjectMapper timestamps = Jackson2ObjectMapperBuilder.json().modulesToInstall(new UserJsonModule()).build();
+        assertEquals(timestamps.writeValueAsString(user), Jackson2ObjectMapperBuilder.json().build().writeValueAsString(user));
+    }
+
+    /**
+     * This test checks if the read users are the same as the ones of the bean deserializer, for the usual bodies and for
+     * the values needing a coercion
+     */
+    @Test
+    public void deserialize_shouldReadTheSameUsers() throws Exception {
+        List<String> bodies = Arrays.asList(
+                "{\"id\":1,\"username\":\"Jihane\",\"birthdate\":\"1989-11-27\",\"country\":\"France\",\"phone\":\"0612345678\",\"gender\":\"FEMALE\"}",
+                "{\"gender\":\"MALE\",\"country\":\"Fr\\u00e0nce\",\"username\":\"Jihane\",\"birthdate\":\"1989-11-27\"}",
+                "{\"id\":null,\"username\":null,\"birthdate\":null,\"country\":null,\"phone\":null,\"gender\":null}",
+                "{\"id\":\"12\",\"username\":12,\"birthdate\":[1989,11,27],\"phone\":true,\"gender\":1}",
+                "{\"username\":\"Jihane\",\"unknown\":{\"nested\":[1,2]},\"birthdate\":\"+10000-01-01\"}",
+                "{}");
+        for (String body : bodies) {
+            assertEquals(moduleMapper.readValue(body, UserDto.class), defaultMapper.readValue(body, UserDto.class));
+        }
+        String array = "[" + String.join(",", bodies) + "]";
+        assertEquals(Arrays.asList(moduleMapper.readValue(array, UserDto[].class)),
+                Arrays.asList(defaultMapper.readValue(array, UserDto[].class)));
+    }
+
+    /**
+     * This test checks if an invalid birthdate or gender is rejected as by the bean deserializer
+     */
+    @Test
+    public void deserialize_shouldRejectInvalidValues() {
+        for (String body : Arrays.asList("{\"birthdate\":\"1989-02-30\"}", "{\"birthdate\":\"27/11/1989\"}", "{\"gender\":\"female\"}")) {
+            assertThrows(InvalidFormatException.class, () -> defaultMapper.readValue(body, UserDto.class));
+            assertThrows(InvalidFormatException.class, () -> moduleMapper.readValue(body, UserDto.class));
+        }
+    }
+}
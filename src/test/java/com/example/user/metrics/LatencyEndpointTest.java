@@ -0,0 +1,45 @@
+package com.example.user.metrics;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Integration test of the latency histograms
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class LatencyEndpointTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    /**
+     * This test checks if a found and a missing user are recorded in the web, service, persistence and exception-handler layers
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void shouldRecordEveryLayer() throws Exception {
+        mvc.perform(get("/user/{id}", 2L)).andExpect(status().isOk());
+        mvc.perform(get("/user/{id}", 9999L)).andExpect(status().isNotFound());
+
+        mvc.perform(get("/actuator/latency"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].method", hasItem("UserController.getUser")))
+                .andExpect(jsonPath("$[*].method", hasItem("UserService.getUser")))
+                .andExpect(jsonPath("$[*].method", hasItem("UserRepository.findById")))
+                .andExpect(jsonPath("$[*].method", hasItem("ControllerExceptionHandler.resourceNotFoundException")))
+                .andExpect(jsonPath("$[*].layer", hasItem("persistence")));
+    }
+}
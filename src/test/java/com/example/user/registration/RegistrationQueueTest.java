@@ -0,0 +1,194 @@
+package com.example.user.registration;
+
+import com.example.user.domain.Gender;
+import com.example.user.domain.User;
+import com.example.user.dto.RegistrationStatus;
+import com.example.user.dto.UserChange;
+import com.example.user.service.UserServiceFixture;
+import com.example.user.services.UserChangedEvent;
+import com.example.user.services.UserService;
+import com.example.user.store.MappedUserRepository;
+import com.example.user.store.MappedUserStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.lang.NonNull;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests of the write-behind registration queue and of its journal, over the memory-mapped user store
+ */
+@RunWith(SpringRunner.class)
+public class RegistrationQueueTest {
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private Path storeFile;
+    private Path journalFile;
+    private MappedUserStore store;
+    private UserService userService;
+    private RegistrationQueue queue;
+
+    @Before
+    public void setUp() throws Exception {
+        storeFile = Files.createTempFile("users", ".store");
+        journalFile = Files.createTempFile("registrations", ".journal");
+        store = new MappedUserStore(storeFile, 100, false);
+        userService = userService(new TransactionTemplate(mock(PlatformTransactionManager.class)), mock(ApplicationEventPublisher.class));
+    }
+
+    private UserService userService(TransactionTemplate transactionTemplate, ApplicationEventPublisher eventPublisher) {
+        return UserServiceFixture.over(new MappedUserRepository(store))
+                .transactionTemplate(transactionTemplate)
+                .eventPublisher(eventPublisher)
+                .build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (queue != null) {
+            queue.destroy();
+        }
+        store.close();
+        Files.delete(storeFile);
+        Files.delete(journalFile);
+    }
+
+    private void start() throws Exception {
+        queue = new RegistrationQueue(userService, objectMapper, "async", 10, 5, journalFile.toString(), 0,
+                Duration.ofMinutes(1), 100);
+        queue.afterPropertiesSet();
+    }
+
+    private RegistrationStatus await(String ticket) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            RegistrationStatus status = queue.getStatus(ticket).get();
+            if (status.getState() != RegistrationStatus.State.PENDING) {
+                return status;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("The registration " + ticket + " is still pending");
+    }
+
+    /**
+     * This test checks if the queued users are registered by the writer, a duplicate username being reported as rejected
+     */
+    @Test
+    public void submit_shouldRegisterOrRejectUsers() throws Exception {
+        start();
+        RegistrationStatus accepted = queue.submit(new User(null, "Jihane", LocalDate.of(1989, 11, 27), "France", "0612345678", Gender.FEMALE));
+        assertEquals(accepted.getState(), RegistrationStatus.State.PENDING);
+
+        RegistrationStatus created = await(accepted.getTicket());
+        assertEquals(created.getState(), RegistrationStatus.State.CREATED);
+        assertEquals(userService.getUser(created.getUserId()).get().getUsername(), "Jihane");
+
+        RegistrationStatus duplicate = await(queue.submit(new User(null, "Jihane", LocalDate.of(1990, 1, 1), "France", null, null)).getTicket());
+        assertEquals(duplicate.getState(), RegistrationStatus.State.REJECTED);
+        assertTrue(duplicate.getError().contains("already exists"));
+        assertEquals(store.count(), 1L);
+    }
+
+    /**
+     * This test checks if a write failing after some chunks are committed is retried for the other registrations
+     * only: the committed ones are neither registered again nor reported as duplicates
+     */
+    @Test
+    public void submit_shouldRetryOnlyTheRegistrationsNotWritten() throws Exception {
+        AtomicInteger transactions = new AtomicInteger();
+        List<UserChangedEvent> events = new CopyOnWriteArrayList<>();
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch othersSubmitted = new CountDownLatch(1);
+        userService = userService(new TransactionTemplate(mock(PlatformTransactionManager.class)) {
+            @Override
+            public <T> T execute(@NonNull TransactionCallback<T> action) {
+                int transaction = transactions.incrementAndGet();
+                if (transaction == 1) {
+                    // holds the writer on the first registration, so that the next ones are written as one batch
+                    firstStarted.countDown();
+                    try {
+                        othersSubmitted.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                } else if (transaction == 3) {
+                    throw new CannotCreateTransactionException("The database is not reachable");
+                }
+                return super.execute(action);
+            }
+        }, event -> events.add((UserChangedEvent) event));
+        ReflectionTestUtils.setField(userService, "chunkSize", 2);
+        start();
+        List<String> tickets = new ArrayList<>();
+        tickets.add(queue.submit(new User(null, "First", LocalDate.of(1990, 1, 1), "France", null, null)).getTicket());
+        assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+        // a batch of 2 chunks: the first one is committed, the second one fails once
+        for (int i = 0; i < 4; i++) {
+            tickets.add(queue.submit(new User(null, "User" + i, LocalDate.of(1990, 1, 1), "France", null, null)).getTicket());
+        }
+        othersSubmitted.countDown();
+        for (String ticket : tickets) {
+            assertEquals(await(ticket).getState(), RegistrationStatus.State.CREATED);
+        }
+        assertEquals(store.count(), 5L);
+        assertEquals(transactions.get(), 4);
+        assertTrue(events.stream().allMatch(event -> event.getType() == UserChange.Type.CREATED));
+        assertEquals(events.stream().mapToInt(event -> event.getUsers().size()).sum(), 5);
+    }
+
+    /**
+     * This test checks if the registrations journaled but not done before a crash are registered at the next start,
+     * while the done ones keep their status
+     */
+    @Test
+    public void start_shouldReplayThePendingRegistrations() throws Exception {
+        try (RegistrationJournal journal = new RegistrationJournal(journalFile)) {
+            journal.accepted("done", objectMapper.writeValueAsString(new User(null, "Marie", LocalDate.of(1980, 1, 1), "France", null, null)));
+            journal.done(Collections.singletonList(new String[]{"done",
+                    objectMapper.writeValueAsString(RegistrationStatus.created("done", 7L))}));
+            journal.accepted("lost", objectMapper.writeValueAsString(new User(null, "Jihane", LocalDate.of(1989, 11, 27), "France", null, Gender.FEMALE)));
+        }
+        // a line torn by the crash
+        Files.write(journalFile, "A\tto".getBytes(), StandardOpenOption.APPEND);
+
+        start();
+        assertEquals(queue.getStatus("done").get().getUserId(), 7L);
+        RegistrationStatus replayed = await("lost");
+        assertEquals(replayed.getState(), RegistrationStatus.State.CREATED);
+        assertEquals(userService.getUser(replayed.getUserId()).get().getUsername(), "Jihane");
+
+        queue.destroy();
+        queue = null;
+        try (RegistrationJournal journal = new RegistrationJournal(journalFile)) {
+            Map<String, String> pending = journal.replay((ticket, json) -> {
+            });
+            assertTrue(pending.isEmpty());
+        }
+    }
+}
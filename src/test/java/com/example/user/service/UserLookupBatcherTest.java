@@ -0,0 +1,145 @@
+package com.example.user.service;
+
+import com.example.user.domain.Gender;
+import com.example.user.domain.User;
+import com.example.user.repositories.UserRepository;
+import com.example.user.services.UserLookupBatcher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit Tests for the micro-batching of the lookups of users by id
+ */
+@RunWith(SpringRunner.class)
+public class UserLookupBatcherTest {
+    private UserRepository userRepository;
+    private SimpleMeterRegistry meterRegistry;
+
+    @Before
+    public void setUp() {
+        userRepository = mock(UserRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        // the even ids are registered
+        when(userRepository.findAllById(ArgumentMatchers.<Iterable<Long>>any())).thenAnswer(i -> StreamSupport
+                .stream(i.<Iterable<Long>>getArgument(0).spliterator(), false)
+                .filter(id -> id % 2 == 0)
+                .map(UserLookupBatcherTest::user)
+                .collect(Collectors.toList()));
+    }
+
+    private static User user(long id) {
+        return new User(id, "user" + id, LocalDate.of(1980, 1, 1), "France", null, Gender.MALE);
+    }
+
+    private List<Optional<User>> lookUpConcurrently(UserLookupBatcher batcher, long... ids) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(ids.length);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Optional<User>>> futures = new ArrayList<>();
+            for (long id : ids) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return batcher.findById(id);
+                }));
+            }
+            start.countDown();
+            List<Optional<User>> users = new ArrayList<>();
+            for (Future<Optional<User>> future : futures) {
+                users.add(future.get());
+            }
+            return users;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * This test checks if the concurrent lookups of a window are loaded with one query, each caller getting its user
+     */
+    @Test
+    public void findById_shouldLoadConcurrentLookupsWithOneQuery() throws Exception {
+        UserLookupBatcher batcher = new UserLookupBatcher(userRepository, true, Duration.ofMillis(500), 100);
+        batcher.bindTo(meterRegistry);
+        List<Optional<User>> users = lookUpConcurrently(batcher, 1, 2, 3, 4, 2, 2);
+
+        assertEquals(users.get(0).isPresent(), false);
+        assertEquals(users.get(1).get().getId(), 2L);
+        assertEquals(users.get(2).isPresent(), false);
+        assertEquals(users.get(3).get().getId(), 4L);
+        assertEquals(users.get(5).get().getUsername(), "user2");
+        verify(userRepository, times(1)).findAllById(ArgumentMatchers.<Iterable<Long>>any());
+        verify(userRepository, never()).findById(anyLong());
+        assertEquals(meterRegistry.get("users.lookup.batch.size").summary().totalAmount(), 4.0);
+        assertEquals(meterRegistry.get("users.lookup.deduplicated").counter().count(), 2.0);
+        assertEquals(meterRegistry.get("users.lookup.batch.wait").timer().count(), 4L);
+    }
+
+    /**
+     * This test checks if a full batch is queried without waiting for the end of the window
+     */
+    @Test
+    public void findById_shouldQueryFullBatchAtOnce() throws Exception {
+        UserLookupBatcher batcher = new UserLookupBatcher(userRepository, true, Duration.ofSeconds(30), 2);
+        batcher.bindTo(meterRegistry);
+        long start = System.nanoTime();
+        List<Optional<User>> users = lookUpConcurrently(batcher, 6, 8);
+
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(10).toNanos());
+        assertEquals(users.get(0).get().getId(), 6L);
+        assertEquals(users.get(1).get().getId(), 8L);
+    }
+
+    /**
+     * This test checks if the failure of a batch is thrown to all its callers, and does not stick to the ids
+     */
+    @Test
+    public void findById_shouldThrowTheFailureOfTheQuery() {
+        UserLookupBatcher batcher = new UserLookupBatcher(userRepository, true, Duration.ofMillis(1), 100);
+        batcher.bindTo(meterRegistry);
+        when(userRepository.findById(anyLong())).thenThrow(new IllegalStateException("database down"));
+        assertThrows(IllegalStateException.class, () -> batcher.findById(2L));
+
+        doReturn(Optional.of(user(2L))).when(userRepository).findById(anyLong());
+        assertEquals(batcher.findById(2L).get().getId(), 2L);
+    }
+
+    /**
+     * This test checks if each lookup is a query of its own when the batching is disabled
+     */
+    @Test
+    public void findById_shouldQueryDirectlyWhenDisabled() {
+        UserLookupBatcher batcher = new UserLookupBatcher(userRepository, false, Duration.ofSeconds(30), 100);
+        batcher.bindTo(meterRegistry);
+        when(userRepository.findById(2L)).thenReturn(Optional.of(user(2L)));
+        assertEquals(batcher.findById(2L).get().getId(), 2L);
+        verify(userRepository, never()).findAllById(ArgumentMatchers.<Iterable<Long>>any());
+    }
+}
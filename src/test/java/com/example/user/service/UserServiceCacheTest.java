@@ -0,0 +1,103 @@
+package com.example.user.service;
+
+import com.example.user.domain.Gender;
+import com.example.user.domain.User;
+import com.example.user.repositories.UserRepository;
+import com.example.user.services.UserService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests of the read-through cache of the service
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "user.id-filter.enabled=false")
+public class UserServiceCacheTest {
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @MockBean
+    private UserRepository userRepository;
+
+    private User user;
+
+    @Before
+    public void setUp() {
+        cacheManager.getCache(UserService.USERS_CACHE).clear();
+        user = new User(42L, "jihane", LocalDate.of(1964, 12, 11), "France", "328172", Gender.FEMALE);
+    }
+
+    /**
+     * This test checks if a user is loaded only once from the database
+     */
+    @Test
+    public void getUser_shouldHitTheDatabaseOnce() {
+        when(userRepository.findById(42L)).thenReturn(Optional.of(user));
+        assertEquals(userService.getUser(42L).get().getUsername(), "jihane");
+        assertEquals(userService.getUser(42L).get().getUsername(), "jihane");
+        verify(userRepository, times(1)).findById(42L);
+    }
+
+    /**
+     * This test checks if an unknown id is not cached
+     */
+    @Test
+    public void getUser_shouldNotCacheUnknownIds() {
+        when(userRepository.findById(43L)).thenReturn(Optional.empty());
+        assertFalse(userService.getUser(43L).isPresent());
+        assertFalse(userService.getUser(43L).isPresent());
+        verify(userRepository, times(2)).findById(43L);
+    }
+
+    /**
+     * This test checks if the registration of a user replaces its cached version
+     */
+    @Test
+    public void registerNewUser_shouldRefreshTheCache() {
+        when(userRepository.findById(42L)).thenReturn(Optional.of(user));
+        userService.getUser(42L);
+        User renamed = new User(42L, "jihene", user.getBirthdate(), "France", "328172", Gender.FEMALE);
+        when(userRepository.save(any(User.class))).thenReturn(renamed);
+        userService.registerNewUser(renamed);
+        assertEquals(userService.getUser(42L).get().getUsername(), "jihene");
+        verify(userRepository, times(1)).findById(42L);
+    }
+
+    /**
+     * This test checks if the callers get their own copy of a cached user, which they can modify without changing the
+     * cached one
+     */
+    @Test
+    public void getUser_shouldReturnACopyOfTheCachedUser() {
+        when(userRepository.findById(42L)).thenReturn(Optional.of(user));
+        User first = userService.getUser(42L).get();
+        first.setUsername("mallory");
+        user.setUsername("mallory");
+        User second = userService.getUser(42L).get();
+        assertNotSame(second, first);
+        assertEquals(second.getUsername(), "jihane");
+        second.setCountry("Spain");
+        assertEquals(userService.getUser(42L).get().getCountry(), "France");
+        verify(userRepository, times(1)).findById(42L);
+    }
+}
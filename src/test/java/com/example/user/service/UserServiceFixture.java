@@ -0,0 +1,94 @@
+package com.example.user.service;
+
+import com.example.user.repositories.UserRepository;
+import com.example.user.services.UserIdFilter;
+import com.example.user.services.UserLookupBatcher;
+import com.example.user.services.UserService;
+import com.example.user.services.UsernameFilter;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Builds a UserService over a given repository, without a Spring context: the transactions, the events and the entity
+ * manager are mocked, the lookups are not batched, and the username and id filters are built from the repository
+ * unless given.
+ */
+public final class UserServiceFixture {
+    private final UserRepository repository;
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+    private ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private UsernameFilter usernameFilter;
+    private UserIdFilter userIdFilter;
+
+    private UserServiceFixture(UserRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * This method starts the fixture of a service over the given repository
+     *
+     * @param repository UserRepository
+     * @return UserServiceFixture
+     */
+    public static UserServiceFixture over(UserRepository repository) {
+        return new UserServiceFixture(repository);
+    }
+
+    public UserServiceFixture transactionTemplate(TransactionTemplate transactionTemplate) {
+        this.transactionTemplate = transactionTemplate;
+        return this;
+    }
+
+    public UserServiceFixture eventPublisher(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+        return this;
+    }
+
+    /**
+     * This method gives the username filter of the service, which is used as is (it is not rebuilt)
+     *
+     * @param usernameFilter UsernameFilter
+     * @return UserServiceFixture
+     */
+    public UserServiceFixture usernameFilter(UsernameFilter usernameFilter) {
+        this.usernameFilter = usernameFilter;
+        return this;
+    }
+
+    /**
+     * This method gives the id filter of the service, which is used as is (it is not rebuilt)
+     *
+     * @param userIdFilter UserIdFilter
+     * @return UserServiceFixture
+     */
+    public UserServiceFixture userIdFilter(UserIdFilter userIdFilter) {
+        this.userIdFilter = userIdFilter;
+        return this;
+    }
+
+    /**
+     * This method builds the service, with filters rebuilt from the repository when they were not given
+     *
+     * @return UserService
+     */
+    public UserService build() {
+        UsernameFilter usernames = usernameFilter;
+        if (usernames == null) {
+            usernames = new UsernameFilter(repository, 100, 0.01);
+            usernames.rebuild();
+        }
+        UserIdFilter ids = userIdFilter;
+        if (ids == null) {
+            ids = new UserIdFilter(repository, true, 1000);
+            ids.rebuild();
+        }
+        return new UserService(repository, transactionTemplate, usernames, ids,
+                new UserLookupBatcher(repository, false, Duration.ZERO, 1), mock(EntityManager.class), eventPublisher);
+    }
+}
@@ -3,23 +3,38 @@ package com.example.user.service;
 import com.example.user.domain.Gender;
 import com.example.user.domain.User;
 import com.example.user.repositories.UserRepository;
+import com.example.user.services.RegistrationOutcome;
+import com.example.user.services.UserIdFilter;
 import com.example.user.services.UserService;
+import com.example.user.services.UsernameFilter;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -30,6 +45,10 @@ public class UserServiceTest {
     private UserService userService;
 
     private UserRepository userRepository;
+
+    private UsernameFilter usernameFilter;
+
+    private UserIdFilter userIdFilter;
     @Rule
     public ExpectedException expectedException = ExpectedException.none();
 
@@ -38,7 +57,12 @@ public class UserServiceTest {
     @Before
     public void setUp() {
         userRepository = mock(UserRepository.class);
-        userService = new UserService(userRepository);
+        usernameFilter = new UsernameFilter(userRepository, 1000, 0.01);
+        userIdFilter = new UserIdFilter(userRepository, true, 1_000_000);
+        userService = UserServiceFixture.over(userRepository)
+                .usernameFilter(usernameFilter)
+                .userIdFilter(userIdFilter)
+                .build();
         String birthdateValue = "1964-12-11";
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
         LocalDate birth = LocalDate.parse(birthdateValue, formatter);
@@ -78,4 +102,92 @@ public class UserServiceTest {
         assertEquals(response.get().getId(), id);
     }
 
+    /**
+     * This test checks if the service registers a batch of users and only rejects the duplicated usernames
+     */
+    @Test
+    public void saveAll_shouldRejectOnlyDuplicatedUsernames() {
+        User alice = new User(10L, "alice", user.getBirthdate(), "France", null, Gender.FEMALE);
+        User otherAlice = new User(null, "alice", user.getBirthdate(), "France", null, Gender.FEMALE);
+        when(userRepository.findExistingUsernames(anyCollection())).thenReturn(Collections.singletonList("jihane"));
+        when(userRepository.saveAll(anyList())).thenAnswer(i -> i.getArguments()[0]);
+        List<RegistrationOutcome> response = userService.registerNewUsers(Arrays.asList(user, alice, otherAlice));
+        assertEquals(response.size(), 3);
+        assertEquals(response.get(0).isCreated(), false);
+        assertEquals(response.get(1).isCreated(), true);
+        assertEquals(response.get(1).getUser().getUsername(), "alice");
+        assertEquals(response.get(1).getUser().getId(), null);
+        assertEquals(response.get(2).isCreated(), false);
+    }
+
+    /**
+     * This test checks if the service rejects a registered username without trying to insert it
+     */
+    @Test
+    public void save_shouldRejectRegisteredUsernameBeforeInsert() {
+        when(userRepository.streamAllUsernames()).thenReturn(Stream.of("jihane"));
+        usernameFilter.rebuild();
+        when(userRepository.findIdByUsername("jihane")).thenReturn(Optional.of(7L));
+        expectedException.expect(DataIntegrityViolationException.class);
+        expectedException.expectMessage("Username 'jihane' already exists");
+        try {
+            userService.registerNewUser(user);
+        } finally {
+            verify(userRepository, never()).save(any(User.class));
+        }
+    }
+
+    /**
+     * This test checks if the service does not look up a username that the filter has never seen
+     */
+    @Test
+    public void save_shouldSkipLookupOfNewUsername() {
+        when(userRepository.streamAllUsernames()).thenReturn(Stream.of("alice"));
+        usernameFilter.rebuild();
+        when(userRepository.save(any(User.class))).thenAnswer(i -> i.getArguments()[0]);
+        userService.registerNewUser(user);
+        verify(userRepository, never()).findIdByUsername("jihane");
+        assertEquals(usernameFilter.mightContain("jihane"), true);
+    }
+
+    /**
+     * This test checks if the service answers an id that the id filter knows to be absent without querying the
+     * database, and if the registered ids are added to the filter
+     */
+    @Test
+    public void getUser_shouldSkipLookupOfAbsentId() {
+        when(userRepository.streamAllIds()).thenReturn(Stream.of(1L, 70_000L));
+        userIdFilter.rebuild();
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(user));
+        assertEquals(userService.getUser(2L).isPresent(), false);
+        assertEquals(userService.getUser(-1L).isPresent(), false);
+        verify(userRepository, never()).findById(anyLong());
+        assertEquals(userService.getUser(70_000L).isPresent(), true);
+
+        when(userRepository.save(any(User.class))).thenReturn(new User(2L, "alice", user.getBirthdate(), "France", null, null));
+        userService.registerNewUser(new User(null, "alice", user.getBirthdate(), "France", null, null));
+        assertEquals(userService.getUser(2L).isPresent(), true);
+        assertEquals(userIdFilter.sizeInBytes(), 2 * 8192L);
+    }
+
+    /**
+     * This test checks if the multi-get loads the users with a single query, without the ids known to be absent
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void getUsers_shouldQueryOnlyTheIdsThatMightExist() {
+        when(userRepository.streamAllIds()).thenReturn(Stream.of(1L, 3L));
+        userIdFilter.rebuild();
+        User other = new User(3L, "alice", user.getBirthdate(), "France", null, null);
+        when(userRepository.findAllById(ArgumentMatchers.<Iterable<Long>>any())).thenReturn(Arrays.asList(other, user));
+
+        Map<Long, User> users = userService.getUsers(Arrays.asList(3L, 2L, 1L, 3L));
+        assertEquals(users.get(1L), user);
+        assertEquals(users.get(3L), other);
+        assertEquals(users.size(), 2);
+        verify(userRepository).findAllById(new HashSet<>(Arrays.asList(1L, 3L)));
+
+        assertEquals(userService.getUsers(Collections.singletonList(2L)).isEmpty(), true);
+        verify(userRepository, times(1)).findAllById(ArgumentMatchers.<Iterable<Long>>any());
+    }
 }
@@ -0,0 +1,54 @@
+package com.example.user.service;
+
+import com.example.user.repositories.UserRepository;
+import com.example.user.services.UsernameFilter;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit Tests for the username Bloom filter
+ */
+@RunWith(SpringRunner.class)
+public class UsernameFilterTest {
+    private UsernameFilter usernameFilter;
+
+    @Before
+    public void setUp() {
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.streamAllUsernames()).thenReturn(IntStream.range(0, 1000).mapToObj(i -> "user" + i));
+        usernameFilter = new UsernameFilter(userRepository, 1000, 0.01);
+    }
+
+    /**
+     * This test checks if every username is a probable duplicate until the filter is loaded
+     */
+    @Test
+    public void shouldContainEverythingBeforeRebuild() {
+        assertTrue(usernameFilter.mightContain("unknown"));
+    }
+
+    /**
+     * This test checks if the filter never misses a registered username and rarely reports an unknown one
+     */
+    @Test
+    public void shouldKnowRegisteredUsernames() {
+        usernameFilter.rebuild();
+        usernameFilter.put("jihane");
+        assertTrue(usernameFilter.mightContain("jihane"));
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(usernameFilter.mightContain("user" + i));
+        }
+        long falsePositives = IntStream.range(0, 10000).filter(i -> usernameFilter.mightContain("other" + i)).count();
+        assertTrue(falsePositives < 300, "too many false positives: " + falsePositives);
+        assertTrue(usernameFilter.expectedFalsePositiveRate() < 0.03);
+        assertTrue(usernameFilter.sizeInBytes() <= 2000);
+    }
+}
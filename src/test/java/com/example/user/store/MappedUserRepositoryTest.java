@@ -0,0 +1,136 @@
+package com.example.user.store;
+
+import com.example.user.domain.Gender;
+import com.example.user.domain.User;
+import com.example.user.dto.UserSearchCriteria;
+import com.example.user.service.UserServiceFixture;
+import com.example.user.services.RegistrationOutcome;
+import com.example.user.services.UserService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the UserService working on the memory-mapped user store
+ */
+@RunWith(SpringRunner.class)
+public class MappedUserRepositoryTest {
+    private Path file;
+    private MappedUserStore store;
+    private UserService userService;
+
+    @Before
+    public void setUp() throws Exception {
+        file = Files.createTempFile("users", ".store");
+        open();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.close();
+        Files.delete(file);
+    }
+
+    private void open() throws Exception {
+        store = new MappedUserStore(file, 100, false);
+        userService = UserServiceFixture.over(new MappedUserRepository(store)).build();
+    }
+
+    /**
+     * This test checks if the users registered through the service are read back, with generated ids, unique usernames
+     * and a version incremented by the updates
+     */
+    @Test
+    public void registerNewUser_shouldStoreAndUpdateUsers() {
+        User jihane = userService.registerNewUser(new User(null, "Jihane", LocalDate.of(1989, 11, 27), "France", "+33 6 12 34 56 78", Gender.FEMALE));
+        assertEquals(jihane.getId(), 1L);
+        assertEquals(userService.getUser(1L).get(), jihane);
+        assertEquals(userService.getUser(1L).get().getNormalizedPhone(), "+33612345678");
+        assertThrows(DataIntegrityViolationException.class,
+                () -> userService.registerNewUser(new User(null, "Jihane", LocalDate.of(1990, 1, 1), "France", null, null)));
+
+        userService.registerNewUser(new User(1L, "Jihene", LocalDate.of(1989, 11, 27), "France", "0612345678", Gender.FEMALE));
+        assertEquals(userService.getUserVersion(1L).get(), 1L);
+        assertEquals(userService.getUser(1L).get().getUsername(), "Jihene");
+        assertTrue(store.findIdByUsername("Jihene").isPresent());
+        assertFalse(store.findIdByUsername("Jihane").isPresent());
+    }
+
+    /**
+     * This test checks if the ids 0 and below, never generated, find no user and cannot replace the first one
+     */
+    @Test
+    public void registerNewUser_shouldNotResolveIdZeroToTheFirstUser() {
+        userService.registerNewUser(new User(null, "Jihane", LocalDate.of(1989, 11, 27), "France", null, Gender.FEMALE));
+        assertFalse(store.findById(0L).isPresent());
+        assertFalse(store.findVersionById(0L).isPresent());
+        assertFalse(store.findById(-1L).isPresent());
+
+        User mallory = userService.registerNewUser(new User(0L, "Mallory", LocalDate.of(1990, 1, 1), "France", null, null));
+        assertEquals(mallory.getId(), 2L);
+        assertEquals(userService.getUser(1L).get().getUsername(), "Jihane");
+
+        LongIntHashMap slots = new LongIntHashMap(16);
+        slots.put(1L, 0);
+        assertEquals(slots.get(0L), -1);
+    }
+
+    /**
+     * This test checks if a batch registration rejects the taken usernames only, and if the users can be listed and
+     * searched
+     */
+    @Test
+    public void registerNewUsers_shouldRejectTakenUsernamesOnly() {
+        userService.registerNewUser(new User(null, "Nour", LocalDate.of(1966, 9, 11), "FRANCE", "98667182", Gender.FEMALE));
+        List<RegistrationOutcome> outcomes = userService.registerNewUsers(Arrays.asList(
+                new User(null, "Alex", LocalDate.of(2000, 10, 12), "FRANCE", null, Gender.MALE),
+                new User(null, "Nour", LocalDate.of(1970, 1, 1), "FRANCE", null, Gender.FEMALE),
+                new User(null, "Lisa", LocalDate.of(1976, 10, 15), "France", "072662623", Gender.FEMALE)));
+        assertTrue(outcomes.get(0).isCreated());
+        assertFalse(outcomes.get(1).isCreated());
+        assertTrue(outcomes.get(2).isCreated());
+
+        assertEquals(userService.listUsers(0, 10, "FRANCE", Gender.FEMALE).size(), 2);
+        assertEquals(userService.listUsers(0, 10, "france", Gender.FEMALE).size(), 2);
+        assertEquals(userService.listUsers(1, 10, null, null).get(0).getUsername(), "Alex");
+        UserSearchCriteria criteria = new UserSearchCriteria();
+        criteria.setBornAfter(LocalDate.of(1970, 1, 1));
+        criteria.setPhone("07 26 62 62 3");
+        assertEquals(userService.searchUsers(criteria, 0, 10).get(0).getUsername(), "Lisa");
+        criteria.setCountry("fRANCE");
+        assertEquals(userService.searchUsers(criteria, 0, 10).get(0).getCountry(), "FRANCE");
+    }
+
+    /**
+     * This test checks if a reopened store has its users and indexes back
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void reopen_shouldRestoreTheUsersAndIndexes() throws Exception {
+        userService.registerNewUser(new User(null, "Paul", LocalDate.of(1999, 11, 12), "FRANCE", "727291910", Gender.MALE));
+        store.close();
+        open();
+
+        User paul = store.findById(1L).get();
+        assertEquals(paul.getUsername(), "Paul");
+        assertEquals(paul.getBirthdate(), LocalDate.of(1999, 11, 12));
+        assertThrows(DataIntegrityViolationException.class,
+                () -> userService.registerNewUser(new User(null, "Paul", LocalDate.of(1990, 1, 1), "FRANCE", null, null)));
+        assertEquals(userService.registerNewUser(new User(null, "Jules", LocalDate.of(2001, 5, 2), "FRANCE", null, null)).getId(), 2L);
+    }
+}
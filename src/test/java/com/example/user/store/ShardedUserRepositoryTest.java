@@ -0,0 +1,199 @@
+package com.example.user.store;
+
+import com.example.user.domain.Gender;
+import com.example.user.domain.User;
+import com.example.user.dto.UserSearchCriteria;
+import com.example.user.service.UserServiceFixture;
+import com.example.user.services.RegistrationOutcome;
+import com.example.user.services.UserService;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the UserService working on users sharded across three in-memory H2 databases
+ */
+@RunWith(SpringRunner.class)
+public class ShardedUserRepositoryTest {
+    private List<DataSource> dataSources;
+    private ShardedUserRepository repository;
+    private UserService userService;
+
+    @Before
+    public void setUp() {
+        String name = UUID.randomUUID().toString();
+        dataSources = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            JdbcDataSource dataSource = new JdbcDataSource();
+            dataSource.setURL("jdbc:h2:mem:" + name + "-shard-" + i + ";DB_CLOSE_DELAY=-1");
+            dataSources.add(dataSource);
+        }
+        repository = new ShardedUserRepository(dataSources);
+        userService = UserServiceFixture.over(repository).build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        repository.close();
+        for (DataSource dataSource : dataSources) {
+            try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+                statement.execute("shutdown");
+            }
+        }
+    }
+
+    private static User user(String username, int year, String country, Gender gender) {
+        return new User(null, username, LocalDate.of(year, 1, 1), country, null, gender);
+    }
+
+    private String usernameOfPartition(int partition) {
+        for (int i = 0; ; i++) {
+            if (repository.partitionOf("user" + i) == partition) {
+                return "user" + i;
+            }
+        }
+    }
+
+    /**
+     * This test checks if the users are stored in the shard of their username, encoded in their id, and read back
+     */
+    @Test
+    public void registerNewUser_shouldRouteUsersToTheShardOfTheirUsername() {
+        Set<Integer> shards = new HashSet<>();
+        for (int i = 0; i < 30; i++) {
+            User user = userService.registerNewUser(user("user" + i, 1980 + i, "FRANCE", Gender.MALE));
+            assertEquals(ShardedUserRepository.shardOf(user.getId()), repository.partitionOf(user.getUsername()));
+            assertEquals(userService.getUser(user.getId()).get(), user);
+            assertEquals(repository.findIdByUsername(user.getUsername()).get(), user.getId());
+            shards.add(ShardedUserRepository.shardOf(user.getId()));
+        }
+        assertEquals(shards.size(), 3);
+        assertEquals(repository.count(), 30L);
+        assertThrows(DataIntegrityViolationException.class,
+                () -> userService.registerNewUser(user("user7", 1990, "FRANCE", null)));
+    }
+
+    /**
+     * This test checks if the ids 0 and below, never generated, find no user and are registered as new users
+     */
+    @Test
+    public void registerNewUser_shouldRegisterUsersOfNegativeIdsAsNewOnes() {
+        assertFalse(repository.findById(-3L).isPresent());
+        assertFalse(repository.findVersionById(-3L).isPresent());
+        assertTrue(repository.findAllById(Arrays.asList(-3L, 0L)).isEmpty());
+
+        User user = userService.registerNewUser(new User(-3L, "Mallory", LocalDate.of(1990, 1, 1), "FRANCE", null, null));
+        assertTrue(user.getId() > 0);
+        assertEquals(ShardedUserRepository.shardOf(user.getId()), repository.partitionOf("Mallory"));
+        assertEquals(userService.getUser(user.getId()).get().getUsername(), "Mallory");
+        assertEquals(ShardedUserRepository.shardOf(-3L), 13);
+    }
+
+    /**
+     * This test checks if a renamed user keeps its id and shard, and if its new username, directed to another shard,
+     * is taken across the shards
+     */
+    @Test
+    public void registerNewUser_shouldKeepUsernamesUniqueAcrossShardsOnRename() {
+        String username = usernameOfPartition(0);
+        String otherShardUsername = usernameOfPartition(1);
+        User user = userService.registerNewUser(user(username, 1989, "FRANCE", Gender.FEMALE));
+
+        userService.registerNewUser(new User(user.getId(), otherShardUsername, LocalDate.of(1989, 1, 1), "FRANCE", "06 12", Gender.FEMALE));
+        User renamed = userService.getUser(user.getId()).get();
+        assertEquals(renamed.getUsername(), otherShardUsername);
+        assertEquals(renamed.getNormalizedPhone(), "0612");
+        assertEquals(renamed.getVersion(), 1L);
+        assertEquals(repository.findIdByUsername(otherShardUsername).get(), user.getId());
+        assertFalse(repository.findIdByUsername(username).isPresent());
+        assertThrows(DataIntegrityViolationException.class,
+                () -> repository.save(user(otherShardUsername, 1990, "FRANCE", null)));
+        assertEquals(userService.registerNewUser(user(username, 1990, "FRANCE", null)).getUsername(), username);
+        assertEquals(repository.count(), 2L);
+    }
+
+    /**
+     * This test checks if a batch registration rejects the taken usernames only, and if the listings and searches
+     * gather the users of all the shards in the order of the ids
+     */
+    @Test
+    public void registerNewUsers_shouldListAndSearchAcrossShards() {
+        userService.registerNewUser(user("Nour", 1966, "FRANCE", Gender.FEMALE));
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            users.add(user("user" + i, 1960 + i, i % 2 == 0 ? "FRANCE" : "Italy", i % 3 == 0 ? Gender.FEMALE : Gender.MALE));
+        }
+        users.add(user("Nour", 1970, "FRANCE", Gender.FEMALE));
+        List<RegistrationOutcome> outcomes = userService.registerNewUsers(users);
+        assertEquals(outcomes.stream().filter(RegistrationOutcome::isCreated).count(), 20L);
+        assertFalse(outcomes.get(20).isCreated());
+
+        List<Long> ids = new ArrayList<>();
+        long afterId = 0;
+        List<User> page;
+        while (!(page = repository.findPageAfter(afterId, "France", null, PageRequest.of(0, 4))).isEmpty()) {
+            page.forEach(user -> ids.add(user.getId()));
+            afterId = page.get(page.size() - 1).getId();
+        }
+        assertEquals(ids.size(), 11);
+        assertEquals(ids, ids.stream().sorted().collect(Collectors.toList()));
+        try (Stream<User> stream = repository.streamAll(null, Gender.FEMALE)) {
+            List<Long> streamed = stream.map(User::getId).collect(Collectors.toList());
+            assertEquals(streamed.size(), 8);
+            assertEquals(streamed, streamed.stream().sorted().collect(Collectors.toList()));
+        }
+        try (Stream<String> usernames = repository.streamAllUsernames()) {
+            assertEquals(usernames.count(), 21L);
+        }
+
+        UserSearchCriteria criteria = new UserSearchCriteria();
+        criteria.setCountry("italy");
+        criteria.setBornAfter(LocalDate.of(1970, 1, 1));
+        List<User> found = repository.search(criteria, 0, 3);
+        assertEquals(found.size(), 3);
+        assertTrue(found.stream().allMatch(user -> user.getCountry().equals("ITALY") && user.getBirthdate().getYear() >= 1970));
+        assertEquals(repository.search(criteria, found.get(2).getId(), 10).size(), 2);
+        assertEquals(repository.findExistingUsernames(Arrays.asList("user3", "Nour", "Lisa")).size(), 2);
+        assertEquals(repository.findAllById(ids).size(), 11);
+    }
+
+    /**
+     * This test checks if nothing is saved, in any shard nor in the directory, when a user of a batch cannot be
+     * inserted
+     */
+    @Test
+    public void saveAll_shouldSaveNothingWhenAUserFails() {
+        User invalid = user(usernameOfPartition(2), 1980, "FRANCE", null);
+        invalid.setBirthdate(null);
+        List<User> users = Arrays.asList(user(usernameOfPartition(0), 1980, "FRANCE", null),
+                user(usernameOfPartition(1), 1980, "FRANCE", null), invalid);
+        assertThrows(DataIntegrityViolationException.class, () -> repository.saveAll(users));
+
+        assertEquals(repository.count(), 0L);
+        assertTrue(repository.findExistingUsernames(users.stream().map(User::getUsername).collect(Collectors.toList())).isEmpty());
+        assertEquals(users.get(0).getId(), null);
+    }
+}
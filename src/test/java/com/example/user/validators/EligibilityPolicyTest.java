@@ -0,0 +1,89 @@
+package com.example.user.validators;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit Tests for the compiled eligibility policies
+ */
+@RunWith(SpringRunner.class)
+public class EligibilityPolicyTest {
+    private EligibilityPolicy policy;
+
+    @Before
+    public void setUp() {
+        Map<String, Integer> rules = new HashMap<>();
+        rules.put("FRANCE", 18);
+        rules.put("Japan", 20);
+        Clock clock = Clock.fixed(Instant.parse("2022-11-15T10:00:00Z"), ZoneOffset.UTC);
+        policy = new EligibilityPolicy("adult", rules, clock);
+    }
+
+    /**
+     * This test checks if a registrant is eligible from the day of its birthday
+     */
+    @Test
+    public void shouldAcceptFromTheBirthday() {
+        assertTrue(policy.isEligible("France", LocalDate.of(2004, 11, 15)));
+        assertFalse(policy.isEligible("France", LocalDate.of(2004, 11, 16)));
+    }
+
+    /**
+     * This test checks if every country has its own minimum age and unknown countries are refused
+     */
+    @Test
+    public void shouldApplyTheMinimumAgeOfTheCountry() {
+        assertTrue(policy.isEligible("JAPAN", LocalDate.of(2002, 11, 15)));
+        assertFalse(policy.isEligible("japan", LocalDate.of(2004, 11, 15)));
+        assertFalse(policy.isEligible("Swiss", LocalDate.of(1970, 1, 1)));
+    }
+
+    /**
+     * This test checks if the cutoff dates follow the change of day
+     */
+    @Test
+    public void shouldRefreshTheCutoffsEveryDay() {
+        MutableClock clock = new MutableClock(Instant.parse("2022-11-15T23:59:00Z"));
+        EligibilityPolicy dailyPolicy = new EligibilityPolicy("adult", Collections.singletonMap("FRANCE", 18), clock);
+        assertFalse(dailyPolicy.isEligible("FRANCE", LocalDate.of(2004, 11, 16)));
+        clock.instant = Instant.parse("2022-11-16T00:01:00Z");
+        assertTrue(dailyPolicy.isEligible("FRANCE", LocalDate.of(2004, 11, 16)));
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}